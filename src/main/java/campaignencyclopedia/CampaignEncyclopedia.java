@@ -1,6 +1,6 @@
 package campaignencyclopedia;
 
-import campaignencyclopedia.data.BidirectionalRelationshipCampaignDataManager;
+import campaignencyclopedia.data.ConcurrentCampaignDataManager;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,7 +52,7 @@ public class CampaignEncyclopedia {
             LOGGER.log(Level.FINER, "Unsupported Look and Feel provided by UIManager.", ex);
         }
 
-        CampaignDataManager cdm = new BidirectionalRelationshipCampaignDataManager();
+        CampaignDataManager cdm = new ConcurrentCampaignDataManager();
         MainDisplay display = new MainDisplay(cdm);
         display.launch();
     }
@@ -2,12 +2,11 @@ package campaignencyclopedia.data;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 import javax.swing.JOptionPane;
 
@@ -29,14 +28,29 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
     /** The name of the campaign.  */
     private String m_campaignName;
 
-    /** A map of UUIDs to their associated Entities. */
-    private final Map<UUID, Entity> m_entities;
+    /** A map of UUIDs to their associated Entities, replaced rather than changed so it can be shared by snapshots. */
+    private PersistentHashMap<UUID, Entity> m_entities;
+
+    /** The Entities of the campaign, kept in sorted order. */
+    private final SortedEntityIndex m_sortedEntities;
 
     /** A manager for ALL relationships in the campaign. */
     private final BidirectionalRelationshipManager m_relationships;
 
-    /** A map of UUIDs to their associated Timeline Entries. */
-    private final Map<UUID, TimelineEntry> m_timelineData;
+    /**
+     * Read-only snapshots of the RelationshipManager of each Entity, as last handed out by {@link #getData()}.  Only
+     * the entries of Entities whose relationships have changed since are refreshed, on the next call.
+     */
+    private PersistentHashMap<UUID, RelationshipManager> m_relationshipSnapshots;
+
+    /** The IDs of the Entities whose relationship snapshots are out of date. */
+    private final Set<UUID> m_staleRelationships;
+
+    /** A map of UUIDs to their associated Timeline Entries, replaced rather than changed so it can be shared by snapshots. */
+    private PersistentHashMap<UUID, TimelineEntry> m_timelineData;
+
+    /** The Timeline Entries indexed by the Entity they are associated with. */
+    private final TimelineEntryIndex m_timelineByEntity;
 
     /** The path to the file where the current campaign is stored, or null if no path exists. */
     private String m_filename;
@@ -44,18 +58,26 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
     /** The currently configured campaign calendar. */
     private CampaignCalendar m_cal;
 
-    /** A Set of listeners on the CDM. */
-    private final Set<CampaignDataManagerListener> m_listeners;
+    /** The leading words ignored when sorting Entity names in this campaign. */
+    private List<String> m_sortPrefixes;
+
+    /** The listeners on the CDM, and any batch of changes waiting to be sent to them. */
+    private final CampaignDataManagerListenerSupport m_listeners;
 
     public BidirectionalRelationshipCampaignDataManager() {
         m_campaignName = "New Campaign";
         m_filename = null;
 
-        m_entities = new HashMap<>();
+        m_entities = PersistentHashMap.empty();
+        m_sortedEntities = new SortedEntityIndex();
         m_relationships = new BidirectionalRelationshipManager();
-        m_timelineData = new HashMap<>();
+        m_relationshipSnapshots = PersistentHashMap.empty();
+        m_staleRelationships = new HashSet<>();
+        m_timelineData = PersistentHashMap.empty();
+        m_timelineByEntity = new TimelineEntryIndex();
         m_cal = new CampaignCalendar();
-        m_listeners = new HashSet<>();
+        m_sortPrefixes = ComparisonTools.getDefaultIgnoredPrefixes();
+        m_listeners = new CampaignDataManagerListenerSupport();
     }
 
     /**
@@ -64,9 +86,13 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
      */
     @Override
     public void addListener(CampaignDataManagerListener listener) {
-        if (listener != null) {
-            m_listeners.add(listener);
-        }
+        m_listeners.addListener(listener);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addListener(CampaignDataManagerListener listener, Executor executor) {
+        m_listeners.addListener(listener, executor);
     }
 
     /**
@@ -75,7 +101,25 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
      */
     @Override
     public void removeListener(CampaignDataManagerListener listener) {
-        m_listeners.remove(listener);
+        m_listeners.removeListener(listener);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beginBatch() {
+        m_listeners.beginBatch();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void commit() {
+        m_listeners.commit();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<CampaignDataManagerListenerDispatcher.Statistics> getListenerStatistics() {
+        return m_listeners.getListenerStatistics();
     }
 
     /** {@inheritDoc} */
@@ -90,21 +134,32 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
     /** {@inheritDoc} */
     @Override
     public List<Entity> getAllEntities() {
-        List<Entity> list = new ArrayList<>(m_entities.values());
-        Collections.sort(list);
-        return list;
+        return m_sortedEntities.getSnapshot();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Entity> getEntities(int offset, int count) {
+        return m_sortedEntities.getPage(offset, count);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Entity> getEntitiesFrom(String name, int count) {
+        return m_sortedEntities.getPageFrom(name, count);
     }
 
     /** {@inheritDoc} */
     @Override
     public void addOrUpdateEntity(Entity entity) {
         if (entity != null) {
-            m_entities.put(entity.getId(), entity);
-        }
+            Entity previous = m_entities.get(entity.getId());
+            m_entities = m_entities.plus(entity.getId(), entity);
+            m_sortedEntities.update(previous, entity);
+            m_staleRelationships.add(entity.getId());
 
-        // Alert Listeners
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.dataAddedOrUpdated(entity);
+            // Alert Listeners
+            m_listeners.fireEntityChanged(EntityChangeEvent.entityUpdated(previous, entity));
         }
     }
 
@@ -113,22 +168,20 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
     @Override
     public void addOrUpdateTimelineEntry(TimelineEntry entry) {
         if (entry != null) {
-            m_timelineData.put(entry.getId(), entry);
-        }
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.timelineEntryAddedOrUpdated(entry);
+            m_timelineByEntity.update(m_timelineData.get(entry.getId()), entry);
+            m_timelineData = m_timelineData.plus(entry.getId(), entry);
         }
+        m_listeners.fireTimelineEntryAddedOrUpdated(entry);
     }
 
     /** {@inheritDoc} */
     @Override
     public void removeTimelineEntry(UUID id) {
         if (id != null) {
-            m_timelineData.remove(id);
-        }
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.timelineEntryRemoved(id);
+            m_timelineByEntity.update(m_timelineData.get(id), null);
+            m_timelineData = m_timelineData.minus(id);
         }
+        m_listeners.fireTimelineEntryRemoved(id);
     }
 
     /** {@inheritDoc} */
@@ -136,15 +189,19 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
     public void removeEntity(UUID id) {
         if (id != null) {
             // Remove the Entity
-            m_entities.remove(id);
+            Entity previous = m_entities.get(id);
+            m_sortedEntities.remove(previous);
+            m_entities = m_entities.minus(id);
 
             // Remove relationships for the removed Entity (in or out!)
-            m_relationships.clearSingleEntityRelationships(id);
-        }
-
-        // Alert Listeners
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.dataRemoved(id);
+            m_staleRelationships.add(id);
+            m_staleRelationships.addAll(m_relationships.getRelationshipManagerForEntity(id).getAllAffectedIds());
+            Set<Relationship> removed = m_relationships.clearSingleEntityRelationships(id);
+
+            // Alert Listeners, the other ends of the removed relationships have lost them too.
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, none, removed, true);
+            m_listeners.fireEntityChanged(EntityChangeEvent.entityRemoved(id, previous, removed));
         }
     }
 
@@ -155,11 +212,11 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
     @Override
     public void updateCalendar(CampaignCalendar cal) {
         m_cal.updateMonths(cal.getMonths());
-        for (UUID id : m_timelineData.keySet()) {
-            TimelineEntry entry = m_timelineData.get(id);
+        for (TimelineEntry entry : m_timelineData.values()) {
             if (!m_cal.hasMonth(entry.getMonth())) {
                 TimelineEntry updated = new TimelineEntry(entry.getTitle(), m_cal.getMonthForIndex(0), entry.getYear(), entry.isSecret(), entry.getAssociatedId(), entry.getId());
-                m_timelineData.put(id, updated);
+                m_timelineData = m_timelineData.plus(entry.getId(), updated);
+                m_timelineByEntity.update(entry, updated);
             }
         }
     }
@@ -167,12 +224,27 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
     /**
      * Creates and returns a Campaign that is represented by all of the data in the CampaignDataManager.  The CDM is
      * not modified in any way.  Each time this method is called, a new Campaign object is instantiated and returned.
+     * The Campaign is a read-only snapshot sharing its structure with this CDM, so building it costs time in
+     * proportion to the changes made since the last call rather than to the size of the campaign, and it may be
+     * handed to another thread while editing continues.
      *
      * @return a Campaign that contains all of the data in the CampaignDataManager.
      */
     @Override
     public Campaign getData() {
-        return new Campaign(m_campaignName, new HashSet<>(m_entities.values()), m_relationships.getAllRelationships(), new HashSet<>(m_timelineData.values()), m_cal);
+        // Every Entity gets an entry, even if it has no relationships, as does any ID still referenced by one.
+        for (UUID id : m_staleRelationships) {
+            RelationshipManager live = m_entities.containsKey(id) ? m_relationships.getRelationshipManagerForEntity(id)
+                                                                  : m_relationships.getAllRelationships().get(id);
+            if (live != null) {
+                m_relationshipSnapshots = m_relationshipSnapshots.plus(id, live.snapshot());
+            } else {
+                m_relationshipSnapshots = m_relationshipSnapshots.minus(id);
+            }
+        }
+        m_staleRelationships.clear();
+        CampaignCalendar cal = new CampaignCalendar(new ArrayList<>(m_cal.getMonths()));
+        return new Campaign(m_campaignName, m_entities, m_relationshipSnapshots, m_timelineData, cal, m_sortPrefixes);
     }
 
     /**
@@ -181,18 +253,21 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
      */
     @Override
     public void setData(Campaign campaign) {
-        m_entities.clear();
-        m_timelineData.clear();
+        m_entities = PersistentHashMap.empty();
+        m_sortedEntities.clear();
+        m_timelineData = PersistentHashMap.empty();
+        m_timelineByEntity.clear();
         m_relationships.clear();
-        
-        // Alert listeners of cleared data.
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.clearAllData();
-        }
+        m_relationshipSnapshots = PersistentHashMap.empty();
+        m_staleRelationships.clear();
         
         m_campaignName = campaign.getName();
         m_cal = campaign.getCalendar();
 
+        // Configure sorting before any Entities are indexed, since their order depends on it.
+        m_sortPrefixes = campaign.getSortPrefixes();
+        ComparisonTools.setIgnoredPrefixes(m_sortPrefixes);
+
 
         // Set to collect all of the previously saved relationships.  This is used later to ensure that all established
         // Relationships are in the RelationshipOptionManager.
@@ -201,7 +276,8 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
         // Add all of the Entities.
         for (Entity e : campaign.getEntities()) {
             UUID entityId = e.getId();
-            m_entities.put(entityId, e);
+            m_sortedEntities.update(m_entities.get(entityId), e);
+            m_entities = m_entities.plus(entityId, e);
 
             // Collect all of the previously saved relationships and add them to our Set above.
             RelationshipManager entityRelMgr = campaign.getRelationships(entityId);
@@ -215,6 +291,9 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
             }
         }
 
+        m_staleRelationships.addAll(m_entities.asMap().keySet());
+        m_staleRelationships.addAll(m_relationships.getAllRelationships().keySet());
+
         // Ensure that all of the relationships previously saved are in the local
         // relationships file, and indeed the Relationship Data Manager as well.
         RelationshipOptionManager.addRelationships(new ArrayList<>(relationships));
@@ -223,12 +302,18 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
         // campaign.  If any are missing, add them to the Calendar and alert the user with a popup message.
         boolean monthsAdded = false;
         for (TimelineEntry tle : campaign.getTimelineEntries()) {
-            m_timelineData.put(tle.getId(), tle);
+            m_timelineByEntity.update(m_timelineData.get(tle.getId()), tle);
+            m_timelineData = m_timelineData.plus(tle.getId(), tle);
             if (!m_cal.hasMonth(tle.getMonth())) {
                 m_cal.addMonth(tle.getMonth());
                 monthsAdded = true;
             }
         }
+
+        // Alert listeners of cleared data only now the new data is in place, since they are notified asynchronously
+        // and may read this data manager to rebuild.
+        m_listeners.fireClearAllData();
+
         if (monthsAdded) {
             JOptionPane.showMessageDialog(null,
                                           "One or more 'months' were added to your campaign\n"
@@ -240,6 +325,52 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void setEntitySecrecy(UUID id, boolean isSecret) {
+        Entity previous = id == null ? null : m_entities.get(id);
+        if (previous == null) {
+            return;
+        }
+
+        m_listeners.beginBatch();
+        try {
+            if (previous.isSecret() != isSecret) {
+                Entity updated = new Entity(id, previous.getName(), previous.getType(), previous.getPublicData(),
+                                            previous.getSecretData(), isSecret);
+                m_entities = m_entities.plus(id, updated);
+                m_sortedEntities.update(previous, updated);
+                m_staleRelationships.add(id);
+                m_listeners.fireEntityChanged(EntityChangeEvent.entityUpdated(previous, updated));
+            }
+
+            if (isSecret) {
+                // Only the Relationships in or out of this Entity, and its own Timeline Entries, need to be looked at.
+                Set<Relationship> removed = new HashSet<>();
+                Set<Relationship> added = new HashSet<>();
+                for (Relationship rel : new ArrayList<>(m_relationships.getPublicRelationshipsForEntity(id))) {
+                    Relationship secret = new Relationship(rel.getEntityId(), rel.getRelatedEntity(), rel.getRelationshipText(), true);
+                    m_relationships.remove(rel);
+                    removed.add(rel);
+                    if (m_relationships.addRelationship(secret)) {
+                        added.add(secret);
+                    }
+                    m_staleRelationships.add(rel.getEntityId());
+                    m_staleRelationships.add(rel.getRelatedEntity());
+                }
+                m_listeners.fireRelationshipsChanged(this, added, removed, true);
+
+                for (TimelineEntry tle : m_timelineByEntity.get(id)) {
+                    if (!tle.isSecret()) {
+                        addOrUpdateTimelineEntry(new TimelineEntry(tle.getTitle(), tle.getMonth(), tle.getYear(), true, tle.getAssociatedId(), tle.getId()));
+                    }
+                }
+            }
+        } finally {
+            m_listeners.commit();
+        }
+    }
+
     /**
      * Returns the save file name.
      * @return the save file name.
@@ -270,6 +401,12 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
         return new HashSet<>(m_timelineData.values());
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Set<TimelineEntry> getTimelineEntriesFor(UUID entity) {
+        return m_timelineByEntity.get(entity);
+    }
+
     /** {@inheritDoc} */
     @Override
     public CampaignCalendar getCalendar() {
@@ -280,39 +417,51 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
     @Override
     public void addRelationship(Relationship rel) {
         //The BiDirectional Relationship Mnager handles all the dirty work in this capmaign data manager
-        m_relationships.addRelationship(rel);
-        
-        // Alert Listeners, data UPDATED because relationship added
-        UUID entity = rel.getEntityId();
-        UUID otherEntity = rel.getRelatedEntity();
-        Entity actualEntity = getEntity(entity);
-        Entity actualOtherEntity = getEntity(otherEntity);
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.dataAddedOrUpdated(actualEntity);
-            cdml.dataAddedOrUpdated(actualOtherEntity);
+        if (m_relationships.addRelationship(rel)) {
+            m_staleRelationships.add(rel.getEntityId());
+            m_staleRelationships.add(rel.getRelatedEntity());
+
+            // Alert Listeners, data UPDATED at both ends because relationship added
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, Collections.singleton(rel), none, true);
         }
     }
 
     /** {@inheritDoc} */
     @Override
     public void removeRelationship(Relationship toRemove) {
-        m_relationships.remove(toRemove);
-        
-        // Alert Listeners, data UPDATED because relationship removed
-        UUID entity = toRemove.getEntityId();
-        UUID otherEntity = toRemove.getRelatedEntity();
-        Entity actualEntity = getEntity(entity);
-        Entity actualOtherEntity = getEntity(otherEntity);
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.dataAddedOrUpdated(actualEntity);
-            cdml.dataAddedOrUpdated(actualOtherEntity);
+        if (m_relationships.remove(toRemove)) {
+            m_staleRelationships.add(toRemove.getEntityId());
+            m_staleRelationships.add(toRemove.getRelatedEntity());
+
+            // Alert Listeners, data UPDATED at both ends because relationship removed
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, none, Collections.singleton(toRemove), true);
         }
     }
 
-    /** {@inheritDoc} */
+    /**
+     * Returns the relationships of the supplied Entity, in or outbound.  The manager returned is a copy, which costs
+     * nothing until one side changes, so changes to it must be handed back through
+     * {@link #addOrUpdateAllRelationships(UUID, RelationshipManager)} or the other relationship methods.
+     * @param entity the ID of the Entity.
+     * @return a copy of the relationships of the Entity.
+     */
     @Override
     public RelationshipManager getRelationshipsForEntity(UUID entity) {
-        return  m_relationships.getRelationshipManagerForEntity(entity);
+        return new RelationshipManager(m_relationships.getRelationshipManagerForEntity(entity));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RelationshipGraph getRelationshipGraph() {
+        return m_relationships.getGraph();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Relationship> getInboundRelationships(UUID entity) {
+        return m_relationships.getInboundRelationshipsForEntity(entity).getAllRelationships();
     }
     
 
@@ -320,16 +469,16 @@ public class BidirectionalRelationshipCampaignDataManager implements CampaignDat
     @Override
     public void addOrUpdateAllRelationships(UUID entity, RelationshipManager relMgr) {
         if (entity != null && relMgr != null) {
-            m_relationships.addAllRelationships(relMgr.getAllRelationships());
-            
-            // Alert Listeners, data updated because relationship added
-            for (UUID i : relMgr.getAllAffectedIds()) {
-                Entity actualEntity = getEntity(i);
-                for (CampaignDataManagerListener cdml : m_listeners) {
-                    cdml.dataAddedOrUpdated(actualEntity);
-                }
+            Set<Relationship> added = m_relationships.addAllRelationships(relMgr.getAllRelationships());
+            for (Relationship rel : added) {
+                m_staleRelationships.add(rel.getEntityId());
+                m_staleRelationships.add(rel.getRelatedEntity());
             }
-            
+
+            // Alert Listeners, data updated at both ends of each relationship added
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, added, none, true);
+
         } else {
             LOGGER.warning("Attempted to store a null Entity or RelationshipManager.  Entity (unused) was:  " +
                     entity + ", RelationshipManager was:  " + relMgr);
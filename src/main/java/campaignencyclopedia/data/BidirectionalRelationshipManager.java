@@ -7,77 +7,100 @@ package campaignencyclopedia.data;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
 /**
+ * An adjacency index of Relationships.  Every Relationship is stored against both of its ends, so the in and outbound
+ * Relationships of any entity are found by a direct lookup rather than a scan of the whole campaign.
  *
  * @author Keith
  */
 public class BidirectionalRelationshipManager {
-    
+
+    /** A map of entity IDs to ALL of the relationships touching that entity, in or outbound. */
     private final Map<UUID, RelationshipManager> m_edgeMap;
-    
+
+    /** A map of entity IDs to the relationships owned by (pointing out from) that entity. */
+    private final Map<UUID, RelationshipManager> m_outEdges;
+
+    /** A map of entity IDs to the relationships owned by other entities that point in to that entity. */
+    private final Map<UUID, RelationshipManager> m_inEdges;
+
+    /** A snapshot of the graph, or null if the relationships have changed since it was built. */
+    private volatile RelationshipGraph m_graph;
+
 
     /** Creates a new RelationshipManager. */
     public BidirectionalRelationshipManager() {
-        m_edgeMap = new HashMap<>();
+        m_edgeMap = new UUIDHashMap<>();
+        m_outEdges = new UUIDHashMap<>();
+        m_inEdges = new UUIDHashMap<>();
     }
-    
-    
+
+
     /**
      * Adds the relationship to the manager.  This stores it in the list of "in or outbound relationships"
      * for both ends in question.
      * @param rel the Relationship to add.
+     * @return true if the Relationship was added, false if it was null or already present.
      */
-    public void addRelationship(Relationship rel) {
+    public boolean addRelationship(Relationship rel) {
         if (rel != null) {
             UUID sideA = rel.getEntityId();
             UUID sideB = rel.getRelatedEntity();
-            
-            guaranteeRelationshipManager(rel);
-            
-            for (Map.Entry<UUID, RelationshipManager> e : m_edgeMap.entrySet()) {
-                UUID v = e.getKey();
-                RelationshipManager rm = e.getValue();
-                if (v.equals(sideA) || v.equals(sideB)) {
-                    rm.addRelationship(rel);
-                }
+            if (lookup(m_edgeMap, sideA).contains(rel)) {
+                return false;
             }
+
+            guaranteeRelationshipManager(m_edgeMap, sideA).addRelationship(rel);
+            guaranteeRelationshipManager(m_edgeMap, sideB).addRelationship(rel);
+            guaranteeRelationshipManager(m_outEdges, sideA).addRelationship(rel);
+            guaranteeRelationshipManager(m_inEdges, sideB).addRelationship(rel);
+            m_graph = null;
+            return true;
         }
+        return false;
     }
 
     /**
      * Adds all of the Relationships supplied to the manager.
      * @param rels the Relationships to add.
+     * @return the Relationships that were not already present.
      */
-    public void addAllRelationships(Collection<Relationship> rels) {
+    public Set<Relationship> addAllRelationships(Collection<Relationship> rels) {
+        Set<Relationship> added = new HashSet<>();
         for (Relationship r : rels) {
-            addRelationship(r);
+            if (addRelationship(r)) {
+                added.add(r);
+            }
         }
+        return added;
     }
 
     /**
      * Removes the supplied entry from the manager.
      * @param rel the Relationship to remove.
+     * @return true if the Relationship was removed, false if it was null or not present.
      */
-    public void remove(Relationship rel) {
+    public boolean remove(Relationship rel) {
         if (rel != null) {
             UUID sideA = rel.getEntityId();
             UUID sideB = rel.getRelatedEntity();
-            
-            guaranteeRelationshipManager(rel);  //Still check even though it is a remove, just for safety
-            
-            for (Map.Entry<UUID, RelationshipManager> e : m_edgeMap.entrySet()) {
-                UUID v = e.getKey();
-                RelationshipManager rm = e.getValue();
-                if (v.equals(sideA) || v.equals(sideB)) {
-                    rm.remove(rel);
-                }
+            if (!lookup(m_edgeMap, sideA).contains(rel)) {
+                return false;
             }
+
+            removeFrom(m_edgeMap, sideA, rel);
+            removeFrom(m_edgeMap, sideB, rel);
+            removeFrom(m_outEdges, sideA, rel);
+            removeFrom(m_inEdges, sideB, rel);
+            m_graph = null;
+            return true;
         }
+        return false;
     }
 
     /**
@@ -96,9 +119,7 @@ public class BidirectionalRelationshipManager {
      * @return the public relationships in the manager.
      */
     public Set<Relationship> getPublicRelationshipsForEntity(UUID id) {
-        guaranteeRelationshipManager(id);
-        RelationshipManager rm = m_edgeMap.get(id);
-        return rm.getPublicRelationships();
+        return lookup(m_edgeMap, id).getPublicRelationships();
     }
 
     /**
@@ -107,9 +128,7 @@ public class BidirectionalRelationshipManager {
      * @return the private relationships in the manager.
      */
     public Set<Relationship> getSecretRelationshipsForEntity(UUID id) {
-        guaranteeRelationshipManager(id);
-        RelationshipManager rm = m_edgeMap.get(id);
-        return rm.getSecretRelationships();
+        return lookup(m_edgeMap, id).getSecretRelationships();
     }
 
     /**
@@ -118,8 +137,39 @@ public class BidirectionalRelationshipManager {
      * @return all the RelationshipManager.
      */
     public RelationshipManager getRelationshipManagerForEntity(UUID id) {
-        guaranteeRelationshipManager(id);
-        return m_edgeMap.get(id);
+        return lookup(m_edgeMap, id);
+    }
+
+    /**
+     * Returns the RelationshipManager holding only the relationships owned by the given entity.
+     * @param id The entity to find relationships for.
+     * @return the RelationshipManager of outbound relationships.
+     */
+    public RelationshipManager getOutboundRelationshipsForEntity(UUID id) {
+        return lookup(m_outEdges, id);
+    }
+
+    /**
+     * Returns the RelationshipManager holding only the relationships owned by other entities that point at the given
+     * entity.
+     * @param id The entity to find relationships for.
+     * @return the RelationshipManager of inbound relationships.
+     */
+    public RelationshipManager getInboundRelationshipsForEntity(UUID id) {
+        return lookup(m_inEdges, id);
+    }
+
+    /**
+     * Returns the number of relationships touching the given entity, in or outbound.
+     * @param id The entity to count relationships for.
+     * @return the degree of the entity, zero if it has no relationships.
+     */
+    public int getDegree(UUID id) {
+        RelationshipManager rm = m_edgeMap.get(id);
+        if (rm == null) {
+            return 0;
+        }
+        return rm.size();
     }
 
     /**
@@ -128,10 +178,9 @@ public class BidirectionalRelationshipManager {
      * @return all the Relationships in this manager.
      */
     public Set<Relationship> getAllRelationshipsForEntity(UUID id) {
-        guaranteeRelationshipManager(id);
-        return m_edgeMap.get(id).getAllRelationships();
+        return lookup(m_edgeMap, id).getAllRelationships();
     }
-    
+
     /**
      * Returns all the Relationships in the manager.
      * @return all the Relationships in this manager.
@@ -139,16 +188,40 @@ public class BidirectionalRelationshipManager {
     public Map<UUID, RelationshipManager> getAllRelationships() {
         return Collections.unmodifiableMap(m_edgeMap);
     }
-    
+
+    /**
+     * Returns an immutable snapshot of the graph, built when first asked for after the relationships change.  Safe to
+     * call alongside other reads.
+     * @return the relationship graph.
+     */
+    public RelationshipGraph getGraph() {
+        RelationshipGraph graph = m_graph;
+        if (graph == null) {
+            // Concurrent readers may both build it, which is harmless.
+            graph = RelationshipGraph.build(m_outEdges);
+            m_graph = graph;
+        }
+        return graph;
+    }
+
     /**
-     * Clears all the Relationships in the manager for this single entity.
+     * Clears all the Relationships in the manager for this single entity.  Relationships are removed from the other
+     * end of each edge as well, so no dangling references to the entity remain.
      * @param id The entity to find clear.
+     * @return the Relationships that were removed, in or outbound.
      */
-    public void clearSingleEntityRelationships(UUID id) {
-        if (m_edgeMap.containsKey(id)) {
-            m_edgeMap.get(id).clear();
+    public Set<Relationship> clearSingleEntityRelationships(UUID id) {
+        Set<Relationship> removed = Collections.emptySet();
+        RelationshipManager incident = m_edgeMap.get(id);
+        if (incident != null) {
+            removed = incident.getAllRelationships();
+            removeAll(removed);
+            incident.clear();
             m_edgeMap.remove(id);
         }
+        m_outEdges.remove(id);
+        m_inEdges.remove(id);
+        return removed;
     }
 
     /** Clears all of the data from this manager, including all relationships for ALL entities. */
@@ -158,31 +231,54 @@ public class BidirectionalRelationshipManager {
             r.clear();
         }
         m_edgeMap.clear();
+        m_outEdges.clear();
+        m_inEdges.clear();
+        m_graph = null;
     }
-    
-    
-    
-    
+
+
+
+
     /**
      * Utility method to ensure RelationshipManagers aren't null.
-     * @param rel The relationship to prepare for
+     * @param index the index to look the entity up in.
+     * @param id The entity to prepare for
+     * @return the RelationshipManager for the entity in the supplied index.
      */
-    private void guaranteeRelationshipManager(Relationship r) {
-        if (m_edgeMap.get(r.getEntityId()) == null) {
-            m_edgeMap.put(r.getEntityId(), new RelationshipManager());
+    private static RelationshipManager guaranteeRelationshipManager(Map<UUID, RelationshipManager> index, UUID id) {
+        RelationshipManager rm = index.get(id);
+        if (rm == null) {
+            rm = new RelationshipManager();
+            index.put(id, rm);
         }
-        if (m_edgeMap.get(r.getRelatedEntity()) == null) {
-            m_edgeMap.put(r.getRelatedEntity(), new RelationshipManager());
+        return rm;
+    }
+
+    /**
+     * Utility method to look up an entity's RelationshipManager without adding one to the index.  Reads never change
+     * the index, so they are safe alongside other reads.
+     * @param index the index to look the entity up in.
+     * @param id The entity to look up.
+     * @return the RelationshipManager for the entity, or a new, empty, one not held in the index if it has none.
+     */
+    private static RelationshipManager lookup(Map<UUID, RelationshipManager> index, UUID id) {
+        RelationshipManager rm = index.get(id);
+        if (rm == null) {
+            rm = new RelationshipManager();
         }
+        return rm;
     }
-    
+
     /**
-     * Utility method to ensure RelationshipManagers aren't null.
-     * @param id The entity to prepare for
+     * Utility method to remove a relationship from one entity's entry in an index, if that entry exists.
+     * @param index the index to remove from.
+     * @param id the entity whose entry is updated.
+     * @param rel the Relationship to remove.
      */
-    private void guaranteeRelationshipManager(UUID id) {
-        if (!m_edgeMap.containsKey(id)) {
-            m_edgeMap.put(id, new RelationshipManager());
+    private static void removeFrom(Map<UUID, RelationshipManager> index, UUID id, Relationship rel) {
+        RelationshipManager rm = index.get(id);
+        if (rm != null) {
+            rm.remove(rel);
         }
     }
 }
@@ -1,8 +1,13 @@
 package campaignencyclopedia.data;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -28,6 +33,9 @@ public class Campaign {
     /** The Calendar for this campaign. */
     private final CampaignCalendar m_calendar;
 
+    /** The leading words ignored when sorting Entity names in this campaign. */
+    private final List<String> m_sortPrefixes;
+
     /**
      * Constructor.
      * @param name The name of the Campaign.
@@ -37,6 +45,19 @@ public class Campaign {
      * @param cal the campaign calendar.
      */
     public Campaign(String name, Set<Entity> entities, Map<UUID, RelationshipManager> relationships, Set<TimelineEntry> timelineData, CampaignCalendar cal) {
+        this(name, entities, relationships, timelineData, cal, ComparisonTools.getDefaultIgnoredPrefixes());
+    }
+
+    /**
+     * Constructor.
+     * @param name The name of the Campaign.
+     * @param entities The Entity data that makes up this Campaign's primary content.
+     * @param relationships the relationships in the campaign.
+     * @param timelineData the TimelineEntry data for the Campaign.
+     * @param cal the campaign calendar.
+     * @param sortPrefixes the leading words ignored when sorting Entity names, such as 'The'.
+     */
+    public Campaign(String name, Set<Entity> entities, Map<UUID, RelationshipManager> relationships, Set<TimelineEntry> timelineData, CampaignCalendar cal, List<String> sortPrefixes) {
         if (name == null || name.isEmpty()) {
             throw new IllegalArgumentException("Parameter 'name' must not be null or empty.");
         }
@@ -49,11 +70,56 @@ public class Campaign {
         if (cal == null) {
             throw new IllegalArgumentException("Parameter 'cal' must not be null.");
         }
+        if (sortPrefixes == null) {
+            throw new IllegalArgumentException("Parameter 'sortPrefixes' must not be null.");
+        }
         m_name = name;
         m_entities = new HashSet<>(entities);
         m_timelineEntries = new HashSet<>(timelineData);
         m_calendar = cal;
         m_relationships = new HashMap<>(relationships);
+        m_sortPrefixes = Collections.unmodifiableList(new ArrayList<>(sortPrefixes));
+    }
+
+    /**
+     * Creates a read-only Campaign directly over the supplied persistent maps, without copying them, so that data
+     * managers can take snapshots of themselves in constant time.  The relationship managers must be snapshots and the
+     * calendar must not be shared with anything that changes it.
+     * @param name The name of the Campaign.
+     * @param entities the Entities of the Campaign, keyed by ID.
+     * @param relationships read-only RelationshipManagers, keyed by Entity ID.
+     * @param timelineData the TimelineEntry data for the Campaign, keyed by ID.
+     * @param cal the campaign calendar.
+     * @param sortPrefixes the leading words ignored when sorting Entity names, such as 'The'.
+     */
+    Campaign(String name, PersistentHashMap<UUID, Entity> entities, PersistentHashMap<UUID, RelationshipManager> relationships,
+             PersistentHashMap<UUID, TimelineEntry> timelineData, CampaignCalendar cal, List<String> sortPrefixes) {
+        m_name = name;
+        m_entities = asSet(entities.values());
+        m_timelineEntries = asSet(timelineData.values());
+        m_calendar = cal;
+        m_relationships = relationships.asMap();
+        m_sortPrefixes = Collections.unmodifiableList(new ArrayList<>(sortPrefixes));
+    }
+
+    /**
+     * Returns a read-only Set view of the supplied collection, whose elements must already be distinct.
+     * @param <T> the type of the elements.
+     * @param values the distinct values to view.
+     * @return a read-only Set view of the values.
+     */
+    private static <T> Set<T> asSet(final Collection<T> values) {
+        return new AbstractSet<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return values.iterator();
+            }
+
+            @Override
+            public int size() {
+                return values.size();
+            }
+        };
     }
 
     /**
@@ -88,6 +154,14 @@ public class Campaign {
         return m_calendar;
     }
 
+    /**
+     * Returns the leading words ignored when sorting Entity names in this Campaign.
+     * @return the leading words ignored when sorting Entity names in this Campaign.
+     */
+    public List<String> getSortPrefixes() {
+        return m_sortPrefixes;
+    }
+
     /**
      * Returns a Set of Relationships for the Entity associated with the given ID.  If no relationships exist for
      * the Entity ID, null is returned.
@@ -2,17 +2,24 @@ package campaignencyclopedia.data;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
- * A class to represent the Campaign's calendar.
+ * A class to represent the Campaign's calendar.  Besides listing the months, the calendar does date arithmetic: each
+ * {@link CampaignDate} has an ordinal, a count of months from the first month of year zero, so adding months to a date
+ * or finding the months between two dates takes the same time however far apart they are.
  * @author adam
  */
 public class CampaignCalendar {
 
     private final List<Month> m_months;
 
+    /** The position of each month in the year, kept in step with the months list. */
+    private final Map<Month, Integer> m_monthPositions;
+
     /** Creates a new CampainCalendar with default values.      */
     public CampaignCalendar() {
         this(Season.getAsMonths());
@@ -31,6 +38,7 @@ public class CampaignCalendar {
             months = new ArrayList<>(Season.getAsMonths());
         }
         m_months = new ArrayList<>();
+        m_monthPositions = new HashMap<>();
         processNewMonths(months);
     }
 
@@ -65,18 +73,7 @@ public class CampaignCalendar {
      * @return the month after the supplied one.
      */
     public Month getMonthAfter(Month month) {
-        if (hasMonth(month)) {
-            // if not the last month...
-            if (month.getIndex() != m_months.size() - 1) {
-                // return the one after this one.
-                return m_months.get(month.getIndex() + 1);
-            } else {
-                // return the first month,.
-                return m_months.get(0);
-            }
-        } else {
-            throw new IllegalStateException("Supplied month does not exist in calendar.");
-        }
+        return m_months.get((getPosition(month) + 1) % m_months.size());
     }
 
     /**
@@ -85,18 +82,66 @@ public class CampaignCalendar {
      * @return the month before the supplied one.
      */
     public Month getMonthBefore(Month month) {
-        if (hasMonth(month)) {
-            // If not the first month...
-            if (month.getIndex() != 0) {
-                // Return the month previous to this one
-                return m_months.get(month.getIndex() - 1);
-            } else {
-                // Return the last month
-                return m_months.get(m_months.size() - 1);
-            }
-        } else {
-            throw new IllegalStateException("Supplied month does not exist in calendar.");
+        return m_months.get((getPosition(month) + m_months.size() - 1) % m_months.size());
+    }
+
+    /**
+     * Returns the ordinal of the supplied date: the number of months from the first month of year zero to it, negative
+     * for dates before year zero.
+     * @param date the date, whose month must be in this calendar.
+     * @return the ordinal of the supplied date.
+     * @throws IllegalStateException if the date's month does not exist in this calendar.
+     */
+    public int getOrdinal(CampaignDate date) {
+        return date.getYear() * m_months.size() + getPosition(date.getMonth());
+    }
+
+    /**
+     * Returns the date with the supplied ordinal.
+     * @param ordinal the number of months from the first month of year zero.
+     * @return the date with the supplied ordinal.
+     */
+    public CampaignDate getDate(int ordinal) {
+        int count = m_months.size();
+        int year = ordinal / count;
+        int position = ordinal % count;
+        // Round toward the earlier year for dates before year zero.
+        if (position < 0) {
+            year -= 1;
+            position += count;
         }
+        return new CampaignDate(m_months.get(position), year);
+    }
+
+    /**
+     * Returns the date the supplied number of months after the supplied one.
+     * @param date the date to count from, whose month must be in this calendar.
+     * @param months the number of months to add, may be negative.
+     * @return the date the supplied number of months after the supplied one.
+     * @throws IllegalStateException if the date's month does not exist in this calendar.
+     */
+    public CampaignDate add(CampaignDate date, int months) {
+        return getDate(getOrdinal(date) + months);
+    }
+
+    /**
+     * Returns the number of months from one date to another.
+     * @param from the date to count from, whose month must be in this calendar.
+     * @param to the date to count to, whose month must be in this calendar.
+     * @return the number of months from one date to the other, negative if 'to' is before 'from'.
+     * @throws IllegalStateException if either date's month does not exist in this calendar.
+     */
+    public int difference(CampaignDate from, CampaignDate to) {
+        return getOrdinal(to) - getOrdinal(from);
+    }
+
+    /**
+     * Returns the first date of the supplied year.
+     * @param year the year.
+     * @return the date of the first month of the supplied year.
+     */
+    public CampaignDate getFirstDateOf(int year) {
+        return new CampaignDate(m_months.get(0), year);
     }
 
     public void update(List<Month> months) {
@@ -107,6 +152,7 @@ public class CampaignCalendar {
         m_months.clear();
         m_months.addAll(months);
         Collections.sort(m_months);
+        indexMonths();
     }
 
     /**
@@ -115,6 +161,7 @@ public class CampaignCalendar {
      */
     public void addMonth(Month month) {
         m_months.add(month.getIndex(), month);
+        indexMonths();
     }
 
     /**
@@ -124,7 +171,21 @@ public class CampaignCalendar {
      * otherwise or if the supplied name is empty or null.
      */
     public boolean hasMonth(Month month) {
-        return m_months.contains(month);
+        return m_monthPositions.containsKey(month);
+    }
+
+    /**
+     * Returns the position of the supplied month in the year.
+     * @param month the month.
+     * @return the position of the month, from zero for the first month of the year.
+     * @throws IllegalStateException if the month does not exist in this calendar.
+     */
+    private int getPosition(Month month) {
+        Integer position = m_monthPositions.get(month);
+        if (position == null) {
+            throw new IllegalStateException("Supplied month does not exist in calendar.");
+        }
+        return position;
     }
 
     /**
@@ -134,6 +195,15 @@ public class CampaignCalendar {
     private void processNewMonths(List<Month> months) {
         m_months.clear();
         m_months.addAll(months);
+        indexMonths();
+    }
+
+    /** Rebuilds the map of month positions from the months list. */
+    private void indexMonths() {
+        m_monthPositions.clear();
+        for (int i = 0; i < m_months.size(); i++) {
+            m_monthPositions.put(m_months.get(i), i);
+        }
     }
 
     /** {@inheritDoc} */
@@ -8,6 +8,7 @@ package campaignencyclopedia.data;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 /**
  * Interface describing campaign data management functions.
@@ -16,11 +17,40 @@ import java.util.UUID;
 public interface CampaignDataManager extends DataAccessor {
 
     /**
-     * Adds a listener to this data manager.
+     * Adds a listener to this data manager.  Notifications are queued and delivered asynchronously, in batches, on the
+     * Swing event dispatch thread, with repeated changes to the same item merged.
      * @param listener the listener to be added.
      */
     void addListener(CampaignDataManagerListener listener);
 
+    /**
+     * Adds a listener to this data manager, to be notified on the supplied Executor rather than the event dispatch
+     * thread.  Batches are still delivered one at a time and in order.
+     * @param listener the listener to be added.
+     * @param executor the Executor to notify the listener on.
+     */
+    void addListener(CampaignDataManagerListener listener, Executor executor);
+
+    /**
+     * Returns the queue depth and latency counters of every listener, to help find those that are slow to keep up.
+     * @return the delivery counters of every listener.
+     */
+    List<CampaignDataManagerListenerDispatcher.Statistics> getListenerStatistics();
+
+    /**
+     * Begins a batch of changes on the calling thread.  Until the matching {@link #commit()}, listeners are not
+     * notified of changes made on this thread; when the outermost batch commits they receive one notification per
+     * changed Entity or TimelineEntry.  Changes made on other threads are not held back.  Batches may nest, and every
+     * call must be paired with a call to commit on the same thread, typically in a finally block.
+     */
+    void beginBatch();
+
+    /**
+     * Ends a batch of changes begun on the calling thread with {@link #beginBatch()}, notifying listeners if it was
+     * the outermost.
+     */
+    void commit();
+
     /** {@inheritDoc} */
     void addOrUpdateAllRelationships(UUID entity, RelationshipManager relMgr);
 
@@ -36,6 +66,12 @@ public interface CampaignDataManager extends DataAccessor {
     /** {@inheritDoc} */
     List<Entity> getAllEntities();
 
+    /** {@inheritDoc} */
+    List<Entity> getEntities(int offset, int count);
+
+    /** {@inheritDoc} */
+    List<Entity> getEntitiesFrom(String name, int count);
+
     /** {@inheritDoc} */
     CampaignCalendar getCalendar();
 
@@ -53,6 +89,12 @@ public interface CampaignDataManager extends DataAccessor {
     /** {@inheritDoc} */
     RelationshipManager getRelationshipsForEntity(UUID entity);
 
+    /** {@inheritDoc} */
+    Set<Relationship> getInboundRelationships(UUID entity);
+
+    /** {@inheritDoc} */
+    RelationshipGraph getRelationshipGraph();
+
     /**
      * Returns the save file name.
      * @return the save file name.
@@ -65,6 +107,9 @@ public interface CampaignDataManager extends DataAccessor {
      */
     Set<TimelineEntry> getTimelineData();
 
+    /** {@inheritDoc} */
+    Set<TimelineEntry> getTimelineEntriesFor(UUID entity);
+
     /** {@inheritDoc} */
     void removeEntity(UUID id);
 
@@ -86,6 +131,15 @@ public interface CampaignDataManager extends DataAccessor {
      */
     void setData(Campaign campaign);
 
+    /**
+     * Makes the Entity with the supplied ID secret or public.  Making an Entity secret also makes secret every public
+     * Relationship it owns or is the target of, and every public TimelineEntry associated with it; making it public
+     * again changes only the Entity.  The change is made at once, and listeners are notified of it in one batch.
+     * @param id the ID of the Entity, if no such Entity exists the call is ignored.
+     * @param isSecret true to make the Entity secret, false to make it public.
+     */
+    void setEntitySecrecy(UUID id, boolean isSecret);
+
     /**
      * Sets the save file name.
      * @param filename the file name of the campaign.
@@ -32,6 +32,9 @@ public interface CampaignDataManagerListener {
      */
     public void timelineEntryRemoved(UUID id);
     
-    /** Called when all data from the campaign is cleared. */
+    /**
+     * Called when all data from the campaign is cleared.  If it was replaced with new data, that data is already in
+     * the data manager when this is called.
+     */
     public void clearAllData();
 }
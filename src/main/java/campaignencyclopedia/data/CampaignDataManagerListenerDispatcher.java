@@ -0,0 +1,448 @@
+package campaignencyclopedia.data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+/**
+ * Queues the notifications for a single CampaignDataManagerListener and delivers them asynchronously, in batches, on
+ * an Executor of the listener's choosing; by default the Swing event dispatch thread.  The thread making a change
+ * only ever records it, so a slow listener cannot stall changes, and repeated changes to the same Entity or
+ * TimelineEntry made before the listener catches up are merged so that it only hears about the latest one.
+ * <p>
+ * Entity changes arrive as {@link EntityChangeEvent}s.  Listeners implementing {@link EntityChangeListener} receive
+ * the merged event, spanning everything since their last delivery; other listeners are sent the Entity's latest state,
+ * or its removal.
+ * <p>
+ * Batches are delivered one at a time, in order, whatever the Executor.  Counters of the queue depth and the delay
+ * between a change and its delivery are kept so that slow listeners can be found.
+ *
+ * @author Keith
+ */
+public class CampaignDataManagerListenerDispatcher {
+
+    /** A Logger. */
+    private static final Logger LOGGER = Logger.getLogger(CampaignDataManagerListenerDispatcher.class.getName());
+
+    /** Batches taking longer than this for the listener to handle are logged. */
+    private static final long SLOW_DELIVERY_MILLIS = 50;
+
+    /** An Executor that runs tasks on the Swing event dispatch thread, in order. */
+    public static final Executor EVENT_DISPATCH_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            SwingUtilities.invokeLater(task);
+        }
+    };
+
+    /** The listener notifications are delivered to. */
+    private final CampaignDataManagerListener m_listener;
+
+    /** The Executor notifications are delivered on. */
+    private final Executor m_executor;
+
+    /** Delivers the pending notifications, shared rather than created for every batch. */
+    private final Runnable m_drain;
+
+    /** True if the listener has been removed, and so should hear nothing further. */
+    private boolean m_closed;
+
+    /** True if a delivery is scheduled or running. */
+    private boolean m_scheduled;
+
+    /** True if all data was cleared since the last delivery. */
+    private boolean m_cleared;
+
+    /** The merged changes to each Entity since the last delivery, in the order first changed. */
+    private final Map<UUID, EntityChangeEvent> m_entities;
+
+    /** The latest state of each TimelineEntry changed since the last delivery, null if removed, in the order first changed. */
+    private final Map<UUID, TimelineEntry> m_entries;
+
+    /** When the oldest pending notification was queued, as System.nanoTime(). */
+    private long m_oldestQueuedNanos;
+
+    /** The number of notifications received. */
+    private long m_received;
+
+    /** The number of notifications delivered, after merging. */
+    private long m_delivered;
+
+    /** The number of batches delivered. */
+    private long m_batches;
+
+    /** The largest number of notifications that have been waiting at once. */
+    private int m_maxQueueDepth;
+
+    /** The total time between the oldest notification of each batch being queued and the batch being handled. */
+    private long m_totalLatencyNanos;
+
+    /** The longest time between a notification being queued and being handled. */
+    private long m_maxLatencyNanos;
+
+    /**
+     * Creates a new CampaignDataManagerListenerDispatcher.
+     * @param listener the listener to deliver notifications to.
+     * @param executor the Executor to deliver notifications on.
+     */
+    public CampaignDataManagerListenerDispatcher(CampaignDataManagerListener listener, Executor executor) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Parameter 'listener' must not be null.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Parameter 'executor' must not be null.");
+        }
+        m_listener = listener;
+        m_executor = executor;
+        m_drain = new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+        m_entities = new LinkedHashMap<>();
+        m_entries = new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns the listener notifications are delivered to.
+     * @return the listener notifications are delivered to.
+     */
+    public CampaignDataManagerListener getListener() {
+        return m_listener;
+    }
+
+    /** Stops all further deliveries, discarding anything still queued. */
+    public synchronized void close() {
+        m_closed = true;
+        m_cleared = false;
+        m_entities.clear();
+        m_entries.clear();
+    }
+
+    /**
+     * Queues a change to an Entity, merging it with any change to the same Entity still waiting.
+     * @param event the change.
+     */
+    public void entityChanged(EntityChangeEvent event) {
+        boolean schedule;
+        synchronized (this) {
+            if (m_closed) {
+                return;
+            }
+            schedule = enqueue();
+            EntityChangeEvent earlier = m_entities.get(event.getId());
+            if (earlier == null) {
+                m_entities.put(event.getId(), event);
+            } else {
+                EntityChangeEvent merged = earlier.merge(event);
+                if (merged == null) {
+                    // Added and removed again before the listener heard of it.
+                    m_entities.remove(event.getId());
+                } else {
+                    m_entities.put(event.getId(), merged);
+                }
+            }
+        }
+        if (schedule) {
+            m_executor.execute(m_drain);
+        }
+    }
+
+    /**
+     * Queues the addition or update of a TimelineEntry.
+     * @param tle the TimelineEntry.
+     */
+    public void timelineEntryAddedOrUpdated(TimelineEntry tle) {
+        boolean schedule;
+        synchronized (this) {
+            if (m_closed) {
+                return;
+            }
+            schedule = enqueue();
+            m_entries.put(tle.getId(), tle);
+        }
+        if (schedule) {
+            m_executor.execute(m_drain);
+        }
+    }
+
+    /**
+     * Queues the removal of a TimelineEntry.
+     * @param id the ID of the removed TimelineEntry.
+     */
+    public void timelineEntryRemoved(UUID id) {
+        boolean schedule;
+        synchronized (this) {
+            if (m_closed) {
+                return;
+            }
+            schedule = enqueue();
+            m_entries.put(id, null);
+        }
+        if (schedule) {
+            m_executor.execute(m_drain);
+        }
+    }
+
+    /** Queues the clearing of all data, discarding anything queued before it. */
+    public void clearAllData() {
+        boolean schedule;
+        synchronized (this) {
+            if (m_closed) {
+                return;
+            }
+            schedule = enqueue();
+            // Anything queued before the clear is now irrelevant.
+            m_entities.clear();
+            m_entries.clear();
+            m_cleared = true;
+        }
+        if (schedule) {
+            m_executor.execute(m_drain);
+        }
+    }
+
+    /**
+     * Returns the current counters for this dispatcher.
+     * @return the current counters for this dispatcher.
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(getListenerName(), getQueueDepth(), m_maxQueueDepth, m_received,
+                              m_delivered, m_batches, m_totalLatencyNanos, m_maxLatencyNanos);
+    }
+
+    /**
+     * Returns a readable name for the listener, for statistics and logging.
+     * @return the name of the listener's class.
+     */
+    private String getListenerName() {
+        String name = m_listener.getClass().getSimpleName();
+        return name.isEmpty() ? m_listener.getClass().getName() : name;
+    }
+
+    /**
+     * Records the arrival of a notification.  Must hold the monitor, but the delivery must be scheduled without it, so
+     * that an Executor running tasks immediately does not call the listener while it is held.
+     * @return true if the caller must schedule a delivery, false if one is already pending.
+     */
+    private boolean enqueue() {
+        m_received++;
+        if (getQueueDepth() == 0) {
+            m_oldestQueuedNanos = System.nanoTime();
+        }
+        if (m_scheduled) {
+            return false;
+        }
+        m_scheduled = true;
+        return true;
+    }
+
+    /**
+     * Returns the number of notifications waiting.  Must hold the monitor.
+     * @return the number of notifications waiting.
+     */
+    private int getQueueDepth() {
+        return m_entities.size() + m_entries.size() + (m_cleared ? 1 : 0);
+    }
+
+    /** Delivers everything queued to the listener, then schedules another delivery if more arrived meanwhile. */
+    private void drain() {
+        boolean cleared;
+        List<EntityChangeEvent> entities;
+        List<Map.Entry<UUID, TimelineEntry>> entries;
+        long queuedNanos;
+        synchronized (this) {
+            if (m_closed) {
+                m_scheduled = false;
+                return;
+            }
+            cleared = m_cleared;
+            entities = new ArrayList<>(m_entities.values());
+            entries = new ArrayList<>(m_entries.entrySet());
+            queuedNanos = m_oldestQueuedNanos;
+            m_maxQueueDepth = Math.max(m_maxQueueDepth, getQueueDepth());
+            m_cleared = false;
+            m_entities.clear();
+            m_entries.clear();
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            if (cleared) {
+                m_listener.clearAllData();
+            }
+            for (EntityChangeEvent event : entities) {
+                if (m_listener instanceof EntityChangeListener) {
+                    ((EntityChangeListener) m_listener).entityChanged(event);
+                } else if (event.isRemoved()) {
+                    m_listener.dataRemoved(event.getId());
+                } else {
+                    m_listener.dataAddedOrUpdated(event.getEntity());
+                }
+            }
+            for (Map.Entry<UUID, TimelineEntry> entry : entries) {
+                if (entry.getValue() == null) {
+                    m_listener.timelineEntryRemoved(entry.getKey());
+                } else {
+                    m_listener.timelineEntryAddedOrUpdated(entry.getValue());
+                }
+            }
+        } finally {
+            long endNanos = System.nanoTime();
+            int count = entities.size() + entries.size() + (cleared ? 1 : 0);
+            long handlingMillis = TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+            if (handlingMillis >= SLOW_DELIVERY_MILLIS) {
+                LOGGER.fine("Listener " + getListenerName() + " took " + handlingMillis + "ms to handle "
+                        + count + " notifications.");
+            }
+            boolean again;
+            synchronized (this) {
+                m_delivered += count;
+                m_batches++;
+                m_totalLatencyNanos += endNanos - queuedNanos;
+                m_maxLatencyNanos = Math.max(m_maxLatencyNanos, endNanos - queuedNanos);
+
+                // Stay scheduled throughout delivery so batches never overlap, then go again if anything arrived.
+                again = !m_closed && getQueueDepth() > 0;
+                m_scheduled = again;
+            }
+            if (again) {
+                m_executor.execute(m_drain);
+            }
+        }
+    }
+
+    /** A read-only copy of the counters of a dispatcher. */
+    public static final class Statistics {
+
+        /** The name of the listener. */
+        private final String m_listenerName;
+
+        /** The number of notifications waiting. */
+        private final int m_queueDepth;
+
+        /** The largest number of notifications that have been waiting at once. */
+        private final int m_maxQueueDepth;
+
+        /** The number of notifications received. */
+        private final long m_received;
+
+        /** The number of notifications delivered, after merging. */
+        private final long m_delivered;
+
+        /** The number of batches delivered. */
+        private final long m_batches;
+
+        /** The total time between the oldest notification of each batch being queued and the batch being handled. */
+        private final long m_totalLatencyNanos;
+
+        /** The longest time between a notification being queued and being handled. */
+        private final long m_maxLatencyNanos;
+
+        /**
+         * Creates a new Statistics.
+         * @param listenerName the name of the listener.
+         * @param queueDepth the number of notifications waiting.
+         * @param maxQueueDepth the largest number of notifications that have been waiting at once.
+         * @param received the number of notifications received.
+         * @param delivered the number of notifications delivered, after merging.
+         * @param batches the number of batches delivered.
+         * @param totalLatencyNanos the total latency of all batches.
+         * @param maxLatencyNanos the largest latency of any batch.
+         */
+        private Statistics(String listenerName, int queueDepth, int maxQueueDepth, long received, long delivered,
+                           long batches, long totalLatencyNanos, long maxLatencyNanos) {
+            m_listenerName = listenerName;
+            m_queueDepth = queueDepth;
+            m_maxQueueDepth = maxQueueDepth;
+            m_received = received;
+            m_delivered = delivered;
+            m_batches = batches;
+            m_totalLatencyNanos = totalLatencyNanos;
+            m_maxLatencyNanos = maxLatencyNanos;
+        }
+
+        /**
+         * Returns the name of the listener.
+         * @return the name of the listener.
+         */
+        public String getListenerName() {
+            return m_listenerName;
+        }
+
+        /**
+         * Returns the number of notifications waiting.
+         * @return the number of notifications waiting.
+         */
+        public int getQueueDepth() {
+            return m_queueDepth;
+        }
+
+        /**
+         * Returns the largest number of notifications that have been waiting at once.
+         * @return the largest number of notifications that have been waiting at once.
+         */
+        public int getMaxQueueDepth() {
+            return m_maxQueueDepth;
+        }
+
+        /**
+         * Returns the number of notifications received.
+         * @return the number of notifications received.
+         */
+        public long getReceived() {
+            return m_received;
+        }
+
+        /**
+         * Returns the number of notifications delivered, which is less than received when changes were merged.
+         * @return the number of notifications delivered.
+         */
+        public long getDelivered() {
+            return m_delivered;
+        }
+
+        /**
+         * Returns the number of batches delivered.
+         * @return the number of batches delivered.
+         */
+        public long getBatches() {
+            return m_batches;
+        }
+
+        /**
+         * Returns the average time from the oldest notification of a batch being queued to the listener finishing
+         * with it.
+         * @return the average latency in milliseconds, zero if nothing was delivered.
+         */
+        public double getAverageLatencyMillis() {
+            if (m_batches == 0) {
+                return 0;
+            }
+            return m_totalLatencyNanos / (m_batches * 1000000.0);
+        }
+
+        /**
+         * Returns the longest time from a notification being queued to the listener finishing with it.
+         * @return the longest latency in milliseconds.
+         */
+        public double getMaxLatencyMillis() {
+            return m_maxLatencyNanos / 1000000.0;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return String.format("%s: queued %d (max %d), received %d, delivered %d in %d batches, latency avg %.1fms max %.1fms",
+                                 m_listenerName, m_queueDepth, m_maxQueueDepth, m_received, m_delivered, m_batches,
+                                 getAverageLatencyMillis(), getMaxLatencyMillis());
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package campaignencyclopedia.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * Manages the listeners of a CampaignDataManager and delivers notifications to them.  Notifications may be batched:
+ * between {@link #beginBatch()} and the matching {@link #commit()} changes are only recorded, and when the outermost
+ * batch commits each listener receives at most one notification per changed Entity or TimelineEntry.  Changes to an
+ * Entity are recorded as {@link EntityChangeEvent}s and merged, so the notification carries the state before the first
+ * change and after the last, and the net change to its Relationships.
+ * <p>
+ * The support is thread safe.  Batches belong to the thread that opens them: a batch only holds back the changes
+ * made on its own thread, so changes made meanwhile on other threads are delivered as usual, or held by their own
+ * threads' batches.  Each listener is wrapped in a {@link CampaignDataManagerListenerDispatcher}, which
+ * queues its notifications and delivers them asynchronously on the listener's chosen Executor, so the thread making a
+ * change never waits on a listener.  The dispatchers are held in a copy-on-write set, so notifying them needs no
+ * copying or locking.
+ *
+ * @author Keith
+ */
+public class CampaignDataManagerListenerSupport {
+
+    /** A Logger. */
+    private static final Logger LOGGER = Logger.getLogger(CampaignDataManagerListenerSupport.class.getName());
+
+    /** The dispatchers of the listeners on the CDM, copied on write since it is iterated far more often than it changes. */
+    private final Set<CampaignDataManagerListenerDispatcher> m_listeners;
+
+    /** The batch open on each thread, if any.  Only ever touched by its own thread, so it needs no locking. */
+    private final ThreadLocal<Batch> m_batch;
+
+    /** Creates a new CampaignDataManagerListenerSupport with no listeners. */
+    public CampaignDataManagerListenerSupport() {
+        m_listeners = new CopyOnWriteArraySet<>();
+        m_batch = new ThreadLocal<>();
+    }
+
+    /**
+     * Adds a listener, to be notified on the Swing event dispatch thread.
+     * @param listener the listener to be added, null is ignored.
+     */
+    public void addListener(CampaignDataManagerListener listener) {
+        addListener(listener, CampaignDataManagerListenerDispatcher.EVENT_DISPATCH_THREAD);
+    }
+
+    /**
+     * Adds a listener, to be notified on the supplied Executor.  Adding a listener that is already present does nothing.
+     * @param listener the listener to be added, null is ignored.
+     * @param executor the Executor to notify the listener on.
+     */
+    public synchronized void addListener(CampaignDataManagerListener listener, Executor executor) {
+        if (listener != null && findDispatcher(listener) == null) {
+            m_listeners.add(new CampaignDataManagerListenerDispatcher(listener, executor));
+        }
+    }
+
+    /**
+     * Removes a listener.  Any notifications still queued for it are discarded.
+     * @param listener the listener to be removed.
+     */
+    public synchronized void removeListener(CampaignDataManagerListener listener) {
+        CampaignDataManagerListenerDispatcher dispatcher = findDispatcher(listener);
+        if (dispatcher != null) {
+            m_listeners.remove(dispatcher);
+            dispatcher.close();
+            LOGGER.fine("Removed listener, " + dispatcher.getStatistics());
+        }
+    }
+
+    /**
+     * Returns the delivery counters of every listener, to help find those that are slow to keep up.
+     * @return the delivery counters of every listener.
+     */
+    public List<CampaignDataManagerListenerDispatcher.Statistics> getListenerStatistics() {
+        List<CampaignDataManagerListenerDispatcher.Statistics> stats = new ArrayList<>();
+        for (CampaignDataManagerListenerDispatcher dispatcher : m_listeners) {
+            stats.add(dispatcher.getStatistics());
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the dispatcher of the supplied listener.
+     * @param listener the listener.
+     * @return the dispatcher of the listener, or null if it is not present.
+     */
+    private CampaignDataManagerListenerDispatcher findDispatcher(CampaignDataManagerListener listener) {
+        for (CampaignDataManagerListenerDispatcher dispatcher : m_listeners) {
+            if (dispatcher.getListener() == listener) {
+                return dispatcher;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Begins a batch on the calling thread, holding the notifications of changes made on it until the matching call
+     * to {@link #commit()}, which must be made on the same thread.  Batches may nest.
+     */
+    public void beginBatch() {
+        Batch batch = m_batch.get();
+        if (batch == null) {
+            batch = new Batch();
+            m_batch.set(batch);
+        }
+        batch.depth++;
+    }
+
+    /**
+     * Ends a batch on the calling thread.  When the outermost batch ends, listeners are sent one notification for
+     * each Entity and TimelineEntry changed on this thread during it: removals first, then additions and updates.
+     * @throws IllegalStateException if no batch is open on the calling thread.
+     */
+    public void commit() {
+        Batch batch = m_batch.get();
+        if (batch == null) {
+            throw new IllegalStateException("commit() called without a matching beginBatch() on this thread.");
+        }
+        batch.depth--;
+        if (batch.depth > 0) {
+            return;
+        }
+
+        // Close the batch before notifying, in case a listener makes further changes.
+        m_batch.remove();
+        List<EntityChangeEvent> entityChanges = new ArrayList<>(batch.entityChanges.values());
+        List<UUID> removedEntries = new ArrayList<>(batch.removedTimelineEntries);
+        List<TimelineEntry> updatedEntries = new ArrayList<>(batch.updatedTimelineEntries.values());
+
+        for (CampaignDataManagerListenerDispatcher cdml : m_listeners) {
+            for (EntityChangeEvent event : entityChanges) {
+                if (event.isRemoved()) {
+                    cdml.entityChanged(event);
+                }
+            }
+            for (EntityChangeEvent event : entityChanges) {
+                if (!event.isRemoved()) {
+                    cdml.entityChanged(event);
+                }
+            }
+            for (UUID id : removedEntries) {
+                cdml.timelineEntryRemoved(id);
+            }
+            for (TimelineEntry tle : updatedEntries) {
+                cdml.timelineEntryAddedOrUpdated(tle);
+            }
+        }
+    }
+
+    /**
+     * Returns true if a batch is currently open on the calling thread.
+     * @return true if a batch is currently open on the calling thread, false otherwise.
+     */
+    public boolean isBatching() {
+        return m_batch.get() != null;
+    }
+
+    /**
+     * Notifies listeners that an Entity was added, updated or removed, or that its Relationships changed.
+     * @param event the change, null is ignored since there is nothing for listeners to show.
+     */
+    public void fireEntityChanged(EntityChangeEvent event) {
+        if (event == null) {
+            return;
+        }
+        Batch batch = m_batch.get();
+        if (batch != null) {
+            EntityChangeEvent earlier = batch.entityChanges.get(event.getId());
+            if (earlier == null) {
+                batch.entityChanges.put(event.getId(), event);
+            } else {
+                EntityChangeEvent merged = earlier.merge(event);
+                if (merged == null) {
+                    batch.entityChanges.remove(event.getId());
+                } else {
+                    batch.entityChanges.put(event.getId(), merged);
+                }
+            }
+            return;
+        }
+        for (CampaignDataManagerListenerDispatcher cdml : m_listeners) {
+            cdml.entityChanged(event);
+        }
+    }
+
+    /**
+     * Notifies listeners of Relationships gained and lost, with one event for each Entity affected.  A Relationship
+     * affects the Entity that owns it and, if both ends are tracked, the Entity it points at as well.  Entities the
+     * accessor does not know, such as one just removed, are skipped.
+     * @param accessor the accessor to look the affected Entities up in.
+     * @param added the Relationships gained.
+     * @param removed the Relationships lost.
+     * @param bothEnds true if a Relationship belongs to both of its ends, false if only to its owner.
+     */
+    public void fireRelationshipsChanged(DataAccessor accessor, Collection<Relationship> added,
+                                         Collection<Relationship> removed, boolean bothEnds) {
+        Map<UUID, Set<Relationship>> addedByEntity = groupByEntity(added, bothEnds);
+        Map<UUID, Set<Relationship>> removedByEntity = groupByEntity(removed, bothEnds);
+        Set<UUID> affected = new LinkedHashSet<>(removedByEntity.keySet());
+        affected.addAll(addedByEntity.keySet());
+
+        Set<Relationship> none = Collections.emptySet();
+        for (UUID id : affected) {
+            Entity entity = accessor.getEntity(id);
+            if (entity != null) {
+                Set<Relationship> entityAdded = addedByEntity.get(id);
+                Set<Relationship> entityRemoved = removedByEntity.get(id);
+                fireEntityChanged(EntityChangeEvent.relationshipsChanged(entity,
+                                                                         entityAdded == null ? none : entityAdded,
+                                                                         entityRemoved == null ? none : entityRemoved));
+            }
+        }
+    }
+
+    /**
+     * Groups Relationships by the Entities they belong to.
+     * @param rels the Relationships to group.
+     * @param bothEnds true if a Relationship belongs to both of its ends, false if only to its owner.
+     * @return the Relationships of each Entity, in the order first seen.
+     */
+    private static Map<UUID, Set<Relationship>> groupByEntity(Collection<Relationship> rels, boolean bothEnds) {
+        Map<UUID, Set<Relationship>> grouped = new LinkedHashMap<>();
+        for (Relationship rel : rels) {
+            addTo(grouped, rel.getEntityId(), rel);
+            if (bothEnds) {
+                addTo(grouped, rel.getRelatedEntity(), rel);
+            }
+        }
+        return grouped;
+    }
+
+    /**
+     * Adds a Relationship to the set held for an Entity, creating the set if needed.
+     * @param grouped the sets of each Entity.
+     * @param id the ID of the Entity.
+     * @param rel the Relationship.
+     */
+    private static void addTo(Map<UUID, Set<Relationship>> grouped, UUID id, Relationship rel) {
+        Set<Relationship> rels = grouped.get(id);
+        if (rels == null) {
+            rels = new HashSet<>();
+            grouped.put(id, rels);
+        }
+        rels.add(rel);
+    }
+
+    /**
+     * Notifies listeners that the supplied TimelineEntry was added or updated.
+     * @param tle the TimelineEntry, null is ignored.
+     */
+    public void fireTimelineEntryAddedOrUpdated(TimelineEntry tle) {
+        if (tle == null) {
+            return;
+        }
+        Batch batch = m_batch.get();
+        if (batch != null) {
+            batch.removedTimelineEntries.remove(tle.getId());
+            batch.updatedTimelineEntries.put(tle.getId(), tle);
+            return;
+        }
+        for (CampaignDataManagerListenerDispatcher cdml : m_listeners) {
+            cdml.timelineEntryAddedOrUpdated(tle);
+        }
+    }
+
+    /**
+     * Notifies listeners that the TimelineEntry with the supplied ID was removed.
+     * @param id the ID of the removed TimelineEntry.
+     */
+    public void fireTimelineEntryRemoved(UUID id) {
+        Batch batch = m_batch.get();
+        if (batch != null) {
+            batch.updatedTimelineEntries.remove(id);
+            batch.removedTimelineEntries.add(id);
+            return;
+        }
+        for (CampaignDataManagerListenerDispatcher cdml : m_listeners) {
+            cdml.timelineEntryRemoved(id);
+        }
+    }
+
+    /**
+     * Notifies listeners that all data was cleared.  Any changes pending in a batch open on the calling thread are
+     * discarded, since they no longer apply; batches open on other threads are left alone.
+     */
+    public void fireClearAllData() {
+        Batch batch = m_batch.get();
+        if (batch != null) {
+            batch.entityChanges.clear();
+            batch.removedTimelineEntries.clear();
+            batch.updatedTimelineEntries.clear();
+        }
+        for (CampaignDataManagerListenerDispatcher cdml : m_listeners) {
+            cdml.clearAllData();
+        }
+    }
+
+    /** The changes held back by the batches open on one thread. */
+    private static final class Batch {
+
+        /** The number of batches open on the thread. */
+        private int depth;
+
+        /** The merged changes to each Entity during the batch, keyed by ID, in the order first changed. */
+        private final Map<UUID, EntityChangeEvent> entityChanges = new LinkedHashMap<>();
+
+        /** Timeline Entries added or updated during the batch, keyed by ID, in the order first changed. */
+        private final Map<UUID, TimelineEntry> updatedTimelineEntries = new LinkedHashMap<>();
+
+        /** IDs of Timeline Entries removed during the batch. */
+        private final Set<UUID> removedTimelineEntries = new LinkedHashSet<>();
+    }
+}
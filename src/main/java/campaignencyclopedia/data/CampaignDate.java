@@ -0,0 +1,93 @@
+package campaignencyclopedia.data;
+
+import java.util.Objects;
+
+/**
+ * A month of a year in a campaign.  CampaignDates order by year and then by month; arithmetic on them, which depends
+ * on how many months the year has, is done by the {@link CampaignCalendar}.
+ *
+ * @author adam
+ */
+public final class CampaignDate implements Comparable<CampaignDate> {
+
+    /** The month. */
+    private final Month m_month;
+
+    /** The year. */
+    private final int m_year;
+
+    /**
+     * Creates a new CampaignDate.
+     * @param month the month, must not be null.
+     * @param year the year.
+     * @throws IllegalArgumentException if month is null.
+     */
+    public CampaignDate(Month month, int year) {
+        if (month == null) {
+            throw new IllegalArgumentException("Parameter 'month' must not be null.");
+        }
+        m_month = month;
+        m_year = year;
+    }
+
+    /**
+     * Returns the month of this date.
+     * @return the month of this date.
+     */
+    public Month getMonth() {
+        return m_month;
+    }
+
+    /**
+     * Returns the year of this date.
+     * @return the year of this date.
+     */
+    public int getYear() {
+        return m_year;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int compareTo(CampaignDate t) {
+        if (m_year < t.m_year) {
+            return -1;
+        } else if (m_year > t.m_year) {
+            return 1;
+        }
+        return m_month.compareTo(t.m_month);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 89 * hash + Objects.hashCode(this.m_month);
+        hash = 89 * hash + this.m_year;
+        return hash;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final CampaignDate other = (CampaignDate) obj;
+        if (this.m_year != other.m_year) {
+            return false;
+        }
+        if (!Objects.equals(this.m_month, other.m_month)) {
+            return false;
+        }
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return m_month.getName() + " " + m_year;
+    }
+}
@@ -1,32 +1,141 @@
 package campaignencyclopedia.data;
 
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  *
  * @author adam
  */
 public class ComparisonTools {
-    
+
+    /** The leading words ignored when sorting names, unless a campaign configures its own. */
+    private static final List<String> DEFAULT_IGNORED_PREFIXES = Collections.unmodifiableList(Arrays.asList("the", "king", "lord", "lady"));
+
+    /** The collator used to build locale-aware sort keys. */
+    private static final Collator COLLATOR = Collator.getInstance();
+
+    /** The currently configured ignored prefixes, lower case and including their trailing space. */
+    private static volatile String[] s_prefixes = toPrefixArray(DEFAULT_IGNORED_PREFIXES);
+
+    /** Incremented every time the prefixes change so that previously computed sort keys can be detected as stale. */
+    private static volatile int s_generation = 0;
+
+    /**
+     * Returns the leading words that are ignored when sorting names by default.
+     * @return the default ignored prefixes.
+     */
+    public static List<String> getDefaultIgnoredPrefixes() {
+        return DEFAULT_IGNORED_PREFIXES;
+    }
+
+    /**
+     * Returns the leading words currently ignored when sorting names.
+     * @return the currently ignored prefixes, without trailing spaces.
+     */
+    public static List<String> getIgnoredPrefixes() {
+        List<String> prefixes = new ArrayList<>();
+        for (String prefix : s_prefixes) {
+            prefixes.add(prefix.substring(0, prefix.length() - 1));
+        }
+        return Collections.unmodifiableList(prefixes);
+    }
+
+    /**
+     * Sets the leading words ignored when sorting names.  Prefixes are stripped in the order supplied, each at most
+     * once, matching case-insensitively.  Any sort keys computed beforehand become stale and will be recomputed.
+     * @param prefixes the prefixes to ignore, null or empty entries are skipped.
+     */
+    public static synchronized void setIgnoredPrefixes(List<String> prefixes) {
+        String[] updated = toPrefixArray(prefixes);
+        if (!Arrays.equals(updated, s_prefixes)) {
+            s_prefixes = updated;
+            s_generation++;
+        }
+    }
+
     /**
-     * Trims the word 'The' from the beginning of Entity names so that it does not interfere with sorting.
-     * 
-     * ////  This should really be made configurable from within the application.  ////
-     * 
+     * Trims the configured prefixes, such as 'The', from the beginning of Entity names so that they do not interfere
+     * with sorting.
+     *
      * @param toTrim the String to modify.
      * @return a trimmed string for comparison that only uses the parts of the string that matter for sorting.
      */
     public static String trimForSort(String toTrim) {
-        if (toTrim.toLowerCase().startsWith("the ")) {
-            toTrim = toTrim.substring(4);
+        int start = 0;
+        for (String prefix : s_prefixes) {
+            if (toTrim.regionMatches(true, start, prefix, 0, prefix.length())) {
+                start += prefix.length();
+            }
         }
-        if (toTrim.toLowerCase().startsWith("king ")) {
-            toTrim = toTrim.substring(5);
+        return toTrim.substring(start);
+    }
+
+    /**
+     * Returns the sort key for the supplied name, using the configured prefixes and the default locale's collation.
+     * @param name the name to build a key for.
+     * @return the sort key for the supplied name.
+     */
+    public static SortKey getSortKey(String name) {
+        int generation = s_generation;
+        String trimmed = name == null ? "" : trimForSort(name);
+        return new SortKey(COLLATOR.getCollationKey(trimmed), generation);
+    }
+
+    /**
+     * Converts the supplied prefixes to the internal lower case, space terminated form.
+     * @param prefixes the prefixes to convert.
+     * @return the converted prefixes.
+     */
+    private static String[] toPrefixArray(List<String> prefixes) {
+        List<String> converted = new ArrayList<>();
+        if (prefixes != null) {
+            for (String prefix : prefixes) {
+                if (prefix != null && !prefix.trim().isEmpty()) {
+                    converted.add(prefix.trim().toLowerCase() + " ");
+                }
+            }
         }
-        if (toTrim.toLowerCase().startsWith("lord ")) {
-            toTrim = toTrim.substring(5);
+        return converted.toArray(new String[converted.size()]);
+    }
+
+    /**
+     * A precomputed key for sorting names, which remembers the prefix configuration it was built under.
+     */
+    public static final class SortKey implements Comparable<SortKey> {
+
+        /** The collation key of the trimmed name. */
+        private final CollationKey m_key;
+
+        /** The prefix configuration generation this key was built under. */
+        private final int m_generation;
+
+        /**
+         * Creates a new SortKey.
+         * @param key the collation key of the trimmed name.
+         * @param generation the prefix configuration generation the key was built under.
+         */
+        private SortKey(CollationKey key, int generation) {
+            m_key = key;
+            m_generation = generation;
+        }
+
+        /**
+         * Returns true if this key was built under the current prefix configuration.
+         * @return true if this key is current, false if it must be rebuilt.
+         */
+        public boolean isCurrent() {
+            return m_generation == s_generation;
         }
-        if (toTrim.toLowerCase().startsWith("lady ")) {
-            toTrim = toTrim.substring(5);
+
+        /** {@inheritDoc} */
+        @Override
+        public int compareTo(SortKey t) {
+            return m_key.compareTo(t.m_key);
         }
-        return toTrim;
     }
 }
\ No newline at end of file
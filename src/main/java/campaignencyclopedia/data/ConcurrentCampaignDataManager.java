@@ -0,0 +1,644 @@
+package campaignencyclopedia.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.StampedLock;
+import java.util.logging.Logger;
+import javax.swing.JOptionPane;
+
+
+/**
+ * A thread safe data management object that is used at run time to provide a mutable object containing the state of
+ * the entire Campaign.  Like {@link BidirectionalRelationshipCampaignDataManager}, relationships are tracked
+ * bidirectionally, so requests for relationships return those pointing "in" AND "out" from an entity.
+ * <p>
+ * Entities and timeline entries are held in persistent maps that are replaced, never changed, so looking them up
+ * needs no lock at all.  The remaining structures are guarded by a StampedLock: changes take the write lock, reads
+ * that span structures take the read lock or, where everything read is immutable, an optimistic read that is only
+ * retried under the lock if a change raced with it.  Listeners are always notified after the lock is released, so
+ * they may freely call back in to this manager.
+ *
+ * @author Keith
+ */
+public class ConcurrentCampaignDataManager implements CampaignDataManager {
+
+    /** A Logger. */
+    private static final Logger LOGGER = Logger.getLogger(ConcurrentCampaignDataManager.class.getName());
+
+    /** Guards every non-volatile field below. */
+    private final StampedLock m_lock;
+
+    /** The name of the campaign.  */
+    private volatile String m_campaignName;
+
+    /** A map of UUIDs to their associated Entities, replaced rather than changed so it can be read without locking. */
+    private volatile PersistentHashMap<UUID, Entity> m_entities;
+
+    /** The Entities of the campaign, kept in sorted order. */
+    private final SortedEntityIndex m_sortedEntities;
+
+    /** A read-only, sorted list of all Entities, or null if it must be rebuilt since the last change. */
+    private volatile List<Entity> m_entityList;
+
+    /** A manager for ALL relationships in the campaign. */
+    private final BidirectionalRelationshipManager m_relationships;
+
+    /** Read-only snapshots of the RelationshipManager of each Entity, as last handed out by {@link #getData()}. */
+    private volatile PersistentHashMap<UUID, RelationshipManager> m_relationshipSnapshots;
+
+    /** The IDs of the Entities whose relationship snapshots are out of date. */
+    private final Set<UUID> m_staleRelationships;
+
+    /** A map of UUIDs to their associated Timeline Entries, replaced rather than changed so it can be read without locking. */
+    private volatile PersistentHashMap<UUID, TimelineEntry> m_timelineData;
+
+    /** The Timeline Entries indexed by the Entity they are associated with. */
+    private final TimelineEntryIndex m_timelineByEntity;
+
+    /** The path to the file where the current campaign is stored, or null if no path exists. */
+    private volatile String m_filename;
+
+    /** The currently configured campaign calendar, replaced rather than changed once it has been published. */
+    private volatile CampaignCalendar m_cal;
+
+    /** The leading words ignored when sorting Entity names in this campaign. */
+    private volatile List<String> m_sortPrefixes;
+
+    /** The listeners on the CDM, and any batch of changes waiting to be sent to them. */
+    private final CampaignDataManagerListenerSupport m_listeners;
+
+    public ConcurrentCampaignDataManager() {
+        m_lock = new StampedLock();
+        m_campaignName = "New Campaign";
+        m_filename = null;
+
+        m_entities = PersistentHashMap.empty();
+        m_sortedEntities = new SortedEntityIndex();
+        m_entityList = null;
+        m_relationships = new BidirectionalRelationshipManager();
+        m_relationshipSnapshots = PersistentHashMap.empty();
+        m_staleRelationships = new HashSet<>();
+        m_timelineData = PersistentHashMap.empty();
+        m_timelineByEntity = new TimelineEntryIndex();
+        m_cal = new CampaignCalendar();
+        m_sortPrefixes = ComparisonTools.getDefaultIgnoredPrefixes();
+        m_listeners = new CampaignDataManagerListenerSupport();
+    }
+
+    /**
+     * Adds a listener to this data manager.
+     * @param listener the listener to be added.
+     */
+    @Override
+    public void addListener(CampaignDataManagerListener listener) {
+        m_listeners.addListener(listener);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addListener(CampaignDataManagerListener listener, Executor executor) {
+        m_listeners.addListener(listener, executor);
+    }
+
+    /**
+     * Removes a listener from this data manager.
+     * @param listener the listener to be removed.
+     */
+    @Override
+    public void removeListener(CampaignDataManagerListener listener) {
+        m_listeners.removeListener(listener);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beginBatch() {
+        m_listeners.beginBatch();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void commit() {
+        m_listeners.commit();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<CampaignDataManagerListenerDispatcher.Statistics> getListenerStatistics() {
+        return m_listeners.getListenerStatistics();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Entity getEntity(UUID id) {
+        return m_entities.get(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Entity> getAllEntities() {
+        List<Entity> entities = m_entityList;
+        if (entities != null) {
+            return entities;
+        }
+        // The index builds its snapshot lazily, which is a change, so the write lock is needed to do so.
+        long stamp = m_lock.writeLock();
+        try {
+            entities = m_sortedEntities.getSnapshot();
+            m_entityList = entities;
+            return entities;
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Entity> getEntities(int offset, int count) {
+        List<Entity> all = getAllEntities();
+        int from = Math.max(0, Math.min(offset, all.size()));
+        int to = Math.min(all.size(), from + Math.max(0, count));
+        return all.subList(from, to);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Entity> getEntitiesFrom(String name, int count) {
+        long stamp = m_lock.readLock();
+        try {
+            return m_sortedEntities.getPageFrom(name, count);
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addOrUpdateEntity(Entity entity) {
+        if (entity != null) {
+            Entity previous;
+            long stamp = m_lock.writeLock();
+            try {
+                previous = m_entities.get(entity.getId());
+                m_entities = m_entities.plus(entity.getId(), entity);
+                m_sortedEntities.update(previous, entity);
+                m_entityList = null;
+                m_staleRelationships.add(entity.getId());
+            } finally {
+                m_lock.unlockWrite(stamp);
+            }
+
+            // Alert Listeners
+            m_listeners.fireEntityChanged(EntityChangeEvent.entityUpdated(previous, entity));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addOrUpdateTimelineEntry(TimelineEntry entry) {
+        if (entry != null) {
+            long stamp = m_lock.writeLock();
+            try {
+                m_timelineByEntity.update(m_timelineData.get(entry.getId()), entry);
+                m_timelineData = m_timelineData.plus(entry.getId(), entry);
+            } finally {
+                m_lock.unlockWrite(stamp);
+            }
+        }
+        m_listeners.fireTimelineEntryAddedOrUpdated(entry);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void removeTimelineEntry(UUID id) {
+        if (id != null) {
+            long stamp = m_lock.writeLock();
+            try {
+                m_timelineByEntity.update(m_timelineData.get(id), null);
+                m_timelineData = m_timelineData.minus(id);
+            } finally {
+                m_lock.unlockWrite(stamp);
+            }
+        }
+        m_listeners.fireTimelineEntryRemoved(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void removeEntity(UUID id) {
+        if (id != null) {
+            Entity previous;
+            Set<Relationship> removed;
+            long stamp = m_lock.writeLock();
+            try {
+                // Remove the Entity
+                previous = m_entities.get(id);
+                m_sortedEntities.remove(previous);
+                m_entities = m_entities.minus(id);
+                m_entityList = null;
+
+                // Remove relationships for the removed Entity (in or out!)
+                m_staleRelationships.add(id);
+                m_staleRelationships.addAll(m_relationships.getRelationshipManagerForEntity(id).getAllAffectedIds());
+                removed = m_relationships.clearSingleEntityRelationships(id);
+            } finally {
+                m_lock.unlockWrite(stamp);
+            }
+
+            // Alert Listeners, the other ends of the removed relationships have lost them too.
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, none, removed, true);
+            m_listeners.fireEntityChanged(EntityChangeEvent.entityRemoved(id, previous, removed));
+        }
+    }
+
+    /**
+     * Updates the calendar in this CDM using the supplied one.
+     * @param cal the new calendar.
+     */
+    @Override
+    public void updateCalendar(CampaignCalendar cal) {
+        long stamp = m_lock.writeLock();
+        try {
+            CampaignCalendar updatedCal = new CampaignCalendar();
+            updatedCal.updateMonths(cal.getMonths());
+            for (TimelineEntry entry : m_timelineData.values()) {
+                if (!updatedCal.hasMonth(entry.getMonth())) {
+                    TimelineEntry updated = new TimelineEntry(entry.getTitle(), updatedCal.getMonthForIndex(0), entry.getYear(), entry.isSecret(), entry.getAssociatedId(), entry.getId());
+                    m_timelineData = m_timelineData.plus(entry.getId(), updated);
+                    m_timelineByEntity.update(entry, updated);
+                }
+            }
+            m_cal = updatedCal;
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Creates and returns a Campaign that is represented by all of the data in the CampaignDataManager.  The CDM is
+     * not modified in any way.  Each time this method is called, a new Campaign object is instantiated and returned.
+     * The Campaign is a consistent, read-only snapshot, which may be taken on any thread while editing continues.
+     *
+     * @return a Campaign that contains all of the data in the CampaignDataManager.
+     */
+    @Override
+    public Campaign getData() {
+        // Everything read here is immutable, so when no relationship snapshots need refreshing an optimistic read
+        // is enough, provided no change raced with it.
+        long stamp = m_lock.tryOptimisticRead();
+        if (stamp != 0L && m_staleRelationships.isEmpty()) {
+            String name = m_campaignName;
+            PersistentHashMap<UUID, Entity> entities = m_entities;
+            PersistentHashMap<UUID, RelationshipManager> relationships = m_relationshipSnapshots;
+            PersistentHashMap<UUID, TimelineEntry> timeline = m_timelineData;
+            CampaignCalendar cal = m_cal;
+            List<String> sortPrefixes = m_sortPrefixes;
+            if (m_lock.validate(stamp)) {
+                return new Campaign(name, entities, relationships, timeline, copyOf(cal), sortPrefixes);
+            }
+        }
+
+        stamp = m_lock.writeLock();
+        try {
+            // Every Entity gets an entry, even if it has no relationships, as does any ID still referenced by one.
+            PersistentHashMap<UUID, RelationshipManager> relationships = m_relationshipSnapshots;
+            for (UUID id : m_staleRelationships) {
+                RelationshipManager live = m_entities.containsKey(id) ? m_relationships.getRelationshipManagerForEntity(id)
+                                                                      : m_relationships.getAllRelationships().get(id);
+                if (live != null) {
+                    relationships = relationships.plus(id, live.snapshot());
+                } else {
+                    relationships = relationships.minus(id);
+                }
+            }
+            m_staleRelationships.clear();
+            m_relationshipSnapshots = relationships;
+            return new Campaign(m_campaignName, m_entities, relationships, m_timelineData, copyOf(m_cal), m_sortPrefixes);
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Clears all old data and sets the supplied campaign data on this display.
+     * @param campaign the new data to set.
+     */
+    @Override
+    public void setData(Campaign campaign) {
+        // Set to collect all of the previously saved relationships.  This is used later to ensure that all established
+        // Relationships are in the RelationshipOptionManager.
+        Set<String> relationships = new HashSet<>();
+        boolean monthsAdded = false;
+
+        long stamp = m_lock.writeLock();
+        try {
+            m_entities = PersistentHashMap.empty();
+            m_sortedEntities.clear();
+            m_entityList = null;
+            m_timelineData = PersistentHashMap.empty();
+            m_timelineByEntity.clear();
+            m_relationships.clear();
+            m_relationshipSnapshots = PersistentHashMap.empty();
+            m_staleRelationships.clear();
+
+            m_campaignName = campaign.getName();
+            CampaignCalendar cal = copyOf(campaign.getCalendar());
+
+            // Configure sorting before any Entities are indexed, since their order depends on it.
+            m_sortPrefixes = campaign.getSortPrefixes();
+            ComparisonTools.setIgnoredPrefixes(m_sortPrefixes);
+
+            // Add all of the Entities.
+            PersistentHashMap<UUID, Entity> entities = PersistentHashMap.empty();
+            for (Entity e : campaign.getEntities()) {
+                UUID entityId = e.getId();
+                m_sortedEntities.update(entities.get(entityId), e);
+                entities = entities.plus(entityId, e);
+
+                // Collect all of the previously saved relationships and add them to our Set above.
+                RelationshipManager entityRelMgr = campaign.getRelationships(entityId);
+                if (entityRelMgr != null) {
+                    for (Relationship r : entityRelMgr.getAllRelationships()) {
+                        //Store text for options
+                        relationships.add(r.getRelationshipText());
+                        //Add the relationship itself
+                        m_relationships.addRelationship(r);
+                    }
+                }
+            }
+            m_entities = entities;
+            m_staleRelationships.addAll(entities.asMap().keySet());
+            m_staleRelationships.addAll(m_relationships.getAllRelationships().keySet());
+
+            // Roll through each of the timeline entries for this campaign and ensure that the months all exist in the
+            // campaign.  If any are missing, add them to the Calendar so the user can be told below.
+            PersistentHashMap<UUID, TimelineEntry> timeline = PersistentHashMap.empty();
+            for (TimelineEntry tle : campaign.getTimelineEntries()) {
+                m_timelineByEntity.update(timeline.get(tle.getId()), tle);
+                timeline = timeline.plus(tle.getId(), tle);
+                if (!cal.hasMonth(tle.getMonth())) {
+                    cal.addMonth(tle.getMonth());
+                    monthsAdded = true;
+                }
+            }
+            m_timelineData = timeline;
+            m_cal = cal;
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+
+        // Alert listeners of cleared data only now the new data is published, since they are notified asynchronously
+        // and may read this data manager to rebuild.
+        m_listeners.fireClearAllData();
+
+        // Ensure that all of the relationships previously saved are in the local
+        // relationships file, and indeed the Relationship Data Manager as well.
+        RelationshipOptionManager.addRelationships(new ArrayList<>(relationships));
+
+        if (monthsAdded) {
+            JOptionPane.showMessageDialog(null,
+                                          "One or more 'months' were added to your campaign\n"
+                                        + "calendar based on stored campaign timeline data.\n"
+                                        + "You may review this change to your calendar in its\n"
+                                        + "configuration dialog.",
+                                          "Missing Months",
+                                          JOptionPane.PLAIN_MESSAGE);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setEntitySecrecy(UUID id, boolean isSecret) {
+        if (id == null) {
+            return;
+        }
+        Entity previous;
+        Entity updated;
+        Set<Relationship> removed = new HashSet<>();
+        Set<Relationship> added = new HashSet<>();
+        List<TimelineEntry> entries = new ArrayList<>();
+        long stamp = m_lock.writeLock();
+        try {
+            previous = m_entities.get(id);
+            if (previous == null) {
+                return;
+            }
+            updated = previous;
+            if (previous.isSecret() != isSecret) {
+                updated = new Entity(id, previous.getName(), previous.getType(), previous.getPublicData(),
+                                     previous.getSecretData(), isSecret);
+                m_entities = m_entities.plus(id, updated);
+                m_sortedEntities.update(previous, updated);
+                m_entityList = null;
+                m_staleRelationships.add(id);
+            }
+
+            if (isSecret) {
+                // Only the Relationships in or out of this Entity, and its own Timeline Entries, need to be looked at.
+                for (Relationship rel : new ArrayList<>(m_relationships.getPublicRelationshipsForEntity(id))) {
+                    Relationship secret = new Relationship(rel.getEntityId(), rel.getRelatedEntity(), rel.getRelationshipText(), true);
+                    m_relationships.remove(rel);
+                    removed.add(rel);
+                    if (m_relationships.addRelationship(secret)) {
+                        added.add(secret);
+                    }
+                    m_staleRelationships.add(rel.getEntityId());
+                    m_staleRelationships.add(rel.getRelatedEntity());
+                }
+                for (TimelineEntry tle : m_timelineByEntity.get(id)) {
+                    if (!tle.isSecret()) {
+                        TimelineEntry secret = new TimelineEntry(tle.getTitle(), tle.getMonth(), tle.getYear(), true, tle.getAssociatedId(), tle.getId());
+                        m_timelineByEntity.update(tle, secret);
+                        m_timelineData = m_timelineData.plus(tle.getId(), secret);
+                        entries.add(secret);
+                    }
+                }
+            }
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+
+        // Alert Listeners, with everything changed merged in to one batch.
+        m_listeners.beginBatch();
+        try {
+            if (updated != previous) {
+                m_listeners.fireEntityChanged(EntityChangeEvent.entityUpdated(previous, updated));
+            }
+            m_listeners.fireRelationshipsChanged(this, added, removed, true);
+            for (TimelineEntry tle : entries) {
+                m_listeners.fireTimelineEntryAddedOrUpdated(tle);
+            }
+        } finally {
+            m_listeners.commit();
+        }
+    }
+
+    /**
+     * Returns the save file name.
+     * @return the save file name.
+     */
+    @Override
+    public String getSaveFileName() {
+        return m_filename;
+    }
+
+    /**
+     * Sets the save file name.
+     * @param filename the file name of the campaign.
+     */
+    @Override
+    public void setFileName(String filename) {
+        if (filename != null && !filename.endsWith(".campaign")) {
+            filename += ".campaign";
+        }
+        m_filename = filename;
+    }
+
+    /**
+     * Returns the timeline data.
+     * @return the timeline data.
+     */
+    @Override
+    public Set<TimelineEntry> getTimelineData() {
+        return new HashSet<>(m_timelineData.values());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<TimelineEntry> getTimelineEntriesFor(UUID entity) {
+        long stamp = m_lock.readLock();
+        try {
+            return m_timelineByEntity.get(entity);
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CampaignCalendar getCalendar() {
+        return m_cal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addRelationship(Relationship rel) {
+        UUID entity = rel.getEntityId();
+        UUID otherEntity = rel.getRelatedEntity();
+
+        boolean added;
+        long stamp = m_lock.writeLock();
+        try {
+            added = m_relationships.addRelationship(rel);
+            m_staleRelationships.add(entity);
+            m_staleRelationships.add(otherEntity);
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+
+        // Alert Listeners, data UPDATED at both ends because relationship added
+        if (added) {
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, Collections.singleton(rel), none, true);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void removeRelationship(Relationship toRemove) {
+        UUID entity = toRemove.getEntityId();
+        UUID otherEntity = toRemove.getRelatedEntity();
+
+        boolean removed;
+        long stamp = m_lock.writeLock();
+        try {
+            removed = m_relationships.remove(toRemove);
+            m_staleRelationships.add(entity);
+            m_staleRelationships.add(otherEntity);
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+
+        // Alert Listeners, data UPDATED at both ends because relationship removed
+        if (removed) {
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, none, Collections.singleton(toRemove), true);
+        }
+    }
+
+    /**
+     * Returns the relationships of the supplied Entity, in or outbound.  Since the live data may change on another
+     * thread at any time, the manager returned is a private copy; changes to it must be handed back through
+     * {@link #addOrUpdateAllRelationships(UUID, RelationshipManager)} or the other relationship methods.
+     * @param entity the ID of the Entity.
+     * @return a copy of the relationships of the Entity.
+     */
+    @Override
+    public RelationshipManager getRelationshipsForEntity(UUID entity) {
+        long stamp = m_lock.readLock();
+        try {
+            return new RelationshipManager(m_relationships.getRelationshipManagerForEntity(entity));
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RelationshipGraph getRelationshipGraph() {
+        long stamp = m_lock.readLock();
+        try {
+            return m_relationships.getGraph();
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Relationship> getInboundRelationships(UUID entity) {
+        long stamp = m_lock.readLock();
+        try {
+            return m_relationships.getInboundRelationshipsForEntity(entity).getAllRelationships();
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addOrUpdateAllRelationships(UUID entity, RelationshipManager relMgr) {
+        if (entity != null && relMgr != null) {
+            Set<UUID> affected = relMgr.getAllAffectedIds();
+            Set<Relationship> added;
+            long stamp = m_lock.writeLock();
+            try {
+                added = m_relationships.addAllRelationships(relMgr.getAllRelationships());
+                m_staleRelationships.addAll(affected);
+            } finally {
+                m_lock.unlockWrite(stamp);
+            }
+
+            // Alert Listeners, data updated at both ends of each relationship added
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, added, none, true);
+        } else {
+            LOGGER.warning("Attempted to store a null Entity or RelationshipManager.  Entity (unused) was:  " +
+                    entity + ", RelationshipManager was:  " + relMgr);
+        }
+    }
+
+    /**
+     * Returns a private copy of the supplied calendar, so that the one held here is never changed once published.
+     * @param cal the calendar to copy.
+     * @return a copy of the calendar.
+     */
+    private static CampaignCalendar copyOf(CampaignCalendar cal) {
+        return new CampaignCalendar(new ArrayList<>(cal.getMonths()));
+    }
+}
@@ -20,11 +20,28 @@ public interface DataAccessor {
     public Entity getEntity(UUID id);
 
     /**
-     * Returns all Entities available to the data accessor.
+     * Returns all Entities available to the data accessor, in sorted order.  The returned list is a read-only snapshot
+     * and does not reflect later changes.
      * @return all Entities available to the data accessor.
      */
     public List<Entity> getAllEntities();
 
+    /**
+     * Returns a page of the sorted Entities available to the data accessor.
+     * @param offset the index of the first Entity to return.
+     * @param count the maximum number of Entities to return.
+     * @return a read-only list of up to count Entities beginning at offset.
+     */
+    public List<Entity> getEntities(int offset, int count);
+
+    /**
+     * Returns the sorted Entities that sort at or after the supplied name, e.g. "M" for everything from 'M' onward.
+     * @param name the name to start from.
+     * @param count the maximum number of Entities to return.
+     * @return a read-only list of up to count Entities sorting at or after the supplied name.
+     */
+    public List<Entity> getEntitiesFrom(String name, int count);
+
     /**
      * Adds the supplied Entity to the system.  If an entity with a matching ID exists, that Entity is replaced by the
      * supplied one.
@@ -56,6 +73,13 @@ public interface DataAccessor {
      */
     public Set<TimelineEntry> getTimelineData();
 
+    /**
+     * Returns the TimelineEntry data associated with the Entity with the supplied ID.
+     * @param entity the ID of the Entity to get TimelineEntries for.
+     * @return a read-only Set of the TimelineEntries associated with the Entity, never null.
+     */
+    public Set<TimelineEntry> getTimelineEntriesFor(UUID entity);
+
     /**
      * Returns the configured Campaign Calendar.
      * @return the configured Campaign Calendar.
@@ -87,4 +111,18 @@ public interface DataAccessor {
      * @return all of the Relationships for the Entity with the supplied ID.
      */
     public RelationshipManager getRelationshipsForEntity(UUID entity);
+
+    /**
+     * Returns an immutable snapshot of the whole relationship graph, for computations that walk many relationships at
+     * once.  The snapshot is cached until the relationships next change, so repeated calls are cheap.
+     * @return the relationship graph, never null.
+     */
+    public RelationshipGraph getRelationshipGraph();
+
+    /**
+     * Returns the Relationships that point at the entity associated with the supplied ID, whichever Entity owns them.
+     * @param entity the ID of the entity to get inbound relationships for.
+     * @return a read-only Set of the Relationships whose related entity is the supplied ID, never null.
+     */
+    public Set<Relationship> getInboundRelationships(UUID entity);
 }
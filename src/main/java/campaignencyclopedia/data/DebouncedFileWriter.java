@@ -0,0 +1,125 @@
+package campaignencyclopedia.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import toolbox.file.FileTools;
+
+/**
+ * Writes lines of text to a file in the background, a short while after they last changed, so that callers never wait
+ * on the disk and a burst of changes is written once.  Each write goes to a temporary file which is then moved over
+ * the real one, so the file is never left half written.  Anything still waiting when the application exits is written
+ * by a shutdown hook.
+ *
+ * @author Keith
+ */
+public class DebouncedFileWriter {
+
+    /** A Logger. */
+    private static final Logger LOGGER = Logger.getLogger(DebouncedFileWriter.class.getName());
+
+    /** How long after the last change a file is written, in milliseconds. */
+    private static final long WRITE_DELAY_MS = 500;
+
+    /** The thread every file is written on. */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Data File Writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** The file written. */
+    private final File m_file;
+
+    /** Held while writing, so that writes happen one at a time and in order. */
+    private final Object m_writeLock = new Object();
+
+    /** The lines waiting to be written, or null if the file is up to date. */
+    private List<String> m_pending;
+
+    /** The scheduled write, or null if none is scheduled. */
+    private ScheduledFuture<?> m_scheduled;
+
+    /**
+     * Creates a new DebouncedFileWriter.
+     * @param file the file to write, must not be null.
+     * @throws IllegalArgumentException if file is null.
+     */
+    public DebouncedFileWriter(File file) {
+        if (file == null) {
+            throw new IllegalArgumentException("Parameter 'file' must not be null.");
+        }
+        m_file = file;
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, "Data File Writer Shutdown"));
+    }
+
+    /**
+     * Schedules the supplied lines to be written, replacing any lines still waiting.  The write happens once no more
+     * lines have been supplied for a short while.
+     * @param lines the lines to write, copied before this method returns.
+     */
+    public synchronized void write(Collection<String> lines) {
+        m_pending = new ArrayList<>(lines);
+        if (m_scheduled != null) {
+            m_scheduled.cancel(false);
+        }
+        m_scheduled = EXECUTOR.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Writes any lines still waiting, on the calling thread. */
+    public void flush() {
+        synchronized (m_writeLock) {
+            List<String> lines;
+            synchronized (this) {
+                lines = m_pending;
+                m_pending = null;
+            }
+            if (lines != null) {
+                writeNow(lines);
+            }
+        }
+    }
+
+    /**
+     * Writes the supplied lines to a temporary file and moves it over the real one.
+     * @param lines the lines to write.
+     */
+    private void writeNow(List<String> lines) {
+        File temp = new File(m_file.getPath() + ".tmp");
+        try {
+            FileTools.writeFile(temp.getPath(), lines);
+            try {
+                Files.move(temp.toPath(), m_file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), m_file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to write file '" + m_file + "'.", ex);
+        }
+    }
+}
@@ -2,12 +2,13 @@ package campaignencyclopedia.data;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 import javax.swing.JOptionPane;
 
@@ -25,14 +26,38 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
     /** The name of the campaign.  */
     private String m_campaignName;
 
-    /** A map of UUIDs to their associated Entities. */
-    private final Map<UUID, Entity> m_entities;
+    /** A map of UUIDs to their associated Entities, replaced rather than changed so it can be shared by snapshots. */
+    private PersistentHashMap<UUID, Entity> m_entities;
+
+    /** The Entities of the campaign, kept in sorted order. */
+    private final SortedEntityIndex m_sortedEntities;
 
     /** A map of UUIDs of Entities to Sets of Relationships. */
     private final Map<UUID, RelationshipManager> m_relationships;
 
-    /** A map of UUIDs to their associated Timeline Entries. */
-    private final Map<UUID, TimelineEntry> m_timelineData;
+    /**
+     * A map of UUIDs of Entities to the Relationships that point at them.  Because RelationshipManagers handed out by
+     * this class may be modified directly, entries are checked against their owner's manager when read.
+     */
+    private final Map<UUID, Set<Relationship>> m_inboundRelationships;
+
+    /**
+     * Read-only snapshots of the RelationshipManager of each Entity, as last handed out by {@link #getData()}.  Only
+     * the entries of Entities whose relationships have changed since are refreshed, on the next call.
+     */
+    private PersistentHashMap<UUID, RelationshipManager> m_relationshipSnapshots;
+
+    /** The IDs of the Entities whose relationship snapshots are out of date. */
+    private final Set<UUID> m_staleRelationships;
+
+    /** A snapshot of the relationship graph, or null if the relationships have changed since it was built. */
+    private RelationshipGraph m_graph;
+
+    /** A map of UUIDs to their associated Timeline Entries, replaced rather than changed so it can be shared by snapshots. */
+    private PersistentHashMap<UUID, TimelineEntry> m_timelineData;
+
+    /** The Timeline Entries indexed by the Entity they are associated with. */
+    private final TimelineEntryIndex m_timelineByEntity;
 
     /** The path to the file where the current campaign is stored, or null if no path exists. */
     private String m_filename;
@@ -40,18 +65,27 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
     /** The currently configured campaign calendar. */
     private CampaignCalendar m_cal;
 
-    /** A Set of listeners on the CDM. */
-    private final Set<CampaignDataManagerListener> m_listeners;
+    /** The leading words ignored when sorting Entity names in this campaign. */
+    private List<String> m_sortPrefixes;
+
+    /** The listeners on the CDM, and any batch of changes waiting to be sent to them. */
+    private final CampaignDataManagerListenerSupport m_listeners;
 
     public DefaultCampaignDataManager() {
         m_campaignName = "New Campaign";
         m_filename = null;
 
-        m_entities = new HashMap<>();
-        m_relationships = new HashMap<>();
-        m_timelineData = new HashMap<>();
+        m_entities = PersistentHashMap.empty();
+        m_sortedEntities = new SortedEntityIndex();
+        m_relationships = new UUIDHashMap<>();
+        m_inboundRelationships = new UUIDHashMap<>();
+        m_relationshipSnapshots = PersistentHashMap.empty();
+        m_staleRelationships = new HashSet<>();
+        m_timelineData = PersistentHashMap.empty();
+        m_timelineByEntity = new TimelineEntryIndex();
         m_cal = new CampaignCalendar();
-        m_listeners = new HashSet<>();
+        m_sortPrefixes = ComparisonTools.getDefaultIgnoredPrefixes();
+        m_listeners = new CampaignDataManagerListenerSupport();
     }
 
     /**
@@ -60,9 +94,13 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
      */
     @Override
     public void addListener(CampaignDataManagerListener listener) {
-        if (listener != null) {
-            m_listeners.add(listener);
-        }
+        m_listeners.addListener(listener);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addListener(CampaignDataManagerListener listener, Executor executor) {
+        m_listeners.addListener(listener, executor);
     }
 
     /**
@@ -71,7 +109,25 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
      */
     @Override
     public void removeListener(CampaignDataManagerListener listener) {
-        m_listeners.remove(listener);
+        m_listeners.removeListener(listener);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beginBatch() {
+        m_listeners.beginBatch();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void commit() {
+        m_listeners.commit();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<CampaignDataManagerListenerDispatcher.Statistics> getListenerStatistics() {
+        return m_listeners.getListenerStatistics();
     }
 
     /** {@inheritDoc} */
@@ -86,21 +142,31 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
     /** {@inheritDoc} */
     @Override
     public List<Entity> getAllEntities() {
-        List<Entity> list = new ArrayList<>(m_entities.values());
-        Collections.sort(list);
-        return list;
+        return m_sortedEntities.getSnapshot();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Entity> getEntities(int offset, int count) {
+        return m_sortedEntities.getPage(offset, count);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Entity> getEntitiesFrom(String name, int count) {
+        return m_sortedEntities.getPageFrom(name, count);
     }
 
     /** {@inheritDoc} */
     @Override
     public void addOrUpdateEntity(Entity entity) {
         if (entity != null) {
-            m_entities.put(entity.getId(), entity);
-        }
+            Entity previous = m_entities.get(entity.getId());
+            m_entities = m_entities.plus(entity.getId(), entity);
+            m_sortedEntities.update(previous, entity);
 
-        // Alert Listeners
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.dataAddedOrUpdated(entity);
+            // Alert Listeners
+            m_listeners.fireEntityChanged(EntityChangeEvent.entityUpdated(previous, entity));
         }
     }
 
@@ -109,22 +175,20 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
     @Override
     public void addOrUpdateTimelineEntry(TimelineEntry entry) {
         if (entry != null) {
-            m_timelineData.put(entry.getId(), entry);
-        }
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.timelineEntryAddedOrUpdated(entry);
+            m_timelineByEntity.update(m_timelineData.get(entry.getId()), entry);
+            m_timelineData = m_timelineData.plus(entry.getId(), entry);
         }
+        m_listeners.fireTimelineEntryAddedOrUpdated(entry);
     }
 
     /** {@inheritDoc} */
     @Override
     public void removeTimelineEntry(UUID id) {
         if (id != null) {
-            m_timelineData.remove(id);
-        }
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.timelineEntryRemoved(id);
+            m_timelineByEntity.update(m_timelineData.get(id), null);
+            m_timelineData = m_timelineData.minus(id);
         }
+        m_listeners.fireTimelineEntryRemoved(id);
     }
 
     /** {@inheritDoc} */
@@ -132,30 +196,29 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
     public void removeEntity(UUID id) {
         if (id != null) {
             // Remove the Entity
-            m_entities.remove(id);
+            Entity previous = m_entities.get(id);
+            m_sortedEntities.remove(previous);
+            m_entities = m_entities.minus(id);
 
             // Remove relationships for the removed Entity
-            m_relationships.remove(id);
-
-            // Check for any relationships that point to the removed Entity and remove them too.
-            for (UUID entityId : m_relationships.keySet()) {
-                RelationshipManager relationshipManager = m_relationships.get(entityId);
-                // Collect all of the relationships that point at the removed Entity
-                Set<Relationship> toRemove = new HashSet<>();
-                for (Relationship rel : relationshipManager.getAllRelationships()) {
-                    if (rel.getRelatedEntity().equals(id)) {
-                        toRemove.add(rel);
-                    }
-                }
-                // Remove the bad relations, and set the updated Set back into the map.
-                relationshipManager.removeAll(toRemove);
-                m_relationships.put(entityId, relationshipManager);
+            RelationshipManager outbound = m_relationships.remove(id);
+            unindexInbound(outbound);
+            m_staleRelationships.add(id);
+
+            // Remove any relationships that point to the removed Entity too, found directly through the inbound index.
+            Set<Relationship> inbound = getInboundRelationships(id);
+            for (Relationship rel : inbound) {
+                m_relationships.get(rel.getEntityId()).remove(rel);
+                m_staleRelationships.add(rel.getEntityId());
             }
-        }
-
-        // Alert Listeners
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.dataRemoved(id);
+            m_inboundRelationships.remove(id);
+            m_graph = null;
+
+            // Alert Listeners, the Entities that pointed at the removed one have lost those relationships.
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, none, inbound, false);
+            Set<Relationship> removed = outbound == null ? none : outbound.getAllRelationships();
+            m_listeners.fireEntityChanged(EntityChangeEvent.entityRemoved(id, previous, removed));
         }
     }
 
@@ -166,11 +229,11 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
     @Override
     public void updateCalendar(CampaignCalendar cal) {
         m_cal.updateMonths(cal.getMonths());
-        for (UUID id : m_timelineData.keySet()) {
-            TimelineEntry entry = m_timelineData.get(id);
+        for (TimelineEntry entry : m_timelineData.values()) {
             if (!m_cal.hasMonth(entry.getMonth())) {
                 TimelineEntry updated = new TimelineEntry(entry.getTitle(), m_cal.getMonthForIndex(0), entry.getYear(), entry.isSecret(), entry.getAssociatedId(), entry.getId());
-                m_timelineData.put(id, updated);
+                m_timelineData = m_timelineData.plus(entry.getId(), updated);
+                m_timelineByEntity.update(entry, updated);
             }
         }
     }
@@ -178,12 +241,25 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
     /**
      * Creates and returns a Campaign that is represented by all of the data in the CampaignDataManager.  The CDM is
      * not modified in any way.  Each time this method is called, a new Campaign object is instantiated and returned.
+     * The Campaign is a read-only snapshot sharing its structure with this CDM, so building it costs time in
+     * proportion to the changes made since the last call rather than to the size of the campaign, and it may be
+     * handed to another thread while editing continues.
      *
      * @return a Campaign that contains all of the data in the CampaignDataManager.
      */
     @Override
     public Campaign getData() {
-        return new Campaign(m_campaignName, new HashSet<>(m_entities.values()), m_relationships, new HashSet<>(m_timelineData.values()), m_cal);
+        for (UUID id : m_staleRelationships) {
+            RelationshipManager live = m_relationships.get(id);
+            if (live != null) {
+                m_relationshipSnapshots = m_relationshipSnapshots.plus(id, live.snapshot());
+            } else {
+                m_relationshipSnapshots = m_relationshipSnapshots.minus(id);
+            }
+        }
+        m_staleRelationships.clear();
+        CampaignCalendar cal = new CampaignCalendar(new ArrayList<>(m_cal.getMonths()));
+        return new Campaign(m_campaignName, m_entities, m_relationshipSnapshots, m_timelineData, cal, m_sortPrefixes);
     }
 
     /**
@@ -192,18 +268,22 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
      */
     @Override
     public void setData(Campaign campaign) {
-        m_entities.clear();
-        m_timelineData.clear();
+        m_entities = PersistentHashMap.empty();
+        m_sortedEntities.clear();
+        m_timelineData = PersistentHashMap.empty();
+        m_timelineByEntity.clear();
         m_relationships.clear();
-        
-        // Alert listeners of cleared data.
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.clearAllData();
-        }
+        m_inboundRelationships.clear();
+        m_relationshipSnapshots = PersistentHashMap.empty();
+        m_staleRelationships.clear();
         
         m_campaignName = campaign.getName();
         m_cal = campaign.getCalendar();
 
+        // Configure sorting before any Entities are indexed, since their order depends on it.
+        m_sortPrefixes = campaign.getSortPrefixes();
+        ComparisonTools.setIgnoredPrefixes(m_sortPrefixes);
+
 
         // Set to collect all of the previously saved relationships.  This is used later to ensure that all established
         // Relationships are in the RelationshipOptionManager.
@@ -212,7 +292,8 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
         // Add all of the Entities.
         for (Entity e : campaign.getEntities()) {
             UUID entityId = e.getId();
-            m_entities.put(entityId, e);
+            m_sortedEntities.update(m_entities.get(entityId), e);
+            m_entities = m_entities.plus(entityId, e);
 
             // Create a RelationshipManager for all Entities in the Campaign
             m_relationships.put(entityId, new RelationshipManager());
@@ -226,8 +307,15 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
             }
         }
 
-        // Add all of the Relationships.
-        m_relationships.putAll(campaign.getAllRelationships());
+        // Add all of the Relationships, copied since the Campaign's managers may be read-only snapshots.
+        for (Map.Entry<UUID, RelationshipManager> entry : campaign.getAllRelationships().entrySet()) {
+            m_relationships.put(entry.getKey(), new RelationshipManager(entry.getValue()));
+        }
+        for (RelationshipManager relMgr : m_relationships.values()) {
+            indexInbound(relMgr);
+        }
+        m_staleRelationships.addAll(m_relationships.keySet());
+        m_graph = null;
 
         // Ensure that all of the relationships previously saved are in the local
         // relationships file, and indeed the Relationship Data Manager as well.
@@ -237,12 +325,18 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
         // campaign.  If any are missing, add them to the Calendar and alert the user with a popup message.
         boolean monthsAdded = false;
         for (TimelineEntry tle : campaign.getTimelineEntries()) {
-            m_timelineData.put(tle.getId(), tle);
+            m_timelineByEntity.update(m_timelineData.get(tle.getId()), tle);
+            m_timelineData = m_timelineData.plus(tle.getId(), tle);
             if (!m_cal.hasMonth(tle.getMonth())) {
                 m_cal.addMonth(tle.getMonth());
                 monthsAdded = true;
             }
         }
+
+        // Alert listeners of cleared data only now the new data is in place, since they are notified asynchronously
+        // and may read this data manager to rebuild.
+        m_listeners.fireClearAllData();
+
         if (monthsAdded) {
             JOptionPane.showMessageDialog(null,
                                           "One or more 'months' were added to your campaign\n"
@@ -254,6 +348,64 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void setEntitySecrecy(UUID id, boolean isSecret) {
+        Entity previous = id == null ? null : m_entities.get(id);
+        if (previous == null) {
+            return;
+        }
+
+        m_listeners.beginBatch();
+        try {
+            if (previous.isSecret() != isSecret) {
+                Entity updated = new Entity(id, previous.getName(), previous.getType(), previous.getPublicData(),
+                                            previous.getSecretData(), isSecret);
+                m_entities = m_entities.plus(id, updated);
+                m_sortedEntities.update(previous, updated);
+                m_listeners.fireEntityChanged(EntityChangeEvent.entityUpdated(previous, updated));
+            }
+
+            if (isSecret) {
+                // Only the Relationships this Entity owns, and those the inbound index has pointing at it, need to be
+                // looked at, as do only its own Timeline Entries.
+                Set<Relationship> toSecret = new HashSet<>(getInboundRelationships(id));
+                RelationshipManager owned = m_relationships.get(id);
+                if (owned != null) {
+                    toSecret.addAll(owned.getPublicRelationships());
+                }
+                Set<Relationship> removed = new HashSet<>();
+                Set<Relationship> added = new HashSet<>();
+                for (Relationship rel : toSecret) {
+                    RelationshipManager owner = m_relationships.get(rel.getEntityId());
+                    if (rel.isSecret() || owner == null) {
+                        continue;
+                    }
+                    Relationship secret = new Relationship(rel.getEntityId(), rel.getRelatedEntity(), rel.getRelationshipText(), true);
+                    owner.remove(rel);
+                    unindexInbound(rel);
+                    removed.add(rel);
+                    if (!owner.contains(secret)) {
+                        owner.addRelationship(secret);
+                        added.add(secret);
+                    }
+                    indexInbound(secret);
+                    m_staleRelationships.add(rel.getEntityId());
+                }
+                m_graph = null;
+                m_listeners.fireRelationshipsChanged(this, added, removed, false);
+
+                for (TimelineEntry tle : m_timelineByEntity.get(id)) {
+                    if (!tle.isSecret()) {
+                        addOrUpdateTimelineEntry(new TimelineEntry(tle.getTitle(), tle.getMonth(), tle.getYear(), true, tle.getAssociatedId(), tle.getId()));
+                    }
+                }
+            }
+        } finally {
+            m_listeners.commit();
+        }
+    }
+
     /**
      * Returns the save file name.
      * @return the save file name.
@@ -284,6 +436,12 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
         return new HashSet<>(m_timelineData.values());
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Set<TimelineEntry> getTimelineEntriesFor(UUID entity) {
+        return m_timelineByEntity.get(entity);
+    }
+
     /** {@inheritDoc} */
     @Override
     public CampaignCalendar getCalendar() {
@@ -301,7 +459,17 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
             m_relationships.put(entity, new RelationshipManager());
         }
         
+        boolean added = !m_relationships.get(entity).contains(rel);
         m_relationships.get(entity).addRelationship(rel);
+        indexInbound(rel);
+        m_staleRelationships.add(entity);
+        m_graph = null;
+
+        // Alert Listeners, data updated because relationship added
+        if (added) {
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, Collections.singleton(rel), none, false);
+        }
     }
 
     /** {@inheritDoc} */
@@ -310,35 +478,135 @@ public class DefaultCampaignDataManager implements CampaignDataManager {
         UUID entity = toRemove.getEntityId();
         
         RelationshipManager relationships = m_relationships.get(entity);
+        boolean removed = relationships.contains(toRemove);
         relationships.remove(toRemove);
+        unindexInbound(toRemove);
+        m_staleRelationships.add(entity);
+        m_graph = null;
         
         // Alert Listeners, data updated because relationship removed
-        Entity actualEntity = getEntity(entity);
-        for (CampaignDataManagerListener cdml : m_listeners) {
-            cdml.dataAddedOrUpdated(actualEntity);
+        if (removed) {
+            Set<Relationship> none = Collections.emptySet();
+            m_listeners.fireRelationshipsChanged(this, none, Collections.singleton(toRemove), false);
         }
     }
 
-    /** {@inheritDoc} */
+    /**
+     * Returns the relationships of the supplied Entity.  The manager returned is a copy, which costs nothing until one
+     * side changes, so that changes made to it are only seen once handed back through
+     * {@link #addOrUpdateAllRelationships(UUID, RelationshipManager)}, where they can be told apart from what was there.
+     * @param entity the ID of the Entity.
+     * @return a copy of the relationships of the Entity, or null if it has none.
+     */
     @Override
     public RelationshipManager getRelationshipsForEntity(UUID entity) {
-        return m_relationships.get(entity);
+        RelationshipManager relationships = m_relationships.get(entity);
+        return relationships == null ? null : new RelationshipManager(relationships);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public RelationshipGraph getRelationshipGraph() {
+        if (m_graph == null) {
+            m_graph = RelationshipGraph.build(m_relationships);
+        }
+        return m_graph;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Relationship> getInboundRelationships(UUID entity) {
+        Set<Relationship> inbound = m_inboundRelationships.get(entity);
+        if (inbound == null) {
+            return Collections.emptySet();
+        }
+        // Drop any entries whose owner no longer holds them.
+        Set<Relationship> valid = new HashSet<>();
+        Iterator<Relationship> it = inbound.iterator();
+        while (it.hasNext()) {
+            Relationship rel = it.next();
+            RelationshipManager owner = m_relationships.get(rel.getEntityId());
+            if (owner != null && owner.contains(rel)) {
+                valid.add(rel);
+            } else {
+                it.remove();
+            }
+        }
+        return Collections.unmodifiableSet(valid);
     }
 
     /** {@inheritDoc} */
     @Override
     public void addOrUpdateAllRelationships(UUID entity, RelationshipManager relMgr) {
         if (entity != null && relMgr != null) {
-            m_relationships.put(entity, relMgr);
-            
-            // Alert Listeners, data updated because relationship added
-            Entity actualEntity = getEntity(entity);
-            for (CampaignDataManagerListener cdml : m_listeners) {
-                cdml.dataAddedOrUpdated(actualEntity);
+            Set<Relationship> before = Collections.emptySet();
+            RelationshipManager previous = m_relationships.put(entity, relMgr);
+            if (previous != null) {
+                before = previous.getAllRelationships();
+            }
+            if (previous != relMgr) {
+                unindexInbound(previous);
             }
+            indexInbound(relMgr);
+            m_staleRelationships.add(entity);
+            m_graph = null;
+            
+            // Alert Listeners, data updated because relationships were replaced
+            Set<Relationship> after = relMgr.getAllRelationships();
+            Set<Relationship> added = new HashSet<>(after);
+            added.removeAll(before);
+            Set<Relationship> removed = new HashSet<>(before);
+            removed.removeAll(after);
+            m_listeners.fireRelationshipsChanged(this, added, removed, false);
         } else {
             LOGGER.warning("Attempted to store a null Entity or RelationshipManager.  Entity was:  " +
                     entity + ", RelationshipManager was:  " + relMgr);
         }
     }
+
+    /**
+     * Adds the supplied Relationship to the inbound index of its related entity.
+     * @param rel the Relationship to index.
+     */
+    private void indexInbound(Relationship rel) {
+        Set<Relationship> inbound = m_inboundRelationships.get(rel.getRelatedEntity());
+        if (inbound == null) {
+            inbound = new HashSet<>();
+            m_inboundRelationships.put(rel.getRelatedEntity(), inbound);
+        }
+        inbound.add(rel);
+    }
+
+    /**
+     * Adds all of the Relationships in the supplied manager to the inbound index.
+     * @param relMgr the manager whose Relationships are indexed.
+     */
+    private void indexInbound(RelationshipManager relMgr) {
+        for (Relationship rel : relMgr.getAllRelationships()) {
+            indexInbound(rel);
+        }
+    }
+
+    /**
+     * Removes the supplied Relationship from the inbound index of its related entity.
+     * @param rel the Relationship to remove from the index.
+     */
+    private void unindexInbound(Relationship rel) {
+        Set<Relationship> inbound = m_inboundRelationships.get(rel.getRelatedEntity());
+        if (inbound != null) {
+            inbound.remove(rel);
+        }
+    }
+
+    /**
+     * Removes all of the Relationships in the supplied manager from the inbound index.
+     * @param relMgr the manager whose Relationships are removed from the index, may be null.
+     */
+    private void unindexInbound(RelationshipManager relMgr) {
+        if (relMgr != null) {
+            for (Relationship rel : relMgr.getAllRelationships()) {
+                unindexInbound(rel);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,441 @@
+package campaignencyclopedia.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A full text index over the public and secret descriptions of every Entity in a campaign, returning the Entities
+ * whose descriptions match a query ranked by Okapi BM25.  Descriptions are split into lower cased words, and each word
+ * maps to the Entities using it along with how many times it appears in each description, so a query only touches
+ * the Entities which use its words.  Public and secret counts are held apart, so that a search which excludes secret
+ * data ranks exactly as if the secret descriptions did not exist.
+ * <p>
+ * Like {@link EntitySearchIndex}, the index keeps itself current by listening to a Campaign Data Manager, rebuilds
+ * itself from its DataAccessor when all data is cleared, and numbers its Entities so that each posting list is an
+ * ascending array.  This class is thread safe.
+ *
+ * @author Keith
+ */
+public class DescriptionSearchIndex implements EntityChangeListener {
+
+    /** The BM25 term frequency saturation parameter. */
+    private static final double K1 = 1.2;
+
+    /** The BM25 length normalization parameter. */
+    private static final double B = 0.75;
+
+    /** The accessor to rebuild the index from. */
+    private final DataAccessor m_accessor;
+
+    /** The indexed form of each Entity, keyed by ID. */
+    private final UUIDHashMap<Document> m_documents;
+
+    /** The postings of each word. */
+    private final Map<String, Posting> m_postings;
+
+    /** The indexed form of each Entity by its number, with null for numbers no longer in use. */
+    private Document[] m_byNumber;
+
+    /** The number to give the next Entity indexed. */
+    private int m_nextNumber;
+
+    /** The total number of words in all public descriptions. */
+    private long m_publicWords;
+
+    /** The total number of words in all secret descriptions. */
+    private long m_secretWords;
+
+    /**
+     * Creates a new, empty DescriptionSearchIndex over the supplied accessor.  Call {@link #rebuild()} to index the Entities
+     * already available from it, and add the index as a listener to the data manager behind the accessor to stay
+     * current.  Both are best done on a background thread, since indexing a large campaign takes a while.
+     * @param accessor the accessor to index, must not be null.
+     * @throws IllegalArgumentException if accessor is null.
+     */
+    public DescriptionSearchIndex(DataAccessor accessor) {
+        if (accessor == null) {
+            throw new IllegalArgumentException("Parameter 'accessor' must not be null.");
+        }
+        m_accessor = accessor;
+        m_documents = new UUIDHashMap<>();
+        m_postings = new HashMap<>();
+        m_byNumber = new Document[16];
+    }
+
+    /**
+     * Returns the Entities whose descriptions contain any word of the supplied query, best match first.  Entities with
+     * equal scores are in no particular order.
+     * @param query the words to search for, must not be null.
+     * @param includeSecret true if secret descriptions should be searched.  Secret Entities are returned either way.
+     * @return the matching Entities, ranked.  Empty if the query has no words.
+     * @throws IllegalArgumentException if query is null.
+     */
+    public synchronized List<DescriptionSearchResult> search(String query, boolean includeSecret) {
+        if (query == null) {
+            throw new IllegalArgumentException("Parameter 'query' must not be null.");
+        }
+        Set<String> words = new LinkedHashSet<>(tokenize(query));
+        if (words.isEmpty() || m_documents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int documents = m_documents.size();
+        double averageLength = (double) (includeSecret ? m_publicWords + m_secretWords : m_publicWords) / documents;
+        if (averageLength == 0) {
+            return Collections.emptyList();
+        }
+
+        // Accumulate the score of each Entity using any of the words.
+        float[] scores = new float[m_nextNumber];
+        int[] matched = new int[16];
+        int matchCount = 0;
+        for (String word : words) {
+            Posting posting = m_postings.get(word);
+            if (posting == null) {
+                continue;
+            }
+            int frequency = includeSecret ? posting.size : posting.publicDocuments;
+            if (frequency == 0) {
+                continue;
+            }
+            double idf = Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+            for (int i = 0; i < posting.size; i++) {
+                int count = posting.publicCounts[i] + (includeSecret ? posting.secretCounts[i] : 0);
+                if (count == 0) {
+                    continue;
+                }
+                int number = posting.numbers[i];
+                Document doc = m_byNumber[number];
+                int length = doc.publicLength + (includeSecret ? doc.secretLength : 0);
+                double score = idf * count * (K1 + 1) / (count + K1 * (1 - B + B * length / averageLength));
+                if (scores[number] == 0) {
+                    if (matchCount == matched.length) {
+                        matched = Arrays.copyOf(matched, matchCount * 2);
+                    }
+                    matched[matchCount++] = number;
+                }
+                scores[number] += (float) score;
+            }
+        }
+
+        // Rank by sorting keys holding the score, flipped so the best sorts first, over the number.  Positive floats
+        // order the same as their bits, and sorting primitives avoids comparing Entities over the many tied scores.
+        long[] ranking = new long[matchCount];
+        for (int i = 0; i < matchCount; i++) {
+            int number = matched[i];
+            ranking[i] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(scores[number])) << 32) | number;
+        }
+        Arrays.sort(ranking);
+
+        List<DescriptionSearchResult> results = new ArrayList<>(matchCount);
+        List<String> queryWords = Collections.unmodifiableList(new ArrayList<>(words));
+        for (long key : ranking) {
+            int number = (int) key;
+            results.add(new DescriptionSearchResult(m_byNumber[number].entity, scores[number], queryWords, includeSecret));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the number of indexed Entities.
+     * @return the number of indexed Entities.
+     */
+    public synchronized int size() {
+        return m_documents.size();
+    }
+
+    /**
+     * Clears the index and reindexes every Entity available from the accessor.  This reads every Entity in the
+     * campaign, so should not be called on the event dispatch thread.
+     */
+    public synchronized void rebuild() {
+        m_documents.clear();
+        m_postings.clear();
+        Arrays.fill(m_byNumber, null);
+        m_nextNumber = 0;
+        m_publicWords = 0;
+        m_secretWords = 0;
+        for (Entity entity : m_accessor.getAllEntities()) {
+            index(entity);
+        }
+    }
+
+    /**
+     * Indexes the supplied Entity, replacing whatever was indexed for it before.  The Entity is given a number
+     * higher than any in use, so appending it keeps every posting list in order.
+     * @param entity the Entity to index.
+     */
+    private void index(Entity entity) {
+        unindex(entity.getId());
+        if (m_nextNumber == m_byNumber.length) {
+            if (m_documents.size() < m_nextNumber / 2) {
+                renumber();
+            } else {
+                m_byNumber = Arrays.copyOf(m_byNumber, m_byNumber.length * 2);
+            }
+        }
+
+        // Count the words of each description.
+        Map<String, int[]> counts = new HashMap<>();
+        List<String> publicWords = tokenize(entity.getPublicData().getDescription());
+        List<String> secretWords = tokenize(entity.getSecretData().getDescription());
+        for (String word : publicWords) {
+            countFor(counts, word)[0]++;
+        }
+        for (String word : secretWords) {
+            countFor(counts, word)[1]++;
+        }
+
+        Document doc = new Document(entity, m_nextNumber++, publicWords.size(), secretWords.size(),
+                                    counts.keySet().toArray(new String[counts.size()]));
+        m_documents.put(entity.getId(), doc);
+        m_byNumber[doc.number] = doc;
+        m_publicWords += doc.publicLength;
+        m_secretWords += doc.secretLength;
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            Posting posting = m_postings.get(entry.getKey());
+            if (posting == null) {
+                posting = new Posting();
+                m_postings.put(entry.getKey(), posting);
+            }
+            posting.add(doc.number, entry.getValue()[0], entry.getValue()[1]);
+        }
+    }
+
+    /**
+     * Returns the public and secret counts held for a word, adding them if they are new.
+     * @param counts the counts of each word.
+     * @param word the word.
+     * @return the public and secret counts of the word.
+     */
+    private static int[] countFor(Map<String, int[]> counts, String word) {
+        int[] count = counts.get(word);
+        if (count == null) {
+            count = new int[2];
+            counts.put(word, count);
+        }
+        return count;
+    }
+
+    /**
+     * Removes whatever is indexed for the supplied Entity ID.
+     * @param id the ID of the Entity.
+     */
+    private void unindex(UUID id) {
+        Document doc = m_documents.remove(id);
+        if (doc != null) {
+            m_byNumber[doc.number] = null;
+            m_publicWords -= doc.publicLength;
+            m_secretWords -= doc.secretLength;
+            for (String word : doc.words) {
+                Posting posting = m_postings.get(word);
+                if (posting != null) {
+                    posting.remove(doc.number);
+                    if (posting.size == 0) {
+                        m_postings.remove(word);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes up the gaps left in the numbering by removed Entities.  Numbers keep their order, so every posting list
+     * stays sorted.
+     */
+    private void renumber() {
+        int[] renumbered = new int[m_nextNumber];
+        int next = 0;
+        for (int i = 0; i < m_nextNumber; i++) {
+            Document doc = m_byNumber[i];
+            if (doc != null) {
+                renumbered[i] = next;
+                doc.number = next;
+                m_byNumber[i] = null;
+                m_byNumber[next++] = doc;
+            }
+        }
+        m_nextNumber = next;
+        for (Posting posting : m_postings.values()) {
+            for (int i = 0; i < posting.size; i++) {
+                posting.numbers[i] = renumbered[posting.numbers[i]];
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void entityChanged(EntityChangeEvent event) {
+        if (event.isRemoved()) {
+            unindex(event.getId());
+        } else {
+            Document doc = m_documents.get(event.getId());
+            Entity entity = event.getEntity();
+            // Only the descriptions are indexed, so changes to anything else need no work.
+            if (doc == null || !Objects.equals(doc.entity.getPublicData().getDescription(), entity.getPublicData().getDescription())
+                    || !Objects.equals(doc.entity.getSecretData().getDescription(), entity.getSecretData().getDescription())) {
+                index(entity);
+            } else {
+                doc.entity = entity;
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void dataRemoved(UUID id) {
+        unindex(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void dataAddedOrUpdated(Entity entity) {
+        index(entity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void timelineEntryAddedOrUpdated(TimelineEntry tle) {
+        // Timeline entries are not searched.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void timelineEntryRemoved(UUID id) {
+        // Timeline entries are not searched.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clearAllData() {
+        // The new data, if any, is already in the data manager by the time this is heard.
+        rebuild();
+    }
+
+    /**
+     * Splits the supplied text into lower cased words, each a run of letters and digits.
+     * @param text the text to split, may be null.
+     * @return the words, in order.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words.add(text.substring(start, i).toLowerCase());
+            }
+        }
+        return words;
+    }
+
+    /** The Entities using a word, in ascending order of number, with how often each uses it. */
+    private static final class Posting {
+
+        /** The numbers of the Entities, of which the first size are used. */
+        private int[] numbers = new int[2];
+
+        /** How many times each Entity's public description uses the word. */
+        private int[] publicCounts = new int[2];
+
+        /** How many times each Entity's secret description uses the word. */
+        private int[] secretCounts = new int[2];
+
+        /** The number of Entities using the word. */
+        private int size;
+
+        /** The number of Entities using the word in their public description. */
+        private int publicDocuments;
+
+        /**
+         * Appends an Entity, which must have a higher number than any already held.
+         * @param number the number of the Entity.
+         * @param publicCount how many times its public description uses the word.
+         * @param secretCount how many times its secret description uses the word.
+         */
+        private void add(int number, int publicCount, int secretCount) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+                publicCounts = Arrays.copyOf(publicCounts, size * 2);
+                secretCounts = Arrays.copyOf(secretCounts, size * 2);
+            }
+            numbers[size] = number;
+            publicCounts[size] = publicCount;
+            secretCounts[size] = secretCount;
+            size++;
+            if (publicCount > 0) {
+                publicDocuments++;
+            }
+        }
+
+        /**
+         * Removes an Entity if it is held.
+         * @param number the number of the Entity.
+         */
+        private void remove(int number) {
+            int i = Arrays.binarySearch(numbers, 0, size, number);
+            if (i >= 0) {
+                if (publicCounts[i] > 0) {
+                    publicDocuments--;
+                }
+                int tail = size - i - 1;
+                System.arraycopy(numbers, i + 1, numbers, i, tail);
+                System.arraycopy(publicCounts, i + 1, publicCounts, i, tail);
+                System.arraycopy(secretCounts, i + 1, secretCounts, i, tail);
+                size--;
+            }
+        }
+    }
+
+    /** The indexed form of an Entity. */
+    private static final class Document {
+
+        /** The Entity as most recently heard of. */
+        private Entity entity;
+
+        /** The number of the Entity in the posting lists. */
+        private int number;
+
+        /** The number of words in the public description. */
+        private final int publicLength;
+
+        /** The number of words in the secret description. */
+        private final int secretLength;
+
+        /** The distinct words of both descriptions. */
+        private final String[] words;
+
+        /**
+         * Creates a new Document.
+         * @param e the Entity.
+         * @param n the number of the Entity.
+         * @param publicWords the number of words in the public description.
+         * @param secretWords the number of words in the secret description.
+         * @param distinctWords the distinct words of both descriptions.
+         */
+        private Document(Entity e, int n, int publicWords, int secretWords, String[] distinctWords) {
+            entity = e;
+            number = n;
+            publicLength = publicWords;
+            secretLength = secretWords;
+            words = distinctWords;
+        }
+    }
+}
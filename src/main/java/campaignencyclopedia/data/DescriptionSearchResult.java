@@ -0,0 +1,208 @@
+package campaignencyclopedia.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An Entity found by a {@link DescriptionSearchIndex}, with its score and a snippet of the matching description.
+ * The snippet is only cut from the description when first asked for, since most results of a broad search are never
+ * shown.
+ *
+ * @author Keith
+ */
+public class DescriptionSearchResult {
+
+    /** The number of characters of context shown before the first match. */
+    private static final int LEAD = 60;
+
+    /** The longest snippet, not counting the ellipses. */
+    private static final int SNIPPET_LENGTH = 200;
+
+    /** Marks text cut from either end of a snippet. */
+    private static final String ELLIPSIS = "...";
+
+    /** The matching Entity. */
+    private final Entity m_entity;
+
+    /** The BM25 score of the Entity. */
+    private final float m_score;
+
+    /** The lower cased words searched for. */
+    private final List<String> m_words;
+
+    /** True if secret descriptions were searched. */
+    private final boolean m_includeSecret;
+
+    /** The snippet, or null if it has not yet been cut. */
+    private String m_snippet;
+
+    /** The start and end, in pairs, of each matched word in the snippet. */
+    private int[] m_highlights;
+
+    /** True if the snippet was cut from the secret description. */
+    private boolean m_secretSnippet;
+
+    /**
+     * Creates a new DescriptionSearchResult.
+     * @param entity the matching Entity, must not be null.
+     * @param score the score of the Entity.
+     * @param words the lower cased words searched for, must not be null.  Shared between the results of a search, so
+     *              must not be changed.
+     * @param includeSecret true if secret descriptions were searched.
+     * @throws IllegalArgumentException if entity or words is null.
+     */
+    public DescriptionSearchResult(Entity entity, float score, List<String> words, boolean includeSecret) {
+        if (entity == null) {
+            throw new IllegalArgumentException("Parameter 'entity' must not be null.");
+        }
+        if (words == null) {
+            throw new IllegalArgumentException("Parameter 'words' must not be null.");
+        }
+        m_entity = entity;
+        m_score = score;
+        m_words = words;
+        m_includeSecret = includeSecret;
+    }
+
+    /**
+     * Returns the matching Entity, as it was when the search was run.
+     * @return the matching Entity.
+     */
+    public Entity getEntity() {
+        return m_entity;
+    }
+
+    /**
+     * Returns the score of the Entity.  Scores are only comparable between results of the same search.
+     * @return the score of the Entity.
+     */
+    public float getScore() {
+        return m_score;
+    }
+
+    /**
+     * Returns a snippet of the description around its first match, with runs of whitespace collapsed.
+     * @return the snippet.
+     */
+    public synchronized String getSnippet() {
+        cutSnippet();
+        return m_snippet;
+    }
+
+    /**
+     * Returns where the searched words appear in the snippet.
+     * @return the start and end index in the snippet of each matched word, in pairs, in order.
+     */
+    public synchronized int[] getHighlights() {
+        cutSnippet();
+        return m_highlights.clone();
+    }
+
+    /**
+     * Returns true if the snippet was cut from the secret description, because the public one does not match.
+     * @return true if the snippet comes from the secret description, false otherwise.
+     */
+    public synchronized boolean isSecretSnippet() {
+        cutSnippet();
+        return m_secretSnippet;
+    }
+
+    /** Cuts the snippet, if it has not been already. */
+    private void cutSnippet() {
+        if (m_snippet != null) {
+            return;
+        }
+        String text = collapseWhitespace(m_entity.getPublicData().getDescription());
+        int first = findFirstMatch(text);
+        if (first < 0 && m_includeSecret) {
+            String secret = collapseWhitespace(m_entity.getSecretData().getDescription());
+            int secretFirst = findFirstMatch(secret);
+            if (secretFirst >= 0) {
+                text = secret;
+                first = secretFirst;
+                m_secretSnippet = true;
+            }
+        }
+        first = Math.max(first, 0);
+
+        // Start a little before the first match and end after the length allowed, at word boundaries.
+        int start = Math.max(0, first - LEAD);
+        while (start > 0 && start < first && text.charAt(start - 1) != ' ') {
+            start++;
+        }
+        int end = Math.min(text.length(), start + SNIPPET_LENGTH);
+        while (end < text.length() && end > first && text.charAt(end) != ' ') {
+            end--;
+        }
+
+        StringBuilder snippet = new StringBuilder();
+        if (start > 0) {
+            snippet.append(ELLIPSIS);
+        }
+        int offset = snippet.length() - start;
+        snippet.append(text, start, end);
+        if (end < text.length()) {
+            snippet.append(ELLIPSIS);
+        }
+        m_snippet = snippet.toString();
+
+        // Mark every searched word in the snippet.
+        int[] highlights = new int[8];
+        int count = 0;
+        int i = start;
+        while (i < end) {
+            while (i < end && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int wordStart = i;
+            while (i < end && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > wordStart && m_words.contains(text.substring(wordStart, i).toLowerCase())) {
+                if (count == highlights.length) {
+                    highlights = Arrays.copyOf(highlights, count * 2);
+                }
+                highlights[count++] = wordStart + offset;
+                highlights[count++] = i + offset;
+            }
+        }
+        m_highlights = Arrays.copyOf(highlights, count);
+    }
+
+    /**
+     * Returns the index of the first searched word in the supplied text.
+     * @param text the text to look in.
+     * @return the index of the first searched word, or -1 if there is none.
+     */
+    private int findFirstMatch(String text) {
+        int i = 0;
+        while (i < text.length()) {
+            while (i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int wordStart = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > wordStart && m_words.contains(text.substring(wordStart, i).toLowerCase())) {
+                return wordStart;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the supplied text with each run of whitespace replaced by a single space.
+     * @param text the text, may be null.
+     * @return the collapsed text.
+     */
+    private static String collapseWhitespace(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "DescriptionSearchResult{" + m_entity.getName() + ", " + m_score + "}";
+    }
+}
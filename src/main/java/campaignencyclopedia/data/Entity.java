@@ -18,6 +18,8 @@ public class Entity implements Comparable<Entity>, ColoredDisplayable {
     private final EntityData m_publicData;
     private final EntityData m_secretData;
     private final boolean m_isSecret;
+    /** The key this Entity sorts by, computed on first use and again only if the sort configuration changes. */
+    private ComparisonTools.SortKey m_sortKey;
 
     /**
      * Constructs a new Entity.
@@ -113,12 +115,23 @@ public class Entity implements Comparable<Entity>, ColoredDisplayable {
         return true;
     }
 
+    /**
+     * Returns the key this Entity sorts by.
+     * @return the key this Entity sorts by.
+     */
+    public ComparisonTools.SortKey getSortKey() {
+        ComparisonTools.SortKey key = m_sortKey;
+        if (key == null || !key.isCurrent()) {
+            key = ComparisonTools.getSortKey(m_name);
+            m_sortKey = key;
+        }
+        return key;
+    }
+
     /** {@inheritDoc} */
     @Override
     public int compareTo(Entity t) {
-        String first = ComparisonTools.trimForSort(this.getName());
-        String second = ComparisonTools.trimForSort(t.getName());
-        return first.compareTo(second);
+        return getSortKey().compareTo(t.getSortKey());
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,223 @@
+package campaignencyclopedia.data;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Describes a change to a single Entity: its state before and after the change, and the Relationships that were added
+ * to or removed from it, as seen through {@link DataAccessor#getRelationshipsForEntity(UUID)}.  This lets listeners
+ * patch only what changed, rather than rebuilding everything they hold for the Entity.
+ * <p>
+ * Events are immutable.  Consecutive events for the same Entity can be combined with {@link #merge(EntityChangeEvent)}.
+ *
+ * @author Keith
+ */
+public class EntityChangeEvent {
+
+    /** The ID of the changed Entity. */
+    private final UUID m_id;
+
+    /** The Entity before the change, or null if it was added. */
+    private final Entity m_previous;
+
+    /** The Entity after the change, or null if it was removed. */
+    private final Entity m_current;
+
+    /** The Relationships the Entity gained. */
+    private final Set<Relationship> m_addedRelationships;
+
+    /** The Relationships the Entity lost. */
+    private final Set<Relationship> m_removedRelationships;
+
+    /**
+     * Creates a new EntityChangeEvent.
+     * @param id the ID of the changed Entity, must not be null.
+     * @param previous the Entity before the change, or null if it was added.
+     * @param current the Entity after the change, or null if it was removed.
+     * @param addedRelationships the Relationships the Entity gained, must not be null.
+     * @param removedRelationships the Relationships the Entity lost, must not be null.
+     * @throws IllegalArgumentException if any of the required parameters are null.
+     */
+    public EntityChangeEvent(UUID id, Entity previous, Entity current,
+                             Set<Relationship> addedRelationships, Set<Relationship> removedRelationships) {
+        if (id == null) {
+            throw new IllegalArgumentException("Parameter 'id' must not be null.");
+        }
+        if (addedRelationships == null) {
+            throw new IllegalArgumentException("Parameter 'addedRelationships' must not be null.");
+        }
+        if (removedRelationships == null) {
+            throw new IllegalArgumentException("Parameter 'removedRelationships' must not be null.");
+        }
+        m_id = id;
+        m_previous = previous;
+        m_current = current;
+        m_addedRelationships = Collections.unmodifiableSet(new HashSet<>(addedRelationships));
+        m_removedRelationships = Collections.unmodifiableSet(new HashSet<>(removedRelationships));
+    }
+
+    /**
+     * Returns an event for an Entity whose data changed, or which was added, with no change to its Relationships.
+     * @param previous the Entity before the change, or null if it was added.
+     * @param current the Entity after the change, must not be null.
+     * @return the event.
+     */
+    public static EntityChangeEvent entityUpdated(Entity previous, Entity current) {
+        Set<Relationship> none = Collections.emptySet();
+        return new EntityChangeEvent(current.getId(), previous, current, none, none);
+    }
+
+    /**
+     * Returns an event for an Entity which was removed, along with all of its Relationships.
+     * @param id the ID of the removed Entity.
+     * @param previous the Entity before it was removed, or null if it was not known.
+     * @param relationships the Relationships the Entity had.
+     * @return the event.
+     */
+    public static EntityChangeEvent entityRemoved(UUID id, Entity previous, Set<Relationship> relationships) {
+        Set<Relationship> none = Collections.emptySet();
+        return new EntityChangeEvent(id, previous, null, none, relationships);
+    }
+
+    /**
+     * Returns an event for an Entity whose Relationships changed, but whose data did not.
+     * @param entity the Entity, must not be null.
+     * @param added the Relationships the Entity gained.
+     * @param removed the Relationships the Entity lost.
+     * @return the event.
+     */
+    public static EntityChangeEvent relationshipsChanged(Entity entity, Set<Relationship> added, Set<Relationship> removed) {
+        return new EntityChangeEvent(entity.getId(), entity, entity, added, removed);
+    }
+
+    /**
+     * Returns the ID of the changed Entity.
+     * @return the ID of the changed Entity.
+     */
+    public UUID getId() {
+        return m_id;
+    }
+
+    /**
+     * Returns the Entity as it was before the change.
+     * @return the Entity before the change, or null if it was added.
+     */
+    public Entity getPreviousEntity() {
+        return m_previous;
+    }
+
+    /**
+     * Returns the Entity as it is after the change.
+     * @return the Entity after the change, or null if it was removed.
+     */
+    public Entity getEntity() {
+        return m_current;
+    }
+
+    /**
+     * Returns the Relationships the Entity gained.
+     * @return a read-only set of the Relationships the Entity gained.
+     */
+    public Set<Relationship> getAddedRelationships() {
+        return m_addedRelationships;
+    }
+
+    /**
+     * Returns the Relationships the Entity lost.
+     * @return a read-only set of the Relationships the Entity lost.
+     */
+    public Set<Relationship> getRemovedRelationships() {
+        return m_removedRelationships;
+    }
+
+    /**
+     * Returns true if the Entity was added.
+     * @return true if the Entity was added, false otherwise.
+     */
+    public boolean isAdded() {
+        return m_previous == null && m_current != null;
+    }
+
+    /**
+     * Returns true if the Entity was removed.
+     * @return true if the Entity was removed, false otherwise.
+     */
+    public boolean isRemoved() {
+        return m_current == null;
+    }
+
+    /**
+     * Returns true if the name of the Entity changed.  Additions and removals count as changes.
+     * @return true if the name of the Entity changed, false otherwise.
+     */
+    public boolean isNameChanged() {
+        return m_previous == null || m_current == null || !Objects.equals(m_previous.getName(), m_current.getName());
+    }
+
+    /**
+     * Returns true if the type of the Entity changed.  Additions and removals count as changes.
+     * @return true if the type of the Entity changed, false otherwise.
+     */
+    public boolean isTypeChanged() {
+        return m_previous == null || m_current == null || m_previous.getType() != m_current.getType();
+    }
+
+    /**
+     * Returns true if the secrecy of the Entity changed.  Additions and removals count as changes.
+     * @return true if the secrecy of the Entity changed, false otherwise.
+     */
+    public boolean isSecrecyChanged() {
+        return m_previous == null || m_current == null || m_previous.isSecret() != m_current.isSecret();
+    }
+
+    /**
+     * Returns true if any Relationships were added or removed.
+     * @return true if any Relationships were added or removed, false otherwise.
+     */
+    public boolean isRelationshipsChanged() {
+        return !m_addedRelationships.isEmpty() || !m_removedRelationships.isEmpty();
+    }
+
+    /**
+     * Combines this event with one that followed it for the same Entity, giving a single event with the state before
+     * this one and after the later one.  A Relationship added by one and removed by the other appears in neither set.
+     * @param later the event that followed this one, must be for the same Entity.
+     * @return the combined event, or null if this event added the Entity and the later one removed it again, so that
+     *         together they amount to nothing.
+     * @throws IllegalArgumentException if the later event is for a different Entity.
+     */
+    public EntityChangeEvent merge(EntityChangeEvent later) {
+        if (later == null || !m_id.equals(later.m_id)) {
+            throw new IllegalArgumentException("Parameter 'later' must be an event for the same Entity.");
+        }
+        if (isAdded() && later.isRemoved()) {
+            return null;
+        }
+        Set<Relationship> added = new HashSet<>(m_addedRelationships);
+        added.removeAll(later.m_removedRelationships);
+        for (Relationship rel : later.m_addedRelationships) {
+            if (!m_removedRelationships.contains(rel)) {
+                added.add(rel);
+            }
+        }
+        Set<Relationship> removed = new HashSet<>(m_removedRelationships);
+        removed.removeAll(later.m_addedRelationships);
+        for (Relationship rel : later.m_removedRelationships) {
+            if (!m_addedRelationships.contains(rel)) {
+                removed.add(rel);
+            }
+        }
+        return new EntityChangeEvent(m_id, m_previous, later.m_current, added, removed);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "EntityChangeEvent{" + m_id + ", added: " + m_addedRelationships.size() + " relationships, removed: "
+                + m_removedRelationships.size() + (isAdded() ? ", entity added" : "")
+                + (isRemoved() ? ", entity removed" : "") + "}";
+    }
+}
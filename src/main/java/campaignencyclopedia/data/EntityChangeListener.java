@@ -0,0 +1,17 @@
+package campaignencyclopedia.data;
+
+/**
+ * A listener for the Campaign Data Manager that wants to know exactly what changed about each Entity, rather than
+ * just its new state.  Listeners implementing this interface are sent {@link #entityChanged(EntityChangeEvent)} in
+ * place of {@link #dataAddedOrUpdated(Entity)} and {@link #dataRemoved(java.util.UUID)}; the timeline and clear
+ * notifications are unchanged.
+ * @author Keith
+ */
+public interface EntityChangeListener extends CampaignDataManagerListener {
+
+    /**
+     * Called when an Entity is added, updated or removed, or when its Relationships change.
+     * @param event the change, with the state of the Entity before and after it.
+     */
+    public void entityChanged(EntityChangeEvent event);
+}
@@ -0,0 +1,508 @@
+package campaignencyclopedia.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A trigram index over the names and tags of every Entity in a campaign, answering the substring searches typed into
+ * the search box without scanning every Entity.  Each run of three characters in a lower cased name or tag maps to
+ * the Entities containing it, so the Entities which might contain a query of three or more characters are those
+ * listed under all of its trigrams; each of those few candidates is then checked for the whole query.  Runs of two
+ * characters are indexed too, for two character queries.  Single characters are not, since nearly every Entity would
+ * be listed under each; those queries scan the lower cased strings held here instead, which is still far cheaper
+ * than lower casing every Entity on every keystroke.
+ * <p>
+ * Each indexed Entity is given a number, and the posting list of each gram holds the numbers of its Entities in
+ * ascending order, so that lists can be intersected by binary search.
+ * <p>
+ * The index keeps itself current by listening to a Campaign Data Manager, and rebuilds itself from its DataAccessor
+ * when all data is cleared.  Since notifications are delivered after the change is made, the index can briefly lag
+ * the data manager; {@link #isIndexed(Entity)} tells whether an Entity is indexed as it now is.  This class is
+ * thread safe.
+ *
+ * @author Keith
+ */
+public class EntitySearchIndex implements EntityChangeListener {
+
+    /** The longest run of characters indexed. */
+    private static final int GRAM_LENGTH = 3;
+
+    /** Set on packed bigrams, so that they never collide with packed trigrams. */
+    private static final long BIGRAM = 1L << 48;
+
+    /** The accessor to rebuild the index from. */
+    private final DataAccessor m_accessor;
+
+    /** The indexed form of each Entity, keyed by ID. */
+    private final UUIDHashMap<Document> m_documents;
+
+    /**
+     * The Entity indexed under each ID, the same as those in the documents but readable without the lock, so that
+     * {@link #isIndexed(Entity)} never waits on a rebuild or search.
+     */
+    private final Map<UUID, Entity> m_indexed;
+
+    /** The numbers of the Entities containing each bigram and trigram, keyed by the packed gram. */
+    private final Map<Long, Posting> m_postings;
+
+    /** The indexed form of each Entity by its number, with null for numbers no longer in use. */
+    private Document[] m_byNumber;
+
+    /** The number to give the next Entity indexed. */
+    private int m_nextNumber;
+
+    /** Counts changes to the index, so that a search can tell whether an earlier one is still current. */
+    private long m_version;
+
+    /**
+     * Creates a new, empty EntitySearchIndex over the supplied accessor.  Call {@link #rebuild()} to index the Entities
+     * already available from it, and add the index as a listener to the data manager behind the accessor to stay
+     * current.  Both are best done on a background thread, since indexing a large campaign takes a while.
+     * @param accessor the accessor to index, must not be null.
+     * @throws IllegalArgumentException if accessor is null.
+     */
+    public EntitySearchIndex(DataAccessor accessor) {
+        if (accessor == null) {
+            throw new IllegalArgumentException("Parameter 'accessor' must not be null.");
+        }
+        m_accessor = accessor;
+        m_documents = new UUIDHashMap<>();
+        m_postings = new HashMap<>();
+        m_indexed = new ConcurrentHashMap<>();
+        m_byNumber = new Document[16];
+    }
+
+    /**
+     * Returns the IDs of the Entities whose name or tags contain the supplied text, ignoring case and surrounding
+     * whitespace.  Type display strings are not searched here, since there are few enough of them to check directly.
+     * @param text the text to search for, must not be null.
+     * @param includeSecret true if secret tags should be searched.  Secret Entities are returned either way.
+     * @return the IDs of the matching Entities.
+     * @throws IllegalArgumentException if text is null.
+     */
+    public synchronized Set<UUID> search(String text, boolean includeSecret) {
+        if (text == null) {
+            throw new IllegalArgumentException("Parameter 'text' must not be null.");
+        }
+        String query = normalize(text);
+        Set<UUID> matches = new HashSet<>();
+        if (query.length() < 2) {
+            // Too short to have any grams, so check everything.
+            for (Document doc : m_documents.values()) {
+                if (doc.contains(query, includeSecret)) {
+                    matches.add(doc.entity.getId());
+                }
+            }
+            return matches;
+        }
+
+        // Collect the posting lists of the query's grams, failing fast if any is absent, and walk the shortest.
+        long[] grams = getGrams(query);
+        Posting[] postings = new Posting[grams.length];
+        Posting shortest = null;
+        for (int i = 0; i < grams.length; i++) {
+            postings[i] = m_postings.get(grams[i]);
+            if (postings[i] == null) {
+                return matches;
+            }
+            if (shortest == null || postings[i].size < shortest.size) {
+                shortest = postings[i];
+            }
+        }
+        for (int i = 0; i < shortest.size; i++) {
+            int number = shortest.numbers[i];
+            boolean inAll = true;
+            for (Posting posting : postings) {
+                if (posting != shortest && !posting.contains(number)) {
+                    inAll = false;
+                    break;
+                }
+            }
+            // Every gram being present somewhere does not mean the whole query is, so check the candidate itself.
+            Document doc = m_byNumber[number];
+            if (inAll && doc.contains(query, includeSecret)) {
+                matches.add(doc.entity.getId());
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Narrows the results of an earlier search to those which also contain the supplied text, checking only the
+     * earlier matches.  This is only correct if every Entity containing the new text also contained the earlier text,
+     * as when the new text contains it, and if the index has not changed since the earlier search.
+     * @param text the text to search for, must not be null.
+     * @param includeSecret true if secret tags should be searched, as they must have been for the earlier search.
+     * @param within the IDs found by the earlier search, must not be null.
+     * @param version the {@link #getVersion() version} of the index the earlier search ran against.
+     * @return the IDs of the earlier matches which contain the text, or null if the index has changed since.
+     * @throws IllegalArgumentException if text or within is null.
+     */
+    public synchronized Set<UUID> narrow(String text, boolean includeSecret, Set<UUID> within, long version) {
+        if (text == null) {
+            throw new IllegalArgumentException("Parameter 'text' must not be null.");
+        }
+        if (within == null) {
+            throw new IllegalArgumentException("Parameter 'within' must not be null.");
+        }
+        if (version != m_version) {
+            return null;
+        }
+        String query = normalize(text);
+        Set<UUID> matches = new HashSet<>();
+        for (UUID id : within) {
+            Document doc = m_documents.get(id);
+            if (doc != null && doc.contains(query, includeSecret)) {
+                matches.add(id);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the version of the index, which changes whenever an Entity is indexed or unindexed.
+     * @return the version of the index.
+     */
+    public synchronized long getVersion() {
+        return m_version;
+    }
+
+    /**
+     * Returns true if the supplied Entity is indexed exactly as it is, so that the results of {@link #search} can be
+     * trusted for it.  This takes no lock, so it is safe to call on the event dispatch thread.
+     * @param entity the Entity to check.
+     * @return true if the Entity is indexed as it is, false if it is not indexed or has since changed.
+     */
+    public boolean isIndexed(Entity entity) {
+        if (entity == null) {
+            return false;
+        }
+        Entity indexed = m_indexed.get(entity.getId());
+        return indexed != null && (indexed == entity || indexed.equals(entity));
+    }
+
+    /**
+     * Returns the number of indexed Entities.
+     * @return the number of indexed Entities.
+     */
+    public synchronized int size() {
+        return m_documents.size();
+    }
+
+    /**
+     * Clears the index and reindexes every Entity available from the accessor.  This reads every Entity in the
+     * campaign, so should not be called on the event dispatch thread.
+     */
+    public synchronized void rebuild() {
+        m_documents.clear();
+        m_indexed.clear();
+        m_postings.clear();
+        Arrays.fill(m_byNumber, null);
+        m_nextNumber = 0;
+        m_version++;
+        for (Entity entity : m_accessor.getAllEntities()) {
+            index(entity);
+        }
+    }
+
+    /**
+     * Indexes the supplied Entity, replacing whatever was indexed for it before.  The Entity is given a number
+     * higher than any in use, so appending it keeps every posting list in order.
+     * @param entity the Entity to index.
+     */
+    private void index(Entity entity) {
+        unindex(entity.getId());
+        if (m_nextNumber == m_byNumber.length) {
+            if (m_documents.size() < m_nextNumber / 2) {
+                renumber();
+            } else {
+                m_byNumber = Arrays.copyOf(m_byNumber, m_byNumber.length * 2);
+            }
+        }
+        Document doc = new Document(entity, m_nextNumber++);
+        m_version++;
+        m_documents.put(entity.getId(), doc);
+        m_indexed.put(entity.getId(), entity);
+        m_byNumber[doc.number] = doc;
+        for (long gram : doc.grams) {
+            Posting posting = m_postings.get(gram);
+            if (posting == null) {
+                posting = new Posting();
+                m_postings.put(gram, posting);
+            }
+            posting.add(doc.number);
+        }
+    }
+
+    /**
+     * Removes whatever is indexed for the supplied Entity ID.
+     * @param id the ID of the Entity.
+     */
+    private void unindex(UUID id) {
+        Document doc = m_documents.remove(id);
+        if (doc != null) {
+            m_indexed.remove(id);
+            m_version++;
+            m_byNumber[doc.number] = null;
+            for (long gram : doc.grams) {
+                Posting posting = m_postings.get(gram);
+                if (posting != null) {
+                    posting.remove(doc.number);
+                    if (posting.size == 0) {
+                        m_postings.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes up the gaps left in the numbering by removed Entities.  Numbers keep their order, so every posting list
+     * stays sorted.
+     */
+    private void renumber() {
+        int[] renumbered = new int[m_nextNumber];
+        int next = 0;
+        for (int i = 0; i < m_nextNumber; i++) {
+            Document doc = m_byNumber[i];
+            if (doc != null) {
+                renumbered[i] = next;
+                doc.number = next;
+                m_byNumber[i] = null;
+                m_byNumber[next++] = doc;
+            }
+        }
+        m_nextNumber = next;
+        for (Posting posting : m_postings.values()) {
+            for (int i = 0; i < posting.size; i++) {
+                posting.numbers[i] = renumbered[posting.numbers[i]];
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void entityChanged(EntityChangeEvent event) {
+        if (event.isRemoved()) {
+            unindex(event.getId());
+        } else if (!isIndexed(event.getEntity())) {
+            index(event.getEntity());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void dataRemoved(UUID id) {
+        unindex(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void dataAddedOrUpdated(Entity entity) {
+        index(entity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void timelineEntryAddedOrUpdated(TimelineEntry tle) {
+        // Timeline entries are not searched.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void timelineEntryRemoved(UUID id) {
+        // Timeline entries are not searched.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clearAllData() {
+        // The new data, if any, is already in the data manager by the time this is heard.
+        rebuild();
+    }
+
+    /**
+     * Returns the supplied text in the form it is indexed and searched in, trimmed and lower cased.
+     * @param text the text to normalize.
+     * @return the normalized text.
+     */
+    static String normalize(String text) {
+        return text.trim().toLowerCase();
+    }
+
+    /**
+     * Returns the distinct grams of the supplied string: its trigrams, or its one bigram if it is only two characters
+     * long.
+     * @param s the normalized string.
+     * @return the packed grams.
+     */
+    private static long[] getGrams(String s) {
+        if (s.length() == 2) {
+            return new long[] {BIGRAM | ((long) s.charAt(0) << 16) | s.charAt(1)};
+        }
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= s.length(); i++) {
+            grams.add(((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2));
+        }
+        return toArray(grams);
+    }
+
+    /**
+     * Returns the contents of a set of longs as an array.
+     * @param values the set.
+     * @return the array.
+     */
+    private static long[] toArray(Set<Long> values) {
+        long[] array = new long[values.size()];
+        int i = 0;
+        for (Long value : values) {
+            array[i++] = value;
+        }
+        return array;
+    }
+
+    /** The numbers of the Entities containing a gram, in ascending order. */
+    private static final class Posting {
+
+        /** The numbers, of which the first size are used. */
+        private int[] numbers = new int[4];
+
+        /** The number of numbers used. */
+        private int size;
+
+        /**
+         * Appends a number, which must be higher than any already held.
+         * @param number the number to append.
+         */
+        private void add(int number) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            numbers[size++] = number;
+        }
+
+        /**
+         * Removes a number if it is held.
+         * @param number the number to remove.
+         */
+        private void remove(int number) {
+            int i = Arrays.binarySearch(numbers, 0, size, number);
+            if (i >= 0) {
+                System.arraycopy(numbers, i + 1, numbers, i, size - i - 1);
+                size--;
+            }
+        }
+
+        /**
+         * Returns true if a number is held.
+         * @param number the number to look for.
+         * @return true if the number is held, false otherwise.
+         */
+        private boolean contains(int number) {
+            return Arrays.binarySearch(numbers, 0, size, number) >= 0;
+        }
+    }
+
+    /** The indexed form of an Entity: its searchable strings, normalized once, and their grams. */
+    private static final class Document {
+
+        /** The Entity as indexed. */
+        private final Entity entity;
+
+        /** The number of the Entity in the posting lists. */
+        private int number;
+
+        /** The normalized name. */
+        private final String name;
+
+        /** The normalized public tags. */
+        private final String[] publicTags;
+
+        /** The normalized secret tags. */
+        private final String[] secretTags;
+
+        /** The distinct bigrams and trigrams of the name and all tags, public and secret. */
+        private final long[] grams;
+
+        /**
+         * Creates a new Document for the supplied Entity.
+         * @param e the Entity.
+         * @param n the number of the Entity.
+         */
+        private Document(Entity e, int n) {
+            entity = e;
+            number = n;
+            name = normalize(e.getName());
+            publicTags = normalizeAll(e.getPublicData().getTags());
+            secretTags = normalizeAll(e.getSecretData().getTags());
+
+            Set<Long> all = new HashSet<>();
+            addGrams(name, all);
+            for (String tag : publicTags) {
+                addGrams(tag, all);
+            }
+            for (String tag : secretTags) {
+                addGrams(tag, all);
+            }
+            grams = toArray(all);
+        }
+
+        /**
+         * Returns true if the name or tags contain the supplied query.
+         * @param query the normalized query.
+         * @param includeSecret true if secret tags should be searched.
+         * @return true if the query is found, false otherwise.
+         */
+        private boolean contains(String query, boolean includeSecret) {
+            if (name.contains(query)) {
+                return true;
+            }
+            for (String tag : publicTags) {
+                if (tag.contains(query)) {
+                    return true;
+                }
+            }
+            if (includeSecret) {
+                for (String tag : secretTags) {
+                    if (tag.contains(query)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Adds the bigrams and trigrams of the supplied string to a set.
+         * @param s the normalized string.
+         * @param grams the set to add to.
+         */
+        private static void addGrams(String s, Set<Long> grams) {
+            for (int i = 0; i + 2 <= s.length(); i++) {
+                grams.add(BIGRAM | ((long) s.charAt(i) << 16) | s.charAt(i + 1));
+                if (i + GRAM_LENGTH <= s.length()) {
+                    grams.add(((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2));
+                }
+            }
+        }
+
+        /**
+         * Normalizes each of the supplied strings.
+         * @param strings the strings.
+         * @return the normalized strings.
+         */
+        private static String[] normalizeAll(Set<String> strings) {
+            String[] normalized = new String[strings.size()];
+            int i = 0;
+            for (String s : strings) {
+                normalized[i++] = normalize(s);
+            }
+            return normalized;
+        }
+    }
+}
@@ -0,0 +1,720 @@
+package campaignencyclopedia.data;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable hash map in which every update returns a new map rather than changing this one.  The map is a hash
+ * array mapped trie, so an update copies only the handful of nodes on the path to the changed key and shares all of
+ * the rest with the previous version.  Updates and lookups are O(log32 n), and holding on to an old version costs
+ * nothing until it diverges from the current one.  Since instances never change they may be shared freely between
+ * threads.
+ *
+ * @param <K> the type of the keys, which must not be null.
+ * @param <V> the type of the values.
+ *
+ * @author Keith
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+    /** The number of hash bits consumed at each level of the trie. */
+    private static final int BITS = 5;
+
+    /** A mask of the hash bits consumed at each level of the trie. */
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** The deepest a trie can get: seven levels to consume a 32 bit hash, plus a collision node. */
+    private static final int MAX_DEPTH = 8;
+
+    /** The shared empty map. */
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(new BitmapNode(0, new Object[0]), 0);
+
+    /** The root of the trie. */
+    private final Node m_root;
+
+    /** The number of entries in the map. */
+    private final int m_size;
+
+    /**
+     * Creates a new PersistentHashMap.
+     * @param root the root of the trie.
+     * @param size the number of entries in the trie.
+     */
+    private PersistentHashMap(Node root, int size) {
+        m_root = root;
+        m_size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     * @param <K> the type of the keys.
+     * @param <V> the type of the values.
+     * @return the empty map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     * @return the number of entries in the map.
+     */
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * Returns true if the map has no entries.
+     * @return true if the map has no entries, false otherwise.
+     */
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    /**
+     * Returns the value mapped to the supplied key.
+     * @param key the key to look up.
+     * @return the value mapped to the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        Leaf leaf = m_root.find(key, hash(key), 0);
+        return leaf == null ? null : (V) leaf.m_value;
+    }
+
+    /**
+     * Returns true if the map contains the supplied key.
+     * @param key the key to look for.
+     * @return true if the map contains the supplied key, false otherwise.
+     */
+    public boolean containsKey(Object key) {
+        return key != null && m_root.find(key, hash(key), 0) != null;
+    }
+
+    /**
+     * Returns a map with the supplied mapping added, replacing any existing mapping for the key.  This map is not
+     * changed.
+     * @param key the key, must not be null.
+     * @param value the value.
+     * @return a map with the mapping added, or this map if it already held exactly that mapping.
+     */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Parameter 'key' must not be null.");
+        }
+        boolean[] added = new boolean[1];
+        Node root = m_root.put(new Leaf(key, value, hash(key)), 0, added);
+        if (root == m_root) {
+            return this;
+        }
+        return new PersistentHashMap<>(root, added[0] ? m_size + 1 : m_size);
+    }
+
+    /**
+     * Returns a map without any mapping for the supplied key.  This map is not changed.
+     * @param key the key to remove.
+     * @return a map without the key, or this map if it did not contain the key.
+     */
+    public PersistentHashMap<K, V> minus(Object key) {
+        if (key == null) {
+            return this;
+        }
+        Node root = m_root.remove(key, hash(key), 0);
+        if (root == m_root) {
+            return this;
+        }
+        if (root == null) {
+            return empty();
+        }
+        return new PersistentHashMap<>(root, m_size - 1);
+    }
+
+    /**
+     * Returns an iterator over the entries of the map, in no particular order.  The entries cannot be changed.
+     * @return an iterator over the entries of the map.
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<>(m_root);
+    }
+
+    /**
+     * Returns a read-only view of the values of the map.
+     * @return a read-only view of the values of the map.
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                final Iterator<Map.Entry<K, V>> entries = PersistentHashMap.this.iterator();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return entries.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("A PersistentHashMap cannot be modified.");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return m_size;
+            }
+        };
+    }
+
+    /**
+     * Returns a read-only java.util.Map view of this map.  Lookups through the view cost the same as on this map.
+     * @return a read-only java.util.Map view of this map.
+     */
+    public Map<K, V> asMap() {
+        return new AbstractMap<K, V>() {
+            @Override
+            public Set<Map.Entry<K, V>> entrySet() {
+                return new AbstractSet<Map.Entry<K, V>>() {
+                    @Override
+                    public Iterator<Map.Entry<K, V>> iterator() {
+                        return PersistentHashMap.this.iterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return m_size;
+                    }
+                };
+            }
+
+            @Override
+            public V get(Object key) {
+                return PersistentHashMap.this.get(key);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return PersistentHashMap.this.containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return m_size;
+            }
+        };
+    }
+
+    /**
+     * Returns the hash of the supplied key, with the high bits spread down since the trie consumes the low bits first.
+     * @param key the key to hash.
+     * @return the spread hash of the key.
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the bit representing the supplied hash at the supplied level of the trie.
+     * @param hash the hash.
+     * @param shift the number of hash bits consumed by the levels above.
+     * @return the bit for the hash at that level.
+     */
+    private static int bitFor(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * Returns a copy of the supplied array with the supplied element inserted at the supplied index.
+     * @param array the array to copy.
+     * @param index the index to insert at.
+     * @param element the element to insert.
+     * @return the new array.
+     */
+    private static Object[] insert(Object[] array, int index, Object element) {
+        Object[] copy = new Object[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = element;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    /**
+     * Returns a copy of the supplied array with the element at the supplied index replaced.
+     * @param array the array to copy.
+     * @param index the index to replace.
+     * @param element the new element.
+     * @return the new array.
+     */
+    private static Object[] replace(Object[] array, int index, Object element) {
+        Object[] copy = array.clone();
+        copy[index] = element;
+        return copy;
+    }
+
+    /**
+     * Returns a copy of the supplied array with the element at the supplied index removed.
+     * @param array the array to copy.
+     * @param index the index to remove.
+     * @return the new array.
+     */
+    private static Object[] delete(Object[] array, int index) {
+        Object[] copy = new Object[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+        return copy;
+    }
+
+    /** A single mapping in the trie. */
+    private static final class Leaf implements Map.Entry<Object, Object> {
+
+        /** The key. */
+        private final Object m_key;
+
+        /** The value. */
+        private final Object m_value;
+
+        /** The spread hash of the key. */
+        private final int m_hash;
+
+        /**
+         * Creates a new Leaf.
+         * @param key the key.
+         * @param value the value.
+         * @param hash the spread hash of the key.
+         */
+        private Leaf(Object key, Object value, int hash) {
+            m_key = key;
+            m_value = value;
+            m_hash = hash;
+        }
+
+        /**
+         * Returns true if this leaf holds the supplied key.
+         * @param key the key.
+         * @param hash the spread hash of the key.
+         * @return true if this leaf holds the supplied key.
+         */
+        private boolean matches(Object key, int hash) {
+            return m_hash == hash && m_key.equals(key);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object getKey() {
+            return m_key;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object getValue() {
+            return m_value;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException("A PersistentHashMap cannot be modified.");
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return m_key.hashCode() ^ (m_value == null ? 0 : m_value.hashCode());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+            return m_key.equals(other.getKey())
+                    && (m_value == null ? other.getValue() == null : m_value.equals(other.getValue()));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return m_key + "=" + m_value;
+        }
+    }
+
+    /** An interior node of the trie.  Nodes are never modified once built. */
+    private abstract static class Node {
+
+        /**
+         * Finds the leaf holding the supplied key.
+         * @param key the key.
+         * @param hash the spread hash of the key.
+         * @param shift the number of hash bits consumed by the levels above.
+         * @return the leaf, or null if the key is not present.
+         */
+        abstract Leaf find(Object key, int hash, int shift);
+
+        /**
+         * Returns a node with the supplied leaf added or replacing the existing leaf for its key.
+         * @param leaf the leaf to add.
+         * @param shift the number of hash bits consumed by the levels above.
+         * @param added set to true if the key was not previously present.
+         * @return the new node, or this node if nothing changed.
+         */
+        abstract Node put(Leaf leaf, int shift, boolean[] added);
+
+        /**
+         * Returns a node without the supplied key.
+         * @param key the key.
+         * @param hash the spread hash of the key.
+         * @param shift the number of hash bits consumed by the levels above.
+         * @return the new node, this node if the key was not present, or null if the node is now empty.
+         */
+        abstract Node remove(Object key, int hash, int shift);
+
+        /**
+         * Returns the children of this node, each either a Leaf or a Node.
+         * @return the children of this node.
+         */
+        abstract Object[] children();
+
+        /**
+         * Returns the only leaf of this node if it has exactly one child which is a leaf, so that the node can be
+         * collapsed into its parent.
+         * @return the only leaf of this node, or null.
+         */
+        Leaf singleLeaf() {
+            Object[] children = children();
+            if (children.length == 1 && children[0] instanceof Leaf) {
+                return (Leaf) children[0];
+            }
+            return null;
+        }
+    }
+
+    /** A node with up to 32 children, with a bitmap recording which of the 32 possible positions are occupied. */
+    private static final class BitmapNode extends Node {
+
+        /** The occupied positions. */
+        private final int m_bitmap;
+
+        /** The children at the occupied positions, in position order. */
+        private final Object[] m_children;
+
+        /**
+         * Creates a new BitmapNode.
+         * @param bitmap the occupied positions.
+         * @param children the children at the occupied positions, in position order.
+         */
+        private BitmapNode(int bitmap, Object[] children) {
+            m_bitmap = bitmap;
+            m_children = children;
+        }
+
+        /**
+         * Returns the index in the children array of the supplied position bit.
+         * @param bit the position bit.
+         * @return the index of the child at that position.
+         */
+        private int indexOf(int bit) {
+            return Integer.bitCount(m_bitmap & (bit - 1));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        Leaf find(Object key, int hash, int shift) {
+            int bit = bitFor(hash, shift);
+            if ((m_bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = m_children[indexOf(bit)];
+            if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                return leaf.matches(key, hash) ? leaf : null;
+            }
+            return ((Node) child).find(key, hash, shift + BITS);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        Node put(Leaf leaf, int shift, boolean[] added) {
+            int bit = bitFor(leaf.m_hash, shift);
+            int index = indexOf(bit);
+            if ((m_bitmap & bit) == 0) {
+                added[0] = true;
+                return new BitmapNode(m_bitmap | bit, insert(m_children, index, leaf));
+            }
+            Object child = m_children[index];
+            if (child instanceof Leaf) {
+                Leaf existing = (Leaf) child;
+                if (existing.matches(leaf.m_key, leaf.m_hash)) {
+                    if (existing.m_value == leaf.m_value) {
+                        return this;
+                    }
+                    return new BitmapNode(m_bitmap, replace(m_children, index, leaf));
+                }
+                added[0] = true;
+                return new BitmapNode(m_bitmap, replace(m_children, index, merge(existing, leaf, shift + BITS)));
+            }
+            Node node = (Node) child;
+            Node updated = node.put(leaf, shift + BITS, added);
+            if (updated == node) {
+                return this;
+            }
+            return new BitmapNode(m_bitmap, replace(m_children, index, updated));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            int bit = bitFor(hash, shift);
+            if ((m_bitmap & bit) == 0) {
+                return this;
+            }
+            int index = indexOf(bit);
+            Object child = m_children[index];
+            if (child instanceof Leaf) {
+                if (!((Leaf) child).matches(key, hash)) {
+                    return this;
+                }
+                return without(bit, index);
+            }
+            Node node = (Node) child;
+            Node updated = node.remove(key, hash, shift + BITS);
+            if (updated == node) {
+                return this;
+            }
+            if (updated == null) {
+                return without(bit, index);
+            }
+            Leaf single = updated.singleLeaf();
+            return new BitmapNode(m_bitmap, replace(m_children, index, single != null ? single : updated));
+        }
+
+        /**
+         * Returns this node without the child at the supplied position.
+         * @param bit the position bit of the child.
+         * @param index the index of the child.
+         * @return the new node, or null if it would be empty.
+         */
+        private Node without(int bit, int index) {
+            if (m_children.length == 1) {
+                return null;
+            }
+            return new BitmapNode(m_bitmap & ~bit, delete(m_children, index));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        Object[] children() {
+            return m_children;
+        }
+
+        /**
+         * Builds the smallest subtree holding two leaves with different keys.
+         * @param a the first leaf.
+         * @param b the second leaf.
+         * @param shift the number of hash bits consumed by the levels above the subtree.
+         * @return the subtree.
+         */
+        private static Node merge(Leaf a, Leaf b, int shift) {
+            if (a.m_hash == b.m_hash) {
+                return new CollisionNode(a.m_hash, new Object[] { a, b });
+            }
+            // The hashes differ in some bit, so this recursion ends before the hash is used up.
+            int bitA = bitFor(a.m_hash, shift);
+            int bitB = bitFor(b.m_hash, shift);
+            if (bitA == bitB) {
+                return new BitmapNode(bitA, new Object[] { merge(a, b, shift + BITS) });
+            }
+            boolean aFirst = ((a.m_hash >>> shift) & MASK) < ((b.m_hash >>> shift) & MASK);
+            Object[] children = aFirst ? new Object[] { a, b } : new Object[] { b, a };
+            return new BitmapNode(bitA | bitB, children);
+        }
+    }
+
+    /** A node holding leaves whose keys have identical hashes. */
+    private static final class CollisionNode extends Node {
+
+        /** The hash shared by every leaf. */
+        private final int m_hash;
+
+        /** The leaves. */
+        private final Object[] m_leaves;
+
+        /**
+         * Creates a new CollisionNode.
+         * @param hash the hash shared by every leaf.
+         * @param leaves the leaves.
+         */
+        private CollisionNode(int hash, Object[] leaves) {
+            m_hash = hash;
+            m_leaves = leaves;
+        }
+
+        /**
+         * Returns the index of the leaf holding the supplied key.
+         * @param key the key.
+         * @return the index of the leaf, or -1 if there is none.
+         */
+        private int indexOf(Object key) {
+            for (int i = 0; i < m_leaves.length; i++) {
+                if (((Leaf) m_leaves[i]).m_key.equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        Leaf find(Object key, int hash, int shift) {
+            if (hash != m_hash) {
+                return null;
+            }
+            int index = indexOf(key);
+            return index < 0 ? null : (Leaf) m_leaves[index];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        Node put(Leaf leaf, int shift, boolean[] added) {
+            if (leaf.m_hash != m_hash) {
+                // Push this node down a level behind a bitmap node that can tell the two hashes apart.
+                return new BitmapNode(bitFor(m_hash, shift), new Object[] { this }).put(leaf, shift, added);
+            }
+            int index = indexOf(leaf.m_key);
+            if (index < 0) {
+                added[0] = true;
+                return new CollisionNode(m_hash, insert(m_leaves, m_leaves.length, leaf));
+            }
+            if (((Leaf) m_leaves[index]).m_value == leaf.m_value) {
+                return this;
+            }
+            return new CollisionNode(m_hash, replace(m_leaves, index, leaf));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            if (hash != m_hash) {
+                return this;
+            }
+            int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            if (m_leaves.length == 1) {
+                return null;
+            }
+            return new CollisionNode(m_hash, delete(m_leaves, index));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        Object[] children() {
+            return m_leaves;
+        }
+    }
+
+    /**
+     * Iterates the leaves of a trie depth first, using an explicit stack.
+     * @param <K> the type of the keys.
+     * @param <V> the type of the values.
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+
+        /** The children arrays of the nodes being walked, outermost first. */
+        private final Object[][] m_stack;
+
+        /** The next index to visit in each children array on the stack. */
+        private final int[] m_positions;
+
+        /** The number of nodes on the stack. */
+        private int m_depth;
+
+        /** The next leaf to return, or null if there are no more. */
+        private Leaf m_next;
+
+        /**
+         * Creates a new EntryIterator.
+         * @param root the root of the trie to iterate.
+         */
+        private EntryIterator(Node root) {
+            m_stack = new Object[MAX_DEPTH + 1][];
+            m_positions = new int[MAX_DEPTH + 1];
+            m_depth = 0;
+            push(root);
+            advance();
+        }
+
+        /**
+         * Pushes the supplied node on to the stack.
+         * @param node the node to visit.
+         */
+        private void push(Node node) {
+            m_stack[m_depth] = node.children();
+            m_positions[m_depth] = 0;
+            m_depth++;
+        }
+
+        /** Moves to the next leaf. */
+        private void advance() {
+            m_next = null;
+            while (m_depth > 0) {
+                Object[] children = m_stack[m_depth - 1];
+                int position = m_positions[m_depth - 1];
+                if (position == children.length) {
+                    m_stack[--m_depth] = null;
+                    continue;
+                }
+                m_positions[m_depth - 1] = position + 1;
+                Object child = children[position];
+                if (child instanceof Leaf) {
+                    m_next = (Leaf) child;
+                    return;
+                }
+                push((Node) child);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return m_next != null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (m_next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = (Map.Entry<K, V>) (Map.Entry<?, ?>) m_next;
+            advance();
+            return entry;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("A PersistentHashMap cannot be modified.");
+        }
+    }
+}
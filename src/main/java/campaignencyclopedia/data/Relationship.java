@@ -12,13 +12,16 @@ import java.util.UUID;
  */
 public class Relationship implements Comparable<Relationship> {
 
-    private final String m_relationship;
+    /** The interned id of the type of this Relationship, see {@link RelationshipOptionManager#getTypeId(String)}. */
+    private final int m_typeId;
     /** The ID of the Entity this Relationship is TO.*/
     private final UUID m_idOfRelatedEntity;
     /** The ID of the Entity that owns this relationship. */
     private final UUID m_idOfEntity;
     /** True if this relationship is secret, false otherwise. */
     private final boolean m_isSecret;
+    /** The hash code, computed once since Relationships are immutable and spend their lives in hash sets. */
+    private final int m_hash;
 
 
     /**
@@ -41,10 +44,17 @@ public class Relationship implements Comparable<Relationship> {
         if (relationship.isEmpty()) {
             throw new IllegalArgumentException("Parameter 'relationship' cannot be empty.");
         }
-        m_relationship = relationship;
+        m_typeId = RelationshipOptionManager.getTypeId(relationship);
         m_idOfRelatedEntity = relation;
         m_idOfEntity = entity;
         m_isSecret = isSecret;
+
+        int hash = 7;
+        hash = 79 * hash + m_typeId;
+        hash = 79 * hash + m_idOfRelatedEntity.hashCode();
+        hash = 79 * hash + m_idOfEntity.hashCode();
+        hash = 79 * hash + (m_isSecret ? 1 : 0);
+        m_hash = hash;
     }
 
     /**
@@ -52,7 +62,24 @@ public class Relationship implements Comparable<Relationship> {
      * @return the type of this Relationship.
      */
     public String getRelationshipText() {
-        return m_relationship;
+        return RelationshipOptionManager.getTypeText(m_typeId);
+    }
+
+    /**
+     * Returns the interned id of the type of this Relationship.
+     * @return the interned id of the type of this Relationship.
+     */
+    public int getTypeId() {
+        return m_typeId;
+    }
+
+    /**
+     * Returns true if this Relationship is of the supplied type.
+     * @param type the type to check for.
+     * @return true if this Relationship is of the supplied type, false otherwise.
+     */
+    public boolean isType(RelationshipType type) {
+        return m_typeId == type.getTypeId();
     }
 
     /**
@@ -82,12 +109,7 @@ public class Relationship implements Comparable<Relationship> {
     /** {@inheritDoc} */
     @Override
     public int hashCode() {
-        int hash = 7;
-        hash = 79 * hash + Objects.hashCode(this.m_relationship);
-        hash = 79 * hash + Objects.hashCode(this.m_idOfRelatedEntity);
-        hash = 79 * hash + Objects.hashCode(this.m_idOfEntity);
-        hash = 79 * hash + (this.m_isSecret ? 1 : 0);
-        return hash;
+        return m_hash;
     }
 
     /** {@inheritDoc} */
@@ -100,7 +122,7 @@ public class Relationship implements Comparable<Relationship> {
             return false;
         }
         final Relationship other = (Relationship) obj;
-        if (!Objects.equals(this.m_relationship, other.m_relationship)) {
+        if (this.m_hash != other.m_hash || this.m_typeId != other.m_typeId) {
             return false;
         }
         if (!Objects.equals(this.m_idOfRelatedEntity, other.m_idOfRelatedEntity)) {
@@ -118,12 +140,15 @@ public class Relationship implements Comparable<Relationship> {
     /** {@inheritDoc} */
     @Override
     public int compareTo(Relationship t) {
-        return m_relationship.compareTo(t.getRelationshipText());
+        if (m_typeId == t.m_typeId) {
+            return 0;
+        }
+        return getRelationshipText().compareTo(t.getRelationshipText());
     }
 
     /** {@inheritDoc} */
     @Override
     public String toString() {
-        return "rel-type:" + m_relationship + ", entity:" + m_idOfEntity + ", relation:" + m_idOfRelatedEntity.toString() + ",isSecret:" + m_isSecret;
+        return "rel-type:" + getRelationshipText() + ", entity:" + m_idOfEntity + ", relation:" + m_idOfRelatedEntity.toString() + ",isSecret:" + m_isSecret;
     }
 }
\ No newline at end of file
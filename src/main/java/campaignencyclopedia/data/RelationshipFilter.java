@@ -0,0 +1,15 @@
+package campaignencyclopedia.data;
+
+/**
+ * A test applied to Relationships by {@link RelationshipManager#anyMatch(Visibility, RelationshipFilter)}.
+ * @author Keith
+ */
+public interface RelationshipFilter {
+
+    /**
+     * Returns true if the supplied Relationship passes this filter.
+     * @param rel the Relationship to test.
+     * @return true if the Relationship passes, false otherwise.
+     */
+    public boolean accept(Relationship rel);
+}
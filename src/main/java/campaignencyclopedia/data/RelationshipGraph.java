@@ -0,0 +1,267 @@
+package campaignencyclopedia.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable snapshot of the relationship graph in compressed sparse row form.  Each Entity with a Relationship is a
+ * node with a dense int id, from 0 to {@link #getNodeCount()} - 1, and the Relationships touching node {@code n},
+ * in or outbound, are the edges from {@code getFirstEdge(n)} up to but excluding {@code getEndEdge(n)}.  The edges of
+ * every node are held back to back in flat arrays, with the node at the far end, the interned type id, and whether the
+ * edge is secret and owned by the node, so graph algorithms can walk them with int arithmetic and no allocation:
+ * <pre>
+ * for (int e = graph.getFirstEdge(n); e &lt; graph.getEndEdge(n); e++) {
+ *     int neighbour = graph.getTarget(e);
+ *     ...
+ * }
+ * </pre>
+ * Every Relationship appears as two edges, one listed under each end.  Since nothing about a snapshot
+ * changes once built, it may be shared freely between threads.
+ *
+ * @author Keith
+ */
+public final class RelationshipGraph {
+
+    /** Flag set on an edge that is secret. */
+    private static final byte SECRET = 1;
+
+    /** Flag set on an edge owned by the node it is listed under, rather than pointing at it. */
+    private static final byte OUTBOUND = 2;
+
+    /** An empty graph. */
+    private static final RelationshipGraph EMPTY = new RelationshipGraph(new UUIDHashMap<Object>(), new int[1], new int[0],
+                                                                         new int[0], new byte[0], new Relationship[0]);
+
+    /** The nodes, the index of each key being its node id.  The values are unused. */
+    private final UUIDHashMap<Object> m_nodes;
+
+    /** The first edge of each node, with one extra entry holding the number of edges. */
+    private final int[] m_offsets;
+
+    /** The node at the far end of each edge. */
+    private final int[] m_targets;
+
+    /** The interned relationship type id of each edge. */
+    private final int[] m_types;
+
+    /** The SECRET and OUTBOUND flags of each edge. */
+    private final byte[] m_flags;
+
+    /** The Relationship behind each edge. */
+    private final Relationship[] m_relationships;
+
+    /**
+     * Creates a new RelationshipGraph from its arrays, which are owned by it from then on.
+     * @param nodes the nodes.
+     * @param offsets the first edge of each node, plus the edge count.
+     * @param targets the target node of each edge.
+     * @param types the type id of each edge.
+     * @param flags the flags of each edge.
+     * @param relationships the Relationship of each edge.
+     */
+    private RelationshipGraph(UUIDHashMap<Object> nodes, int[] offsets, int[] targets, int[] types, byte[] flags,
+                              Relationship[] relationships) {
+        m_nodes = nodes;
+        m_offsets = offsets;
+        m_targets = targets;
+        m_types = types;
+        m_flags = flags;
+        m_relationships = relationships;
+    }
+
+    /**
+     * Returns an empty graph.
+     * @return an empty graph.
+     */
+    public static RelationshipGraph empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds a graph from the Relationships owned by each Entity.
+     * @param outbound the Relationships owned by each Entity, keyed by its ID.  Each Relationship should appear only
+     *                 under its owner.
+     * @return the graph.
+     */
+    public static RelationshipGraph build(Map<UUID, RelationshipManager> outbound) {
+        // Number the nodes and count the edges of each.
+        UUIDHashMap<Object> nodes = new UUIDHashMap<>(outbound.size());
+        final List<Relationship> rels = new ArrayList<>();
+        RelationshipVisitor collector = new RelationshipVisitor() {
+            @Override
+            public void visit(Relationship rel) {
+                rels.add(rel);
+            }
+        };
+        for (RelationshipManager relMgr : outbound.values()) {
+            relMgr.forEach(Visibility.ALL, collector);
+        }
+        if (rels.isEmpty()) {
+            return EMPTY;
+        }
+        int[] sources = new int[rels.size()];
+        int[] targets = new int[rels.size()];
+        for (int i = 0; i < rels.size(); i++) {
+            sources[i] = nodeFor(nodes, rels.get(i).getEntityId());
+            targets[i] = nodeFor(nodes, rels.get(i).getRelatedEntity());
+        }
+        int[] offsets = new int[nodes.size() + 1];
+        for (int i = 0; i < rels.size(); i++) {
+            offsets[sources[i] + 1]++;
+            offsets[targets[i] + 1]++;
+        }
+        for (int n = 0; n < nodes.size(); n++) {
+            offsets[n + 1] += offsets[n];
+        }
+
+        // Fill in the edges of each node, from both ends of each Relationship.
+        int edgeCount = offsets[nodes.size()];
+        int[] edgeTargets = new int[edgeCount];
+        int[] types = new int[edgeCount];
+        byte[] flags = new byte[edgeCount];
+        Relationship[] edgeRels = new Relationship[edgeCount];
+        int[] next = new int[nodes.size()];
+        System.arraycopy(offsets, 0, next, 0, nodes.size());
+        for (int i = 0; i < rels.size(); i++) {
+            Relationship rel = rels.get(i);
+            byte secret = rel.isSecret() ? SECRET : 0;
+
+            int out = next[sources[i]]++;
+            edgeTargets[out] = targets[i];
+            types[out] = rel.getTypeId();
+            flags[out] = (byte) (secret | OUTBOUND);
+            edgeRels[out] = rel;
+
+            int in = next[targets[i]]++;
+            edgeTargets[in] = sources[i];
+            types[in] = rel.getTypeId();
+            flags[in] = secret;
+            edgeRels[in] = rel;
+        }
+        return new RelationshipGraph(nodes, offsets, edgeTargets, types, flags, edgeRels);
+    }
+
+    /**
+     * Returns the node id of an Entity, numbering it if it is new.
+     * @param nodes the nodes numbered so far.
+     * @param id the ID of the Entity.
+     * @return the node id.
+     */
+    private static int nodeFor(UUIDHashMap<Object> nodes, UUID id) {
+        int node = nodes.indexOf(id);
+        if (node < 0) {
+            nodes.put(id, null);
+            node = nodes.size() - 1;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the number of nodes, that is Entities with at least one Relationship.
+     * @return the number of nodes.
+     */
+    public int getNodeCount() {
+        return m_nodes.size();
+    }
+
+    /**
+     * Returns the number of edges.  Since each Relationship is listed under both ends, this is twice the number of
+     * Relationships.
+     * @return the number of edges.
+     */
+    public int getEdgeCount() {
+        return m_targets.length;
+    }
+
+    /**
+     * Returns the node id of the supplied Entity.
+     * @param id the ID of the Entity.
+     * @return the node id, or -1 if the Entity has no Relationships.
+     */
+    public int getNode(UUID id) {
+        return m_nodes.indexOf(id);
+    }
+
+    /**
+     * Returns the ID of the Entity of a node.
+     * @param node the node id.
+     * @return the ID of the Entity.
+     */
+    public UUID getEntityId(int node) {
+        return m_nodes.keyAt(node);
+    }
+
+    /**
+     * Returns the number of edges of a node, in or outbound.
+     * @param node the node id.
+     * @return the degree of the node.
+     */
+    public int getDegree(int node) {
+        return m_offsets[node + 1] - m_offsets[node];
+    }
+
+    /**
+     * Returns the first edge of a node.
+     * @param node the node id.
+     * @return the first edge of the node.
+     */
+    public int getFirstEdge(int node) {
+        return m_offsets[node];
+    }
+
+    /**
+     * Returns the edge after the last edge of a node.
+     * @param node the node id.
+     * @return the edge after the last edge of the node.
+     */
+    public int getEndEdge(int node) {
+        return m_offsets[node + 1];
+    }
+
+    /**
+     * Returns the node at the far end of an edge.
+     * @param edge the edge.
+     * @return the node id at the far end.
+     */
+    public int getTarget(int edge) {
+        return m_targets[edge];
+    }
+
+    /**
+     * Returns the interned relationship type id of an edge.
+     * @param edge the edge.
+     * @return the type id, see {@link RelationshipOptionManager#getTypeId(String)}.
+     */
+    public int getType(int edge) {
+        return m_types[edge];
+    }
+
+    /**
+     * Returns true if an edge is secret.
+     * @param edge the edge.
+     * @return true if the edge is secret, false otherwise.
+     */
+    public boolean isSecret(int edge) {
+        return (m_flags[edge] & SECRET) != 0;
+    }
+
+    /**
+     * Returns true if an edge is owned by the node it is listed under, false if it is owned by the far end.
+     * @param edge the edge.
+     * @return true if the edge is outbound from the node it is listed under.
+     */
+    public boolean isOutbound(int edge) {
+        return (m_flags[edge] & OUTBOUND) != 0;
+    }
+
+    /**
+     * Returns the Relationship behind an edge.
+     * @param edge the edge.
+     * @return the Relationship.
+     */
+    public Relationship getRelationship(int edge) {
+        return m_relationships[edge];
+    }
+}
@@ -12,8 +12,11 @@ import java.util.UUID;
  */
 public class RelationshipManager {
 
-    protected final Set<Relationship> m_secret;
-    protected final Set<Relationship> m_public;
+    protected Set<Relationship> m_secret;
+    protected Set<Relationship> m_public;
+
+    /** True if the sets above are shared with a snapshot, and so must be copied before they are next changed. */
+    private boolean m_shared;
 
     /** Creates a new RelationshipManager. */
     public RelationshipManager() {
@@ -21,14 +24,27 @@ public class RelationshipManager {
         m_public = new HashSet<>();
     }
 
+    /**
+     * Creates a new RelationshipManager directly over the supplied sets, without copying them.
+     * @param secret the secret relationships.
+     * @param pub the public relationships.
+     */
+    private RelationshipManager(Set<Relationship> secret, Set<Relationship> pub) {
+        m_secret = secret;
+        m_public = pub;
+    }
+
     
     /**
-     * Copy Constructor, create new relationship sets with the ones provided by the argument passed in.
+     * Copy Constructor, create new relationship sets with the ones provided by the argument passed in.  The sets are
+     * shared until either manager is next changed, at which point that manager takes its own copy, so copying is O(1).
      * @param rm Manager to copy.
      */
     public RelationshipManager(RelationshipManager rm) {
-        this.m_secret = new HashSet<>(rm.m_secret);
-        this.m_public = new HashSet<>(rm.m_public);
+        rm.m_shared = true;
+        this.m_secret = rm.m_secret;
+        this.m_public = rm.m_public;
+        this.m_shared = true;
     }
 
     
@@ -39,6 +55,7 @@ public class RelationshipManager {
      */
     public void addRelationship(Relationship rel) {
         if (rel != null) {
+            prepareForWrite();
             if (rel.isSecret()) {
                 m_secret.add(rel);
             } else {
@@ -62,6 +79,7 @@ public class RelationshipManager {
      * @param rel the Relationship to remove.
      */
     public void remove(Relationship rel) {
+        prepareForWrite();
         m_secret.remove(rel);
         m_public.remove(rel);
     }
@@ -102,6 +120,101 @@ public class RelationshipManager {
         return Collections.unmodifiableSet(all);
     }
 
+    /**
+     * Hands each Relationship of the requested visibility to the supplied visitor, walking the manager's own sets
+     * rather than copying them as {@link #getAllRelationships()} does.  The visitor must not change this manager.
+     * @param visibility which Relationships to visit, must not be null.
+     * @param visitor the visitor, must not be null.
+     * @throws IllegalArgumentException if either parameter is null.
+     */
+    public void forEach(Visibility visibility, RelationshipVisitor visitor) {
+        if (visibility == null) {
+            throw new IllegalArgumentException("Parameter 'visibility' must not be null.");
+        }
+        if (visitor == null) {
+            throw new IllegalArgumentException("Parameter 'visitor' must not be null.");
+        }
+        if (visibility.includesPublic()) {
+            for (Relationship rel : m_public) {
+                visitor.visit(rel);
+            }
+        }
+        if (visibility.includesSecret()) {
+            for (Relationship rel : m_secret) {
+                visitor.visit(rel);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of Relationships of the requested visibility.
+     * @param visibility which Relationships to count, must not be null.
+     * @return the number of Relationships of the requested visibility.
+     * @throws IllegalArgumentException if the visibility is null.
+     */
+    public int count(Visibility visibility) {
+        if (visibility == null) {
+            throw new IllegalArgumentException("Parameter 'visibility' must not be null.");
+        }
+        int count = 0;
+        if (visibility.includesPublic()) {
+            count += m_public.size();
+        }
+        if (visibility.includesSecret()) {
+            count += m_secret.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if any Relationship of the requested visibility passes the supplied filter, stopping at the first
+     * that does.
+     * @param visibility which Relationships to test, must not be null.
+     * @param filter the filter, must not be null.
+     * @return true if any Relationship passes the filter, false otherwise.
+     * @throws IllegalArgumentException if either parameter is null.
+     */
+    public boolean anyMatch(Visibility visibility, RelationshipFilter filter) {
+        if (visibility == null) {
+            throw new IllegalArgumentException("Parameter 'visibility' must not be null.");
+        }
+        if (filter == null) {
+            throw new IllegalArgumentException("Parameter 'filter' must not be null.");
+        }
+        if (visibility.includesPublic()) {
+            for (Relationship rel : m_public) {
+                if (filter.accept(rel)) {
+                    return true;
+                }
+            }
+        }
+        if (visibility.includesSecret()) {
+            for (Relationship rel : m_secret) {
+                if (filter.accept(rel)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the supplied Relationship is in the manager, public or secret.
+     * @param rel the Relationship to look for.
+     * @return true if the supplied Relationship is in the manager, false otherwise.
+     */
+    public boolean contains(Relationship rel) {
+        return m_public.contains(rel) || m_secret.contains(rel);
+    }
+
+    /**
+     * Returns the number of Relationships in the manager, public and secret.
+     * @return the number of Relationships in the manager.
+     */
+    public int size() {
+        return m_public.size() + m_secret.size();
+    }
+
     /**
      * Returns all the affected entity UUIDs.
      * @return all the UUIDs from any Relationships in this manager.
@@ -122,17 +235,89 @@ public class RelationshipManager {
 
     /** Clears all of the data from this manager. */
     public void clear() {
+        prepareForWrite();
         m_public.clear();
         m_secret.clear();
     }
     
     /** Clears all of the public data from this manager. */
     public void clearPublicRelationships() {
+        prepareForWrite();
         m_public.clear();
     }
     
     /** Clears all of the secret from this manager. */
     public void clearSecretRelationships() {
+        prepareForWrite();
         m_secret.clear();
     }
+
+    /**
+     * Returns a read-only copy of this manager as it is now.  The copy shares its data with this manager until this
+     * manager is next changed, so taking a snapshot is O(1) and snapshots of unchanged managers cost nothing.
+     * Snapshots never change, and may be handed to other threads.
+     * @return a read-only copy of this manager.
+     */
+    public RelationshipManager snapshot() {
+        m_shared = true;
+        return new Snapshot(m_secret, m_public);
+    }
+
+    /** Copies the relationship sets if they are shared with a snapshot, so that changes do not show through it. */
+    private void prepareForWrite() {
+        if (m_shared) {
+            m_secret = new HashSet<>(m_secret);
+            m_public = new HashSet<>(m_public);
+            m_shared = false;
+        }
+    }
+
+    /** A read-only RelationshipManager, as returned by {@link RelationshipManager#snapshot()}. */
+    private static final class Snapshot extends RelationshipManager {
+
+        /**
+         * Creates a new Snapshot over the supplied sets, which must no longer be changed by anything.
+         * @param secret the secret relationships.
+         * @param pub the public relationships.
+         */
+        private Snapshot(Set<Relationship> secret, Set<Relationship> pub) {
+            super(secret, pub);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void addRelationship(Relationship rel) {
+            throw new UnsupportedOperationException("A RelationshipManager snapshot cannot be modified.");
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove(Relationship rel) {
+            throw new UnsupportedOperationException("A RelationshipManager snapshot cannot be modified.");
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("A RelationshipManager snapshot cannot be modified.");
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void clearPublicRelationships() {
+            throw new UnsupportedOperationException("A RelationshipManager snapshot cannot be modified.");
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void clearSecretRelationships() {
+            throw new UnsupportedOperationException("A RelationshipManager snapshot cannot be modified.");
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public RelationshipManager snapshot() {
+            return this;
+        }
+    }
 }
\ No newline at end of file
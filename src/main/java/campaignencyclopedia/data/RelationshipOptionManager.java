@@ -3,14 +3,22 @@ package campaignencyclopedia.data;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import toolbox.file.FileTools;
 
 /**
- * A configuration/manager for Relationships.
+ * A configuration/manager for Relationships.  It also owns the dictionary of relationship types: every distinct type
+ * text is interned once and given a small integer id, so that Relationships can hold, hash and compare their type as
+ * an int rather than a String.  Ids are never reused, and remain valid even if the type is later removed from the
+ * options offered to the user.
  * @author adam
  */
 public class RelationshipOptionManager {
@@ -21,8 +29,26 @@ public class RelationshipOptionManager {
     /** The location of the relationships.dat file. */
     private static final String RELATIONSHIP_FILE = "./config/relationships.dat";
 
-    /** The Relationship options. */
-    private final static List<String> RELATIONSHIPS = new ArrayList<>();
+    /** The Relationship options, sorted.  Guarded by the class lock. */
+    private final static NavigableSet<String> RELATIONSHIPS = new TreeSet<>();
+
+    /** Writes the relationship file in the background whenever the options change. */
+    private final static DebouncedFileWriter WRITER = new DebouncedFileWriter(new File(RELATIONSHIP_FILE));
+
+    /** The options as last returned by {@link #getRelationships()}, or null if they have changed since. */
+    private static volatile List<String> s_sortedRelationships;
+
+    /** The id of each interned relationship type, keyed by its text. */
+    private final static Map<String, Integer> TYPE_IDS = new ConcurrentHashMap<>();
+
+    /**
+     * The text of each interned relationship type, indexed by id, with room to spare.  Slots are only filled, never
+     * changed, and the field is written again after each one is filled so readers see it.
+     */
+    private static volatile String[] s_typeText = new String[16];
+
+    /** The number of interned relationship types.  Guarded by the class lock. */
+    private static int s_typeCount = 0;
 
     // Perform initial setup.
     static {
@@ -39,19 +65,17 @@ public class RelationshipOptionManager {
             for (RelationshipType rt : RelationshipType.values()) {
                 RELATIONSHIPS.add(rt.getDisplayString());
             }
-            writeRelationshipFile();
+            relationshipsChanged();
         }
-        Collections.sort(RELATIONSHIPS);
     }
 
     /**
      * Adds the supplied relationship and updates the relationship file.
      * @param relationship the relationship to add.
      */
-    public static void addRelationship(String relationship) {
-        if (!RELATIONSHIPS.contains(relationship) && relationship != null && !relationship.isEmpty()) {
-            RELATIONSHIPS.add(relationship);
-            writeRelationshipFile();
+    public static synchronized void addRelationship(String relationship) {
+        if (relationship != null && !relationship.isEmpty() && RELATIONSHIPS.add(relationship)) {
+            relationshipsChanged();
         }
     }
 
@@ -60,19 +84,18 @@ public class RelationshipOptionManager {
      * @param relationships the relationships to add any null or empty relationships or those which are already in the
      * configuration are ignored.
      */
-    public static void addRelationships(List<String> relationships) {
+    public static synchronized void addRelationships(List<String> relationships) {
         boolean changeMade = false;
         // Add any valid previously unknown relationships.
         for (String rel : relationships) {
-            if (!RELATIONSHIPS.contains(rel) && rel != null && !rel.isEmpty()) {
-                RELATIONSHIPS.add(rel);
+            if (rel != null && !rel.isEmpty() && RELATIONSHIPS.add(rel)) {
                 changeMade = true;
             }
         }
 
         // Update the file if any changes were made.
         if (changeMade) {
-            writeRelationshipFile();
+            relationshipsChanged();
         }
     }
 
@@ -80,35 +103,92 @@ public class RelationshipOptionManager {
      * Removes the supplied relationship.
      * @param relationship
      */
-    public static void removeRelationship(String relationship) {
-        RELATIONSHIPS.remove(relationship);
+    public static synchronized void removeRelationship(String relationship) {
+        if (relationship != null && RELATIONSHIPS.remove(relationship)) {
+            s_sortedRelationships = null;
+        }
     }
 
     /**
      * Returns a sorted list of the currently stored relationships.
-     * @return a sorted list of the currently stored relationships.
+     * @return a sorted, unmodifiable, list of the currently stored relationships.
      */
     public static List<String> getRelationships() {
-        Collections.sort(RELATIONSHIPS);
-        return RELATIONSHIPS;
+        List<String> sorted = s_sortedRelationships;
+        if (sorted == null) {
+            synchronized (RelationshipOptionManager.class) {
+                sorted = Collections.unmodifiableList(new ArrayList<>(RELATIONSHIPS));
+                s_sortedRelationships = sorted;
+            }
+        }
+        return sorted;
     }
 
     /**
      * Clears all relationships and adds the new ones.
      * @param newRelationships the new relationships.
      */
-    public static void replaceAllRelationships(List<String> newRelationships) {
+    public static synchronized void replaceAllRelationships(List<String> newRelationships) {
         RELATIONSHIPS.clear();
-        RELATIONSHIPS.addAll(newRelationships);
-        writeRelationshipFile();
+        for (String rel : newRelationships) {
+            if (rel != null && !rel.isEmpty()) {
+                RELATIONSHIPS.add(rel);
+            }
+        }
+        relationshipsChanged();
+    }
+
+    /**
+     * Returns the id of the supplied relationship type, interning it if it has not been seen before.
+     * @param type the text of the relationship type, must not be null.
+     * @return the id of the relationship type.
+     */
+    public static int getTypeId(String type) {
+        Integer id = TYPE_IDS.get(type);
+        if (id != null) {
+            return id;
+        }
+        return internType(type);
+    }
+
+    /**
+     * Returns the text of the relationship type with the supplied id.
+     * @param id an id returned by {@link #getTypeId(String)}.
+     * @return the text of the relationship type.
+     */
+    public static String getTypeText(int id) {
+        return s_typeText[id];
     }
 
-    /** Writes the current relationships to the relationship file. */
-    private static void writeRelationshipFile() {
-        try {
-            FileTools.writeFile(RELATIONSHIP_FILE, RELATIONSHIPS);
-        } catch (IOException ex) {
-            LOGGER.log(Level.SEVERE, "Failed to write relationships to file '" + RELATIONSHIP_FILE + "'.", ex);
+    /**
+     * Adds a relationship type to the dictionary, unless another thread got there first.
+     * @param type the text of the relationship type.
+     * @return the id of the relationship type.
+     */
+    private static synchronized int internType(String type) {
+        Integer id = TYPE_IDS.get(type);
+        if (id == null) {
+            id = s_typeCount;
+            String[] text = s_typeText;
+            if (id == text.length) {
+                // Double rather than grow by one, so interning many types takes linear time.
+                text = Arrays.copyOf(text, id * 2);
+            }
+            text[id] = type;
+            s_typeCount = id + 1;
+            // Publish the text before the id, so that anyone holding the id can read the text.
+            s_typeText = text;
+            TYPE_IDS.put(type, id);
         }
+        return id;
+    }
+
+    /**
+     * Forgets the sorted list of relationships and schedules the relationship file to be written.  Must be called
+     * holding the class lock.
+     */
+    private static void relationshipsChanged() {
+        s_sortedRelationships = null;
+        WRITER.write(RELATIONSHIPS);
     }
 }
\ No newline at end of file
@@ -89,6 +89,12 @@ public enum RelationshipType implements Displayable {
     /** The display string for this RelationshipType. */
     private final String m_displayString;
 
+    /**
+     * The interned id of the display string, or -1 until first asked for.  Looked up lazily so that this enum and
+     * the RelationshipOptionManager, which reads it while initializing, do not depend on each other's initialization.
+     */
+    private int m_typeId = -1;
+
     /**
      * Creates a RelationshipType
      * @param userString the user display string.
@@ -103,6 +109,18 @@ public enum RelationshipType implements Displayable {
         return m_displayString;
     }
 
+    /**
+     * Returns the interned id of this type, as held by Relationships of this type.
+     * @return the interned id of this type.
+     */
+    public int getTypeId() {
+        // A race here only means the same id is looked up twice.
+        if (m_typeId < 0) {
+            m_typeId = RelationshipOptionManager.getTypeId(m_displayString);
+        }
+        return m_typeId;
+    }
+
     public static List<String> getStringList() {
         List<String> stringList = new ArrayList<>();
         for (RelationshipType rt : values()) {
@@ -0,0 +1,15 @@
+package campaignencyclopedia.data;
+
+/**
+ * A callback handed each Relationship in turn by {@link RelationshipManager#forEach(Visibility, RelationshipVisitor)}.
+ * Visitors which are called often, such as while painting, can be held and reused so that a walk allocates nothing.
+ * @author Keith
+ */
+public interface RelationshipVisitor {
+
+    /**
+     * Called once for each Relationship visited.
+     * @param rel the Relationship.
+     */
+    public void visit(Relationship rel);
+}
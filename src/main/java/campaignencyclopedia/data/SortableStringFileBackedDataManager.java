@@ -4,28 +4,38 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import toolbox.file.FileTools;
 
 /**
+ * A set of strings backed by a file, kept either sorted or in the order added.  Changes are written to the file in the
+ * background, and all methods are thread safe.
  *
  * @author adam
  */
 public class SortableStringFileBackedDataManager {
 
-    protected final List<String> DATA = new ArrayList<>();
+    /** The items, sorted or in the order added.  Guarded by this. */
+    protected final Set<String> DATA;
     private final File m_dataFile;
     private final StringDataManagerDefaultProvider m_provider;
-    private final boolean m_sort;
+    /** Writes the data file in the background whenever the items change. */
+    private final DebouncedFileWriter m_writer;
+    /** The items as last returned by {@link #getData()}, or null if they have changed since. */
+    private volatile List<String> m_dataList;
     private static final Logger LOGGER = Logger.getLogger(SortableStringFileBackedDataManager.class.getName());
 
 
     public SortableStringFileBackedDataManager(String file, StringDataManagerDefaultProvider provider, boolean sort) {
         m_provider = provider;
         m_dataFile = new File(file);
-        m_sort = sort;
+        DATA = sort ? new TreeSet<String>() : new LinkedHashSet<String>();
+        m_writer = new DebouncedFileWriter(m_dataFile);
         loadDataFile();
     }
 
@@ -34,48 +44,60 @@ public class SortableStringFileBackedDataManager {
      * Adds the supplied item and updates the relationship file.
      * @param item the item to add.
      */
-    public void addItem(String item) {
-        if (!DATA.contains(item) && item != null && !item.isEmpty()) {
-            DATA.add(item);
-            writeDataFile();
+    public synchronized void addItem(String item) {
+        if (item != null && !item.isEmpty() && DATA.add(item)) {
+            dataChanged();
         }
     }
 
-    public void addItems(List<String> toAdd) {
+    public synchronized void addItems(List<String> toAdd) {
         boolean changeMade = false;
         // Add any valid previously unknown items.
         for (String item : toAdd) {
-            if (!DATA.contains(item) && item != null && !item.isEmpty()) {
-                DATA.add(item);
+            if (item != null && !item.isEmpty() && DATA.add(item)) {
                 changeMade = true;
             }
         }
 
         // Update the file if any changes were made.
         if (changeMade) {
-            writeDataFile();
+            dataChanged();
         }
     }
 
-    public void removeItem(String toRemove) {
-        DATA.remove(toRemove);
+    public synchronized void removeItem(String toRemove) {
+        if (toRemove != null && DATA.remove(toRemove)) {
+            m_dataList = null;
+        }
     }
 
+    /**
+     * Returns the items, sorted if this manager sorts.
+     * @return an unmodifiable list of the items.
+     */
     public List<String> getData() {
-        if (m_sort) {
-            Collections.sort(DATA);
+        List<String> data = m_dataList;
+        if (data == null) {
+            synchronized (this) {
+                data = Collections.unmodifiableList(new ArrayList<>(DATA));
+                m_dataList = data;
+            }
         }
-        return DATA;
+        return data;
     }
 
-    public void replaceAllItems(List<String> newData) {
+    public synchronized void replaceAllItems(List<String> newData) {
         DATA.clear();
-        DATA.addAll(newData);
-        writeDataFile();
+        for (String item : newData) {
+            if (item != null && !item.isEmpty()) {
+                DATA.add(item);
+            }
+        }
+        dataChanged();
     }
 
     /** Loads any data from the file if it exists. */
-    private void loadDataFile() {
+    private synchronized void loadDataFile() {
         // If it exists, load the relationships file
         if (m_dataFile.exists()) {
             try {
@@ -87,19 +109,13 @@ public class SortableStringFileBackedDataManager {
             // File did not exist.
             LOGGER.config("No data file detected, using default data list.");
             DATA.addAll(m_provider.getDefaultData());
-            writeDataFile();
-        }
-        if (m_sort) {
-            Collections.sort(DATA);
+            dataChanged();
         }
     }
 
-    /** Writes the current relationships to the relationship file. */
-    private void writeDataFile() {
-        try {
-            FileTools.writeFile(m_dataFile.getAbsolutePath(), DATA);
-        } catch (IOException ex) {
-            LOGGER.log(Level.WARNING, "Failed to write relationships from " + m_dataFile.getAbsolutePath() + ".", ex);
-        }
+    /** Forgets the list of items and schedules the data file to be written.  Must be called holding the lock. */
+    private void dataChanged() {
+        m_dataList = null;
+        m_writer.write(DATA);
     }
 }
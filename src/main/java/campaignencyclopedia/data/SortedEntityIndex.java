@@ -0,0 +1,141 @@
+package campaignencyclopedia.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * An ordered index of Entities that is updated as Entities are added and removed, so that the sorted view of a
+ * campaign never has to be rebuilt from scratch.  Entities are ordered by their natural ordering, with ties broken by
+ * ID so that distinct Entities with the same name are all retained.
+ *
+ * @author Keith
+ */
+public class SortedEntityIndex implements Iterable<Entity> {
+
+    /** An ID lower than any other, used to build probes that sort before every Entity of the same name. */
+    private static final UUID LOWEST_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    /** Orders Entities naturally, then by ID. */
+    private static final Comparator<Entity> ORDER = new Comparator<Entity>() {
+        @Override
+        public int compare(Entity e1, Entity e2) {
+            int result = e1.compareTo(e2);
+            if (result == 0) {
+                result = e1.getId().compareTo(e2.getId());
+            }
+            return result;
+        }
+    };
+
+    /** The indexed Entities, in order. */
+    private final NavigableSet<Entity> m_entities;
+
+    /** A read-only list of the indexed Entities, or null if it must be rebuilt since the last change. */
+    private List<Entity> m_snapshot;
+
+    /** Creates a new, empty, SortedEntityIndex. */
+    public SortedEntityIndex() {
+        m_entities = new TreeSet<>(ORDER);
+        m_snapshot = null;
+    }
+
+    /**
+     * Adds the supplied Entity to the index.  Any previous version of the Entity must be removed first.
+     * @param entity the Entity to add.
+     */
+    public void add(Entity entity) {
+        if (entity != null && m_entities.add(entity)) {
+            m_snapshot = null;
+        }
+    }
+
+    /**
+     * Removes the supplied Entity from the index.
+     * @param entity the Entity to remove, as it was when added.
+     */
+    public void remove(Entity entity) {
+        if (entity != null && m_entities.remove(entity)) {
+            m_snapshot = null;
+        }
+    }
+
+    /**
+     * Replaces the previous version of an Entity with its current version.
+     * @param previous the previously indexed version, may be null if the Entity is new.
+     * @param current the current version.
+     */
+    public void update(Entity previous, Entity current) {
+        remove(previous);
+        add(current);
+    }
+
+    /** Removes all Entities from the index. */
+    public void clear() {
+        m_entities.clear();
+        m_snapshot = null;
+    }
+
+    /**
+     * Returns the number of indexed Entities.
+     * @return the number of indexed Entities.
+     */
+    public int size() {
+        return m_entities.size();
+    }
+
+    /**
+     * Returns a read-only, sorted list of all indexed Entities.  The list is shared between callers until the index
+     * next changes, so repeated calls between changes cost nothing.
+     * @return a read-only, sorted list of all indexed Entities.
+     */
+    public List<Entity> getSnapshot() {
+        if (m_snapshot == null) {
+            m_snapshot = Collections.unmodifiableList(new ArrayList<>(m_entities));
+        }
+        return m_snapshot;
+    }
+
+    /**
+     * Returns a read-only iterator over the indexed Entities in order.
+     * @return a read-only iterator over the indexed Entities in order.
+     */
+    @Override
+    public Iterator<Entity> iterator() {
+        return Collections.unmodifiableSortedSet(m_entities).iterator();
+    }
+
+    /**
+     * Returns a page of the sorted Entities.
+     * @param offset the index of the first Entity to return.
+     * @param count the maximum number of Entities to return.
+     * @return up to count Entities beginning at offset, empty if offset is past the end.
+     */
+    public List<Entity> getPage(int offset, int count) {
+        List<Entity> all = getSnapshot();
+        int from = Math.max(0, Math.min(offset, all.size()));
+        int to = Math.min(all.size(), from + Math.max(0, count));
+        return all.subList(from, to);
+    }
+
+    /**
+     * Returns the sorted Entities that sort at or after the supplied name, e.g. "M" for everything from 'M' onward.
+     * @param name the name to start from.
+     * @param count the maximum number of Entities to return.
+     * @return up to count Entities sorting at or after the supplied name.
+     */
+    public List<Entity> getPageFrom(String name, int count) {
+        Entity probe = new Entity(LOWEST_ID, name, null, null, null, false);
+        List<Entity> page = new ArrayList<>();
+        Iterator<Entity> it = m_entities.tailSet(probe, true).iterator();
+        while (page.size() < count && it.hasNext()) {
+            page.add(it.next());
+        }
+        return Collections.unmodifiableList(page);
+    }
+}
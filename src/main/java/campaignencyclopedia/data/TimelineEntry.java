@@ -11,11 +11,8 @@ public class TimelineEntry implements Comparable<TimelineEntry> {
     /** The title of the entry. */
     private final String m_title;
 
-    /** The month (or other sub-year time unit) that this timeline entry occurred. */
-    private final Month m_month;
-    
-    /** The year the event took place.  */
-    private final int m_year;
+    /** The month (or other sub-year time unit) and year that this timeline entry occurred. */
+    private final CampaignDate m_date;
     
     /** True if this timeline entry is secret, false otherwise. */
     private final boolean m_isSecret;
@@ -60,8 +57,7 @@ public class TimelineEntry implements Comparable<TimelineEntry> {
             throw new IllegalArgumentException("month must not be null.");
         }
         m_title = title;
-        m_month = month;
-        m_year = year;
+        m_date = new CampaignDate(month, year);
         m_isSecret = isSecret;
         m_associatedEntity = associatedEntity;
         m_entryId = entryId;
@@ -80,7 +76,7 @@ public class TimelineEntry implements Comparable<TimelineEntry> {
      * @return the Month of this Timeline Entry.
      */
     public Month getMonth() {
-        return m_month;
+        return m_date.getMonth();
     }
 
     /**
@@ -88,7 +84,15 @@ public class TimelineEntry implements Comparable<TimelineEntry> {
      * @return the year of this timeline entry.
      */
     public int getYear() {
-        return m_year;
+        return m_date.getYear();
+    }
+
+    /**
+     * Returns the date of this timeline entry.
+     * @return the date of this timeline entry.
+     */
+    public CampaignDate getDate() {
+        return m_date;
     }
     
     /**
@@ -110,19 +114,11 @@ public class TimelineEntry implements Comparable<TimelineEntry> {
     /** {@Override} */
     @Override
     public int compareTo(TimelineEntry t) {
-        // Compare by Year
-        if (m_year > t.getYear()) {
-            return 1;
-        } else if (m_year < t.getYear()) {
-            return -1;
-        }
-        
-        // If the years are the same, compare by month.
-        // If the months are the same, compare the titles.
-        if (m_month.compareTo(t.getMonth()) == 0) {
+        // Compare by date, and if the dates are the same, compare the titles.
+        int comparison = m_date.compareTo(t.getDate());
+        if (comparison == 0) {
             return m_title.compareTo(t.getTitle());
-        } else {
-            return m_month.compareTo(t.getMonth());
         }
+        return comparison;
     }
 }
\ No newline at end of file
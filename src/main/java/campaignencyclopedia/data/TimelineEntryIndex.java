@@ -0,0 +1,67 @@
+package campaignencyclopedia.data;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An index of TimelineEntries by the ID of the Entity they are associated with, so that the timeline of a single
+ * Entity can be found without looking at every entry in the campaign.
+ *
+ * @author adam
+ */
+public class TimelineEntryIndex {
+
+    /** A map of Entity IDs to the TimelineEntries associated with them. */
+    private final Map<UUID, Set<TimelineEntry>> m_entriesByEntity;
+
+    /** Creates a new, empty, TimelineEntryIndex. */
+    public TimelineEntryIndex() {
+        m_entriesByEntity = new UUIDHashMap<>();
+    }
+
+    /**
+     * Replaces the previous version of a TimelineEntry with its current version.
+     * @param previous the previously indexed version, may be null if the entry is new.
+     * @param current the current version, may be null if the entry was removed.
+     */
+    public void update(TimelineEntry previous, TimelineEntry current) {
+        if (previous != null) {
+            Set<TimelineEntry> entries = m_entriesByEntity.get(previous.getAssociatedId());
+            if (entries != null) {
+                entries.remove(previous);
+                if (entries.isEmpty()) {
+                    m_entriesByEntity.remove(previous.getAssociatedId());
+                }
+            }
+        }
+        if (current != null) {
+            Set<TimelineEntry> entries = m_entriesByEntity.get(current.getAssociatedId());
+            if (entries == null) {
+                entries = new HashSet<>();
+                m_entriesByEntity.put(current.getAssociatedId(), entries);
+            }
+            entries.add(current);
+        }
+    }
+
+    /**
+     * Returns the TimelineEntries associated with the supplied Entity ID.
+     * @param entity the ID of the Entity.
+     * @return a read-only copy of the TimelineEntries associated with the Entity, never null.
+     */
+    public Set<TimelineEntry> get(UUID entity) {
+        Set<TimelineEntry> entries = m_entriesByEntity.get(entity);
+        if (entries == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new HashSet<>(entries));
+    }
+
+    /** Removes all TimelineEntries from the index. */
+    public void clear() {
+        m_entriesByEntity.clear();
+    }
+}
@@ -0,0 +1,430 @@
+package campaignencyclopedia.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A mutable Map from UUIDs to values, specialized to keep its keys as primitive longs rather than UUID objects.
+ * <p>
+ * Entries are held densely in parallel arrays (the two halves of each key, its hash and its value) at indexes
+ * 0 to size() - 1, and found through an open-addressing table of those indexes, probed linearly.  An entry costs
+ * roughly a third of a HashMap's, lookups compare longs rather than calling UUID.equals, and iterating walks the
+ * arrays in order rather than chasing nodes.  Removing an entry moves the last entry into its place, so indexes are
+ * only stable until the next removal.
+ * <p>
+ * Null keys are not permitted; null values are.  Like HashMap, this class is not thread safe.
+ *
+ * @param <V> the type of the values.
+ * @author Keith
+ */
+public class UUIDHashMap<V> extends AbstractMap<UUID, V> {
+
+    /** The smallest table capacity, a power of two. */
+    private static final int MIN_CAPACITY = 16;
+
+    /** The most significant half of each key, by entry index. */
+    private long[] m_msb;
+
+    /** The least significant half of each key, by entry index. */
+    private long[] m_lsb;
+
+    /** The spread hash of each key, by entry index, kept so the table can be rebuilt and probed without rehashing. */
+    private int[] m_hashes;
+
+    /** The value of each entry, by entry index. */
+    private Object[] m_values;
+
+    /** The open-addressing table: each slot holds an entry index plus one, or zero if empty.  Never more than half full. */
+    private int[] m_table;
+
+    /** The number of entries. */
+    private int m_size;
+
+    /** The number of structural changes made, so iterators can detect concurrent modification. */
+    private int m_modCount;
+
+    /** The entry set view, created when first asked for. */
+    private EntrySet m_entrySet;
+
+    /** Creates a new, empty, UUIDHashMap. */
+    public UUIDHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * Creates a new, empty, UUIDHashMap sized to hold the supplied number of entries without growing.
+     * @param expectedSize the number of entries expected.
+     */
+    public UUIDHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 2 < expectedSize) {
+            capacity <<= 1;
+        }
+        m_table = new int[capacity];
+        int entries = capacity / 2;
+        m_msb = new long[entries];
+        m_lsb = new long[entries];
+        m_hashes = new int[entries];
+        m_values = new Object[entries];
+    }
+
+    /**
+     * Creates a new UUIDHashMap holding the entries of the supplied Map.
+     * @param map the Map to copy.
+     */
+    public UUIDHashMap(Map<UUID, ? extends V> map) {
+        this(map.size());
+        putAll(map);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return m_size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V put(UUID key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Parameter 'key' must not be null.");
+        }
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        int slot = findSlot(msb, lsb, hash);
+        if (slot >= 0) {
+            int index = m_table[slot] - 1;
+            V previous = valueAt(index);
+            m_values[index] = value;
+            return previous;
+        }
+
+        if (m_size == m_values.length) {
+            grow();
+            slot = findSlot(msb, lsb, hash);
+        }
+        int index = m_size++;
+        m_msb[index] = msb;
+        m_lsb[index] = lsb;
+        m_hashes[index] = hash;
+        m_values[index] = value;
+        m_table[~slot] = index + 1;
+        m_modCount++;
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V remove(Object key) {
+        if (!(key instanceof UUID)) {
+            return null;
+        }
+        UUID id = (UUID) key;
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int slot = findSlot(msb, lsb, hash(msb, lsb));
+        if (slot < 0) {
+            return null;
+        }
+        int index = m_table[slot] - 1;
+        V previous = valueAt(index);
+        removeSlot(slot);
+        removeEntry(index);
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear() {
+        Arrays.fill(m_table, 0);
+        Arrays.fill(m_values, 0, m_size, null);
+        m_size = 0;
+        m_modCount++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Entry<UUID, V>> entrySet() {
+        if (m_entrySet == null) {
+            m_entrySet = new EntrySet();
+        }
+        return m_entrySet;
+    }
+
+    /**
+     * Returns the index of the entry for the supplied key.
+     * @param key the key to look up.
+     * @return the index of the entry, from 0 to size() - 1, or -1 if there is none.
+     */
+    public int indexOf(Object key) {
+        if (!(key instanceof UUID)) {
+            return -1;
+        }
+        UUID id = (UUID) key;
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int slot = findSlot(msb, lsb, hash(msb, lsb));
+        return slot < 0 ? -1 : m_table[slot] - 1;
+    }
+
+    /**
+     * Returns the key of the entry at the supplied index.
+     * @param index the index of the entry, from 0 to size() - 1.
+     * @return the key, as a new UUID.
+     */
+    public UUID keyAt(int index) {
+        checkIndex(index);
+        return new UUID(m_msb[index], m_lsb[index]);
+    }
+
+    /**
+     * Returns the value of the entry at the supplied index.
+     * @param index the index of the entry, from 0 to size() - 1.
+     * @return the value.
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        checkIndex(index);
+        return (V) m_values[index];
+    }
+
+    /**
+     * Replaces the value of the entry at the supplied index.
+     * @param index the index of the entry, from 0 to size() - 1.
+     * @param value the new value.
+     * @return the previous value.
+     */
+    public V setValueAt(int index, V value) {
+        V previous = valueAt(index);
+        m_values[index] = value;
+        return previous;
+    }
+
+    /**
+     * Throws if the supplied entry index is out of range.
+     * @param index the index to check.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= m_size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of range for size " + m_size + ".");
+        }
+    }
+
+    /**
+     * Spreads the bits of a key into a well mixed hash, using the MurmurHash3 finalizer.
+     * @param msb the most significant half of the key.
+     * @param lsb the least significant half of the key.
+     * @return the hash.
+     */
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ (lsb * 0x9E3779B97F4A7C15L);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Finds the table slot of a key.
+     * @param msb the most significant half of the key.
+     * @param lsb the least significant half of the key.
+     * @param hash the hash of the key.
+     * @return the slot holding the key, or if it is absent the bitwise complement of the empty slot it belongs in.
+     */
+    private int findSlot(long msb, long lsb, int hash) {
+        int mask = m_table.length - 1;
+        int slot = hash & mask;
+        while (true) {
+            int entry = m_table[slot];
+            if (entry == 0) {
+                return ~slot;
+            }
+            int index = entry - 1;
+            if (m_hashes[index] == hash && m_msb[index] == msb && m_lsb[index] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Empties a table slot, shifting back any entries further along the probe sequence that would otherwise no longer
+     * be found, so that no tombstones are needed.
+     * @param slot the slot to empty.
+     */
+    private void removeSlot(int slot) {
+        int mask = m_table.length - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int entry = m_table[next];
+            if (entry == 0) {
+                break;
+            }
+            int home = m_hashes[entry - 1] & mask;
+            // The entry may fill the hole unless its home slot lies cyclically after the hole, up to where it sits.
+            boolean homeBetween = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!homeBetween) {
+                m_table[hole] = entry;
+                hole = next;
+            }
+        }
+        m_table[hole] = 0;
+    }
+
+    /**
+     * Removes an entry whose slot has already been emptied, moving the last entry into its place.
+     * @param index the index of the entry.
+     */
+    private void removeEntry(int index) {
+        int last = m_size - 1;
+        if (index != last) {
+            m_msb[index] = m_msb[last];
+            m_lsb[index] = m_lsb[last];
+            m_hashes[index] = m_hashes[last];
+            m_values[index] = m_values[last];
+            // Point the moved entry's slot at its new index.
+            int slot = findSlot(m_msb[index], m_lsb[index], m_hashes[index]);
+            m_table[slot] = index + 1;
+        }
+        m_values[last] = null;
+        m_size = last;
+        m_modCount++;
+    }
+
+    /** Doubles the capacity of the table and entry arrays. */
+    private void grow() {
+        int entries = m_values.length * 2;
+        m_msb = Arrays.copyOf(m_msb, entries);
+        m_lsb = Arrays.copyOf(m_lsb, entries);
+        m_hashes = Arrays.copyOf(m_hashes, entries);
+        m_values = Arrays.copyOf(m_values, entries);
+
+        m_table = new int[m_table.length * 2];
+        int mask = m_table.length - 1;
+        for (int index = 0; index < m_size; index++) {
+            int slot = m_hashes[index] & mask;
+            while (m_table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            m_table[slot] = index + 1;
+        }
+    }
+
+    /** The entries of the map, in index order. */
+    private class EntrySet extends AbstractSet<Entry<UUID, V>> {
+
+        /** {@inheritDoc} */
+        @Override
+        public Iterator<Entry<UUID, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int size() {
+            return m_size;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void clear() {
+            UUIDHashMap.this.clear();
+        }
+    }
+
+    /** Iterates the entries of the map in index order. */
+    private class EntryIterator implements Iterator<Entry<UUID, V>> {
+
+        /** The index of the next entry. */
+        private int m_next;
+
+        /** The index of the entry last returned, or -1 if it has been removed or none has been returned. */
+        private int m_last = -1;
+
+        /** The modification count the iterator expects. */
+        private int m_expectedModCount = m_modCount;
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            return m_next < m_size;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Entry<UUID, V> next() {
+            if (m_modCount != m_expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (m_next >= m_size) {
+                throw new NoSuchElementException();
+            }
+            m_last = m_next++;
+            return new IndexEntry(m_last);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void remove() {
+            if (m_last < 0) {
+                throw new IllegalStateException();
+            }
+            if (m_modCount != m_expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            UUIDHashMap.this.remove(keyAt(m_last));
+            // The last entry has moved into the removed one's place, so visit that index again.
+            m_next = m_last;
+            m_last = -1;
+            m_expectedModCount = m_modCount;
+        }
+    }
+
+    /** An entry of the map, reading through to the arrays at a fixed index. */
+    private class IndexEntry extends SimpleEntry<UUID, V> {
+
+        /** The index of the entry. */
+        private final int m_index;
+
+        /**
+         * Creates a new IndexEntry.
+         * @param index the index of the entry.
+         */
+        private IndexEntry(int index) {
+            super(keyAt(index), valueAt(index));
+            m_index = index;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public V setValue(V value) {
+            super.setValue(value);
+            return setValueAt(m_index, value);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package campaignencyclopedia.data;
+
+/**
+ * Selects which Relationships to visit, by whether or not they are secret.
+ * @author Keith
+ */
+public enum Visibility {
+    /** Only the public Relationships. */
+    PUBLIC,
+
+    /** Only the secret Relationships. */
+    SECRET,
+
+    /** Both the public and the secret Relationships. */
+    ALL;
+
+    /**
+     * Returns true if public Relationships are selected.
+     * @return true if public Relationships are selected, false otherwise.
+     */
+    public boolean includesPublic() {
+        return this != SECRET;
+    }
+
+    /**
+     * Returns true if secret Relationships are selected.
+     * @return true if secret Relationships are selected, false otherwise.
+     */
+    public boolean includesSecret() {
+        return this != PUBLIC;
+    }
+}
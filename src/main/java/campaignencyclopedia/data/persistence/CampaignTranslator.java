@@ -2,6 +2,7 @@ package campaignencyclopedia.data.persistence;
 
 import campaignencyclopedia.data.Campaign;
 import campaignencyclopedia.data.CampaignCalendar;
+import campaignencyclopedia.data.ComparisonTools;
 import campaignencyclopedia.data.DataAccessor;
 import campaignencyclopedia.data.Entity;
 import campaignencyclopedia.data.Month;
@@ -10,6 +11,7 @@ import campaignencyclopedia.data.RelationshipManager;
 import campaignencyclopedia.data.TimelineEntry;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -36,11 +38,26 @@ public class CampaignTranslator {
     private static final String CAMPAIGN_CALENDAR = "calendar";
     /** The JSON key for the relationships. */
     private static final String RELATIONSHIPS = "relationships";
+    /** The JSON key for the leading words ignored when sorting names. */
+    private static final String SORT_PREFIXES = "sort-prefixes";
     /** The JSON key for the version this file was created with. */
     private static final String VERSION_TAG = "version";
     /** The version value. */
     private static final String VERSION = "1.2.0";
 
+    /** The translator-only entity comparator. */
+    private static final Comparator<Entity> ENTITY_COMPARATOR = new Comparator<Entity>() {
+            @Override
+            public int compare(Entity t, Entity t1) {
+                int val = t.compareTo(t1);
+                if (val == 0) {
+                    // Only for the purpose of sorting for the translator so that files can be diff'd.
+                    return t.getId().compareTo(t1.getId());
+                }
+                return val;
+            }
+        };
+
 
     /**
      * Translates the supplied Campaign to JSON for storage to file.
@@ -64,9 +81,9 @@ public class CampaignTranslator {
 
         // ENTITIES
         // Translate and store Entities in sorted order.
-        // --- Sort them to ensure a consistent output order (useful for diffs)
+        // --- Sort them by their precomputed sort keys to ensure a consistent output order (useful for diffs)
         List<Entity> allEntities = new ArrayList<>(campaign.getEntities());
-        Collections.sort(allEntities);
+        Collections.sort(allEntities, ENTITY_COMPARATOR);
         // --- Translate and add them to JSON structure.
         List<JsonObject> entities = new ArrayList<>();
         for (Entity entity : allEntities) {
@@ -102,6 +119,9 @@ public class CampaignTranslator {
         }
         json.put(CAMPAIGN_CALENDAR, calendarMonths);
 
+        // SORT PREFIXES
+        json.put(SORT_PREFIXES, new JsonArray(new ArrayList<Object>(campaign.getSortPrefixes())));
+
         // RELATIONSHIPS
         List<Relationship> relationships = new ArrayList<>();
         for (RelationshipManager rels : campaign.getAllRelationships().values()) {
@@ -161,6 +181,16 @@ public class CampaignTranslator {
             cal.updateMonths(translated);
         }
 
+        // Sort Prefixes
+        List<String> sortPrefixes = ComparisonTools.getDefaultIgnoredPrefixes();
+        if (json.has(SORT_PREFIXES)) {
+            JsonArray prefixes = json.getJsonArray(SORT_PREFIXES);
+            sortPrefixes = new ArrayList<>();
+            for (int i = 0; i < prefixes.length(); i++) {
+                sortPrefixes.add(prefixes.getString(i));
+            }
+        }
+
         // Relationships
         Map<UUID, RelationshipManager> relationships = new HashMap<>();
         if (json.has(RELATIONSHIPS)) {
@@ -174,6 +204,6 @@ public class CampaignTranslator {
             }
         }
 
-        return new Campaign(name, entitySet, relationships, timelineData, cal);
+        return new Campaign(name, entitySet, relationships, timelineData, cal, sortPrefixes);
     }
 }
\ No newline at end of file
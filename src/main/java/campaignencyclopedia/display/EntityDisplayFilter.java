@@ -1,9 +1,11 @@
 package campaignencyclopedia.display;
 
 import campaignencyclopedia.data.Entity;
+import campaignencyclopedia.data.EntitySearchIndex;
 import campaignencyclopedia.data.EntityType;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * A display filter for Entity data.
@@ -19,6 +21,18 @@ public class EntityDisplayFilter implements DataFilter<Entity> {
     
     /** The accepted EntityType for this filter. */
     private final EntityType m_entityType;
+
+    /** The index the search was run against, or null if every Entity is searched directly. */
+    private final EntitySearchIndex m_index;
+
+    /** The IDs of the Entities the index found, or null if every Entity is searched directly. */
+    private final Set<UUID> m_matches;
+
+    /** The version of the index the matches were found in. */
+    private final long m_indexVersion;
+
+    /** The EntityTypes whose display strings contain the search string, or null if every Entity is searched directly. */
+    private final Set<EntityType> m_matchingTypes;
     
     /**
      * Creates a new instance of EntityDisplayFilter.
@@ -29,12 +43,70 @@ public class EntityDisplayFilter implements DataFilter<Entity> {
      * @param includeSecret true if secret Entities should be returned for display.
      */
     public EntityDisplayFilter(String searchString, EntityType typeAllowed, boolean includeSecret) {
+        this(searchString, typeAllowed, includeSecret, null);
+    }
+
+    /**
+     * Creates a new instance of EntityDisplayFilter which runs its search once against the supplied index, rather
+     * than searching each Entity as it is checked.  Entities the index does not yet hold as they are, because it has
+     * not yet heard of a change, are still searched directly.
+     *
+     * @param searchString the text to search for, must not be null.  This string searches the Entity name, type and tags only.
+     * @param typeAllowed the EntityType that is accepted by this filter, or null if all types are accepted.
+     * @param includeSecret true if secret Entities should be returned for display.
+     * @param index the index to search, or null to search each Entity directly.
+     */
+    public EntityDisplayFilter(String searchString, EntityType typeAllowed, boolean includeSecret, EntitySearchIndex index) {
+        this(searchString, typeAllowed, includeSecret, index, null);
+    }
+
+    /**
+     * Creates a new instance of EntityDisplayFilter which runs its search against the supplied index, narrowing the
+     * matches of a previous filter when the new search string extends its search string, as it does while the user
+     * types.  The previous matches are used only if they came from the same index, unchanged since, with the same
+     * secrecy; otherwise the whole index is searched.
+     *
+     * @param searchString the text to search for, must not be null.  This string searches the Entity name, type and tags only.
+     * @param typeAllowed the EntityType that is accepted by this filter, or null if all types are accepted.
+     * @param includeSecret true if secret Entities should be returned for display.
+     * @param index the index to search, or null to search each Entity directly.
+     * @param previous the filter this one replaces, or null if there is none.
+     */
+    public EntityDisplayFilter(String searchString, EntityType typeAllowed, boolean includeSecret, EntitySearchIndex index,
+                               EntityDisplayFilter previous) {
         if (searchString == null) {
             throw new IllegalArgumentException("Parameter 'searchString' must not be null.");
         }
         m_includeSecretData = includeSecret;
         m_entityType = typeAllowed;
         m_searchString = searchString.trim().toLowerCase();
+        if (index != null && !m_searchString.isEmpty()) {
+            m_index = index;
+            Set<UUID> matches = null;
+            long version = 0;
+            if (previous != null && previous.m_index == index && previous.m_includeSecretData == includeSecret
+                    && m_searchString.contains(previous.m_searchString)) {
+                version = previous.m_indexVersion;
+                matches = index.narrow(m_searchString, includeSecret, previous.m_matches, version);
+            }
+            if (matches == null) {
+                version = index.getVersion();
+                matches = index.search(m_searchString, includeSecret);
+            }
+            m_matches = matches;
+            m_indexVersion = version;
+            m_matchingTypes = EnumSet.noneOf(EntityType.class);
+            for (EntityType type : EntityType.values()) {
+                if (type.getDisplayString().toLowerCase().contains(m_searchString)) {
+                    m_matchingTypes.add(type);
+                }
+            }
+        } else {
+            m_index = null;
+            m_matches = null;
+            m_indexVersion = 0;
+            m_matchingTypes = null;
+        }
     }
     
     /**
@@ -60,22 +132,23 @@ public class EntityDisplayFilter implements DataFilter<Entity> {
             return false;
         }
 
+        // If the index has already searched this Entity, use its answer.
+        if (m_matches != null && m_index.isIndexed(entity)) {
+            return m_matches.contains(entity.getId()) || m_matchingTypes.contains(entity.getType());
+        }
+
         // If the search string is contained in the name, accepted
         if (entity.getName().trim().toLowerCase().contains(m_searchString)) {
             return true;
         }
         
         // If the search string is contained in the tags, accept it.
-        Set<String> allTags = new HashSet<>();
-        allTags.addAll(entity.getPublicData().getTags());
-        // If secret data is to be included, include searching the secret tags
-        if (m_includeSecretData) {
-            allTags.addAll(entity.getSecretData().getTags());
+        if (containsSearchString(entity.getPublicData().getTags())) {
+            return true;
         }
-        for (String tag : allTags) {
-            if (tag.trim().toLowerCase().contains(m_searchString)) {
-                return true;
-            }
+        // If secret data is to be included, include searching the secret tags
+        if (m_includeSecretData && containsSearchString(entity.getSecretData().getTags())) {
+            return true;
         }
         
         // If the user-displayable Entity type string contains the search string, accept the Entity.
@@ -85,5 +158,19 @@ public class EntityDisplayFilter implements DataFilter<Entity> {
         
         return false;
     }
+
+    /**
+     * Returns true if any of the supplied tags contain the search string.
+     * @param tags the tags to check.
+     * @return true if any of the tags contain the search string, false otherwise.
+     */
+    private boolean containsSearchString(Set<String> tags) {
+        for (String tag : tags) {
+            if (tag.trim().toLowerCase().contains(m_searchString)) {
+                return true;
+            }
+        }
+        return false;
+    }
     
 }
@@ -52,6 +52,9 @@ public class ColoredDisplayableCellRenderer implements ListCellRenderer<ColoredD
                 ColoredDisplayable e = (ColoredDisplayable) userObject;
                 returnValue = renderColoredDisplayable(e, selected);
             }
+        } else if (value instanceof ColoredDisplayable) {
+            //Some tree models hand over their contents directly rather than wrapped in nodes
+            returnValue = renderColoredDisplayable((ColoredDisplayable) value, selected);
         }
 
         if (returnValue == null) {
@@ -0,0 +1,107 @@
+package campaignencyclopedia.display.swing;
+
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import toolbox.display.EditListener;
+import toolbox.display.dialog.DialogContent;
+
+/**
+ * Dialog content for editing the leading words, such as 'The', that are ignored when sorting Entity names.
+ * @author adam
+ */
+public class ConfigureSortPrefixesDialogContent implements DialogContent {
+
+    /** The separator between prefixes in the editor. */
+    private static final String SEPARATOR = ",";
+
+    private final List<String> m_originalPrefixes;
+    private JTextField m_editor;
+    private JPanel m_content;
+    private EditListener m_editListener;
+
+    /**
+     * Creates a new ConfigureSortPrefixesDialogContent.
+     * @param originalPrefixes the prefixes currently configured.
+     */
+    public ConfigureSortPrefixesDialogContent(List<String> originalPrefixes) {
+        if (originalPrefixes == null) {
+            throw new IllegalArgumentException("Parameter 'originalPrefixes' must not be null.");
+        }
+        m_originalPrefixes = originalPrefixes;
+        initialize();
+    }
+
+    private void initialize() {
+        m_editor = new JTextField(30);
+        m_editor.setText(String.join(SEPARATOR + " ", m_originalPrefixes));
+        m_editor.setToolTipText("Comma separated words to ignore at the start of names when sorting.");
+        m_editor.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent de) {
+                alertListenerOfEdits();
+            }
+            @Override
+            public void removeUpdate(DocumentEvent de) {
+                alertListenerOfEdits();
+            }
+            @Override
+            public void changedUpdate(DocumentEvent de) {
+                alertListenerOfEdits();
+            }
+        });
+        m_content = new JPanel();
+        m_content.add(new JLabel("Ignored Prefixes:"));
+        m_content.add(m_editor);
+    }
+
+    private void alertListenerOfEdits() {
+        if (m_editListener != null) {
+            m_editListener.edited();
+        }
+    }
+
+    /**
+     * Returns the prefixes in the editor text field.
+     * @return the prefixes in the editor text field, in the order entered.
+     */
+    public List<String> getPrefixes() {
+        List<String> prefixes = new ArrayList<>();
+        for (String prefix : m_editor.getText().split(SEPARATOR)) {
+            if (!prefix.trim().isEmpty()) {
+                prefixes.add(prefix.trim());
+            }
+        }
+        return prefixes;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Component getContent() {
+        return m_content;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setDialogEditListener(EditListener el) {
+        m_editListener = el;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isDataCommittable() {
+        return !getPrefixes().equals(m_originalPrefixes);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isCommitPermitted() {
+        return isDataCommittable();
+    }
+
+}
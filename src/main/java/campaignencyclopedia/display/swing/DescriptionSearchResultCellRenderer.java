@@ -0,0 +1,124 @@
+package campaignencyclopedia.display.swing;
+
+import campaignencyclopedia.data.DescriptionSearchResult;
+import campaignencyclopedia.display.swing.graphical.Colors;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.ListCellRenderer;
+import javax.swing.plaf.metal.MetalLookAndFeel;
+
+/**
+ * A renderer for description search results in a JList, showing the Entity name over a snippet of its description
+ * with the searched words in bold.
+ * @author Keith
+ */
+public class DescriptionSearchResultCellRenderer implements ListCellRenderer<DescriptionSearchResult> {
+
+    private static final Insets INSETS = new Insets(3, 1, 3, 1);
+
+    /** The width snippets are wrapped to, in pixels. */
+    private static final int SNIPPET_WIDTH = 260;
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends DescriptionSearchResult> jlist, DescriptionSearchResult result, int i, boolean isSelected, boolean hasFocus) {
+        JPanel cell = new JPanel(new GridBagLayout());
+
+        JLabel label = new JLabel(toHtml(result));
+        label.setOpaque(false);
+        label.setBorder(BorderFactory.createEmptyBorder(1, 4, 1, 4));
+        label.setHorizontalAlignment(JLabel.LEFT);
+        label.setVerticalAlignment(JLabel.TOP);
+
+        Color deselectedBackground = cell.getBackground();
+        Color deselectedTextColor = cell.getForeground();
+
+        // LAYOUT COMPONENTS
+        // Dot
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.insets = INSETS;
+        gbc.anchor = GridBagConstraints.FIRST_LINE_START;
+        gbc.weightx = 0.0f;
+        gbc.fill = GridBagConstraints.NONE;
+        cell.add(new Dot(Colors.getColor(result.getEntity().getType())), gbc);
+
+        // Label
+        gbc.gridx = 1;
+        gbc.weightx = 1.0f;
+        gbc.weighty = 1.0f;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        cell.add(label, gbc);
+
+        if (isSelected){
+            cell.setOpaque(true);
+            cell.setBackground(MetalLookAndFeel.getTextHighlightColor());
+        } else {
+            cell.setBackground(deselectedBackground);
+            cell.setForeground(deselectedTextColor);
+        }
+
+        return cell;
+    }
+
+    /**
+     * Returns the name and snippet of a result as HTML, with the searched words in bold.
+     * @param result the result.
+     * @return the HTML to show.
+     */
+    private static String toHtml(DescriptionSearchResult result) {
+        String snippet = result.getSnippet();
+        int[] highlights = result.getHighlights();
+        StringBuilder html = new StringBuilder("<html><body style='width: " + SNIPPET_WIDTH + "px'><b>");
+        appendEscaped(html, result.getEntity().getName(), 0, result.getEntity().getName().length());
+        html.append("</b>");
+        if (result.isSecretSnippet()) {
+            html.append(" <i>(Secret)</i>");
+        }
+        html.append("<br><font size='-1'>");
+        int last = 0;
+        for (int h = 0; h < highlights.length; h += 2) {
+            appendEscaped(html, snippet, last, highlights[h]);
+            html.append("<b>");
+            appendEscaped(html, snippet, highlights[h], highlights[h + 1]);
+            html.append("</b>");
+            last = highlights[h + 1];
+        }
+        appendEscaped(html, snippet, last, snippet.length());
+        html.append("</font></body></html>");
+        return html.toString();
+    }
+
+    /**
+     * Appends part of a string to some HTML, escaping the characters HTML gives meaning to.
+     * @param html the HTML to append to.
+     * @param s the string.
+     * @param start the index of the first character to append.
+     * @param end the index after the last character to append.
+     */
+    private static void appendEscaped(StringBuilder html, String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '<':
+                    html.append("&lt;");
+                    break;
+                case '>':
+                    html.append("&gt;");
+                    break;
+                case '&':
+                    html.append("&amp;");
+                    break;
+                default:
+                    html.append(c);
+            }
+        }
+    }
+}
@@ -3,12 +3,17 @@ package campaignencyclopedia.display.swing;
 import campaignencyclopedia.data.Campaign;
 import campaignencyclopedia.data.CampaignDataManager;
 import campaignencyclopedia.data.ColoredDisplayable;
+import campaignencyclopedia.data.DescriptionSearchIndex;
+import campaignencyclopedia.data.DescriptionSearchResult;
 import campaignencyclopedia.data.Entity;
 import campaignencyclopedia.data.EntityData;
+import campaignencyclopedia.data.EntitySearchIndex;
 import campaignencyclopedia.data.EntityType;
 import campaignencyclopedia.data.Relationship;
+import campaignencyclopedia.data.RelationshipFilter;
 import campaignencyclopedia.data.RelationshipManager;
-import campaignencyclopedia.data.TimelineEntry;
+import campaignencyclopedia.data.RelationshipVisitor;
+import campaignencyclopedia.data.Visibility;
 import campaignencyclopedia.display.EntityDisplayFilter;
 import campaignencyclopedia.display.UserDisplay;
 import campaignencyclopedia.display.swing.action.SaveHelper;
@@ -16,6 +21,7 @@ import campaignencyclopedia.display.NavigationPath;
 import campaignencyclopedia.display.swing.action.DeleteEntityAction;
 import campaignencyclopedia.display.swing.filtertree.CampaignTree;
 import java.awt.BorderLayout;
+import java.awt.CardLayout;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
@@ -37,14 +43,24 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
+import javax.swing.DefaultListModel;
 import javax.swing.InputMap;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -52,6 +68,7 @@ import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JMenuBar;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
@@ -88,6 +105,12 @@ public class MainDisplay implements EditListener, UserDisplay {
     
     /** The Component for display of all of the Entities in the campaign, stored to UI purposes e.g. context menu. */
     private Component m_entityTreeComponent;
+
+    /** The panel showing either the entity tree or the description search results. */
+    private JPanel m_entityListPanel;
+
+    /** The ranked results of a description search. */
+    private JList<DescriptionSearchResult> m_descriptionResults;
     
     /** The split pane between the entity list and entity view/edit display. */
     private JSplitPane m_entitySplitPane;
@@ -100,6 +123,9 @@ public class MainDisplay implements EditListener, UserDisplay {
 
     /** The quick search check box. */
     private JCheckBox m_filterCheckBox;
+
+    /** The check box switching the search box between filtering the tree and searching descriptions. */
+    private JCheckBox m_descriptionSearchCheckBox;
     
     /** A ComboBox for selecting which types to filter by. */
     private JComboBox<ColoredDisplayable> m_entityTypeFilterComboBox;
@@ -137,6 +163,50 @@ public class MainDisplay implements EditListener, UserDisplay {
     /** A campaign data manager, which keeps track of the current data. */
     private final CampaignDataManager m_cdm;
 
+    /** The index searched by the search box, kept current by listening to the CDM. */
+    private final EntitySearchIndex m_searchIndex;
+
+    /** The index of descriptions searched by the search box in description mode, kept current by listening to the CDM. */
+    private final DescriptionSearchIndex m_descriptionIndex;
+
+    /** Builds both search indexes and keeps them current, off the event dispatch thread as that takes a while. */
+    private final ExecutorService m_indexExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Search Index");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** How long the search box must be left alone before its text is searched, in milliseconds. */
+    private static final long SEARCH_DELAY_MS = 150;
+
+    /** Runs searches off the event dispatch thread, one at a time. */
+    private final ScheduledExecutorService m_searchExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Entity Search");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** The search waiting to run, if any. */
+    private ScheduledFuture<?> m_pendingSearch;
+
+    /** Counts scheduled searches, so that a search can tell it has been replaced by a newer one. */
+    private final AtomicInteger m_searchGeneration = new AtomicInteger();
+
+    /** The filter last applied to the campaign tree, or null if it is unfiltered.  Only used on the EDT. */
+    private EntityDisplayFilter m_appliedFilter;
+
+    /** The name of the card showing the entity tree. */
+    private static final String TREE_CARD = "tree";
+
+    /** The name of the card showing the description search results. */
+    private static final String DESCRIPTIONS_CARD = "descriptions";
+
     /** The navigation path for this display. */
     private NavigationPath m_navPath;
 
@@ -161,6 +231,19 @@ public class MainDisplay implements EditListener, UserDisplay {
      */
     public MainDisplay(CampaignDataManager cdm) {
         m_cdm = cdm;
+        m_searchIndex = new EntitySearchIndex(cdm);
+        m_cdm.addListener(m_searchIndex, m_indexExecutor);
+        m_descriptionIndex = new DescriptionSearchIndex(cdm);
+        m_cdm.addListener(m_descriptionIndex, m_indexExecutor);
+        // Build the indexes on their own thread.  Listening first means no change can be missed in between, and any
+        // notifications queued behind the build bring the indexes up to date.
+        m_indexExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                m_searchIndex.rebuild();
+                m_descriptionIndex.rebuild();
+            }
+        });
         initialize();
     }
 
@@ -186,75 +269,50 @@ public class MainDisplay implements EditListener, UserDisplay {
     private void commitDisplayedDataToCdm() {
         // Get shown Entity
         Entity entity = getDisplayedEntity();
-        //Store original relationships as the ones to remove (unless they are still displayed) in order to catch deletes.
-        Set<Relationship> relsToRemove = new HashSet<>(m_cdm.getRelationshipsForEntity(entity.getId()).getAllRelationships());
-        
-        // Get Displayed Relationships and add them.  Simultaneously remove them from "orig" list to ctach deletes
-        RelationshipManager relMgr = new RelationshipManager();
-        for (Relationship rel : m_entityDetails.getRelationships()) {
-            // If the entity is secret and it has any public relationships, they must now be secret, so update them.
-            if (entity.isSecret() && !rel.isSecret()) {
-                relMgr.addRelationship(new Relationship(rel.getEntityId(), rel.getRelatedEntity(), rel.getRelationshipText(), true));
-            } else {
-                relMgr.addRelationship(rel);
-            }
-            relsToRemove.remove(rel);
-        }
 
-        // If the entity is secret:
-        //  - relationships owned by other entities pointing to it must be secret, so update them.
-        //  - Timeline events pointing to it must be secret, so update them.
-        if (entity.isSecret()) {
-            for (Entity otherEntity : m_cdm.getAllEntities()) {
-                RelationshipManager otherRelMgr = m_cdm.getRelationshipsForEntity(otherEntity.getId());
-                
-                Set<Relationship> requireUpdate = new HashSet<>();
-                Set<Relationship> requireRemove = new HashSet<>();
-                
-                for (Relationship rel : new HashSet<>(otherRelMgr.getPublicRelationships())) {
-                    if (!rel.isSecret() && rel.getRelatedEntity().equals(entity.getId())) {
-                        requireRemove.add(rel);
-                        requireUpdate.add(new Relationship(rel.getEntityId(), rel.getRelatedEntity(), rel.getRelationshipText(), true));
-                    }
-                }
-                // Clear the public data from the relationship manager and add in the newly updated stuff.
-                for (Relationship r : requireRemove) {
-                    m_cdm.removeRelationship(r);
-                }
-                otherRelMgr.addAllRelationships(requireUpdate);
-                m_cdm.addOrUpdateAllRelationships(otherEntity.getId(), otherRelMgr);
+        // Batch the changes so listeners see each affected Entity once, however many edits it took.
+        m_cdm.beginBatch();
+        try {
+            //Store original relationships as the ones to remove (unless they are still displayed) in order to catch deletes.
+            Set<Relationship> relsToRemove = new HashSet<>(m_cdm.getRelationshipsForEntity(entity.getId()).getAllRelationships());
+
+            // Get Displayed Relationships and add them.  Simultaneously remove them from "orig" list to ctach deletes
+            RelationshipManager relMgr = new RelationshipManager();
+            for (Relationship rel : m_entityDetails.getRelationships()) {
+                relMgr.addRelationship(rel);
+                relsToRemove.remove(rel);
             }
 
-            // Make secret any Timeline Entries that now must be.
-            for (TimelineEntry tle : m_cdm.getTimelineData()) {
-                if (tle.getAssociatedId().equals(entity.getId())) {
-                    m_cdm.removeTimelineEntry(tle.getId());
-                    m_cdm.addOrUpdateTimelineEntry(new TimelineEntry(tle.getTitle(), tle.getMonth(), tle.getYear(), true, tle.getAssociatedId(), tle.getId()));
-                }
+            // Check to see if the Entity is already in our data manager
+            // If it is, remove it (old version) from the tree's model and re-add (new version).
+            Entity previousState = m_cdm.getEntity(entity.getId());
+            if (previousState != null) {
+                m_campaignTree.removeEntity(previousState);
             }
-        }
+            m_campaignTree.insertEntity(entity);
+            m_campaignTree.selectEntity(entity);
 
-        // Check to see if the Entity is already in our data manager
-        // If it is, remove it (old version) from the tree's model and re-add (new version).
-        Entity previousState = m_cdm.getEntity(entity.getId());
-        if (previousState != null) {
-            m_campaignTree.removeEntity(previousState);
-        }
-        m_campaignTree.insertEntity(entity);
-        m_campaignTree.selectEntity(entity);
+            // Add the new or updated Entity to the CDM
+            m_cdm.addOrUpdateEntity(entity);
 
-        // Add the new or updated Entity to the CDM
-        m_cdm.addOrUpdateEntity(entity);
+            // Add/Update the Relationships
+            for (Relationship r : relsToRemove) {
+                m_cdm.removeRelationship(r);
+            }
+            m_cdm.addOrUpdateAllRelationships(entity.getId(), relMgr);
+            m_displayedEntityId = entity.getId();
 
-        // Add/Update the Relationships
-        for (Relationship r : relsToRemove) {
-            m_cdm.removeRelationship(r);
+            // If the entity is secret, its relationships in and out and its timeline entries must be secret too.
+            if (entity.isSecret()) {
+                m_cdm.setEntitySecrecy(entity.getId(), true);
+                m_entityDetails.setRelationships(getRelationshipsOf(entity.getId()));
+            } else {
+                // Force Update of display for relationship changes.
+                m_entityDetails.setRelationships(relMgr.getAllRelationships());
+            }
+        } finally {
+            m_cdm.commit();
         }
-        m_cdm.addOrUpdateAllRelationships(entity.getId(), relMgr);
-        m_displayedEntityId = entity.getId();
-
-        // Force Update of display for relationship changes.
-        m_entityDetails.setRelationships(relMgr.getAllRelationships());
     }
 
     /**
@@ -353,7 +411,7 @@ public class MainDisplay implements EditListener, UserDisplay {
         if (entity != null) {
             m_displayedEntityId = entity.getId();
             m_entityNameField.setText(entity.getName());
-            m_entityDetails.displayEntityDetails(entity, m_cdm.getRelationshipsForEntity(m_displayedEntityId).getAllRelationships());
+            m_entityDetails.displayEntityDetails(entity, getRelationshipsOf(m_displayedEntityId));
             // Need to reset type selector after setting the entity details itself since type change "repopulates" with "current" data to 
             // catch a switch of entity/plot panels.  "Current" display therefore needs to be updated first to avoid mismatch.
             m_typeSelector.setSelectedItem(entity.getType());
@@ -457,9 +515,20 @@ public class MainDisplay implements EditListener, UserDisplay {
                     return false;
                 }
 
-                // Or if the Relationship Data has changed, return false...
+                // Or if the Relationship Data has changed, return false...  The sets are equal if they are the same
+                // size and every stored Relationship is displayed.
                 RelationshipManager rm = m_cdm.getRelationshipsForEntity(m_displayedEntityId);
-                if (!rm.getAllRelationships().equals(m_entityDetails.getRelationships())) {
+                final Set<Relationship> displayed = m_entityDetails.getRelationships();
+                int stored = rm == null ? 0 : rm.count(Visibility.ALL);
+                if (stored != displayed.size()) {
+                    return false;
+                }
+                if (rm != null && rm.anyMatch(Visibility.ALL, new RelationshipFilter() {
+                    @Override
+                    public boolean accept(Relationship rel) {
+                        return !displayed.contains(rel);
+                    }
+                })) {
                     return false;
                 }
             }
@@ -467,6 +536,26 @@ public class MainDisplay implements EditListener, UserDisplay {
         return true;
     }
 
+    /**
+     * Returns the Relationships of the supplied Entity, in a set sized to hold them.
+     * @param id the ID of the Entity.
+     * @return the Relationships of the Entity, empty if it has none.
+     */
+    private Set<Relationship> getRelationshipsOf(UUID id) {
+        RelationshipManager relMgr = m_cdm.getRelationshipsForEntity(id);
+        if (relMgr == null) {
+            return new HashSet<>();
+        }
+        final Set<Relationship> relationships = new HashSet<>(relMgr.count(Visibility.ALL) * 4 / 3 + 1);
+        relMgr.forEach(Visibility.ALL, new RelationshipVisitor() {
+            @Override
+            public void visit(Relationship rel) {
+                relationships.add(rel);
+            }
+        });
+        return relationships;
+    }
+
     /**
      * Prompts the user to determine if they would like to save any changes that have been made
      * and returns the user's choice (true if they desire to save, false otherwise).
@@ -659,8 +748,43 @@ public class MainDisplay implements EditListener, UserDisplay {
                 }
             }
         });
-        
-        return new JScrollPane(m_entityTreeComponent);
+
+        // Create the list of description search results, shown in place of the tree while searching descriptions.
+        m_descriptionResults = new JList<>(new DefaultListModel<DescriptionSearchResult>());
+        m_descriptionResults.setCellRenderer(new DescriptionSearchResultCellRenderer());
+        m_descriptionResults.setFixedCellHeight(72);
+        m_descriptionResults.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent me) {
+                if (me.getClickCount() > 1) {
+                    displaySelectedDescriptionResult();
+                }
+            }
+        });
+        m_descriptionResults.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent ke) {
+                if (ke.getKeyChar() == KeyEvent.VK_ENTER) {
+                    displaySelectedDescriptionResult();
+                }
+            }
+        });
+
+        m_entityListPanel = new JPanel(new CardLayout());
+        m_entityListPanel.add(new JScrollPane(m_entityTreeComponent), TREE_CARD);
+        m_entityListPanel.add(new JScrollPane(m_descriptionResults), DESCRIPTIONS_CARD);
+        return m_entityListPanel;
+    }
+
+    /** Displays the Entity of the selected description search result, if it still exists. */
+    private void displaySelectedDescriptionResult() {
+        DescriptionSearchResult result = m_descriptionResults.getSelectedValue();
+        if (result != null) {
+            Entity entity = m_cdm.getEntity(result.getEntity().getId());
+            if (entity != null) {
+                displayEntity(entity);
+            }
+        }
     }
 
     
@@ -684,10 +808,23 @@ public class MainDisplay implements EditListener, UserDisplay {
         m_filterCheckBox.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent ae) {
-                updateEntityFilter();
+                updateEntityFilter(0);
             }
         });
         
+        m_descriptionSearchCheckBox = new JCheckBox("Search Descriptions");
+        m_descriptionSearchCheckBox.setOpaque(true);
+        m_descriptionSearchCheckBox.setBackground(BLUE);
+        m_descriptionSearchCheckBox.setForeground(SILVER);
+        m_descriptionSearchCheckBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent ae) {
+                CardLayout cards = (CardLayout) m_entityListPanel.getLayout();
+                cards.show(m_entityListPanel, m_descriptionSearchCheckBox.isSelected() ? DESCRIPTIONS_CARD : TREE_CARD);
+                updateEntityFilter(0);
+            }
+        });
+
         m_entityTypeFilterComboBox = new JComboBox<>();
         m_entityTypeFilterComboBox.addItem(new ColoredDisplayable() {
             @Override
@@ -710,7 +847,7 @@ public class MainDisplay implements EditListener, UserDisplay {
             @Override
             public void itemStateChanged(ItemEvent ie) {
                 if (ie.getStateChange() == ItemEvent.SELECTED) {
-                    updateEntityFilter();
+                    updateEntityFilter(0);
                 }
             }
         });
@@ -719,15 +856,15 @@ public class MainDisplay implements EditListener, UserDisplay {
         m_searchBox.getDocument().addDocumentListener(new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent de) {
-                updateEntityFilter();
+                updateEntityFilter(SEARCH_DELAY_MS);
             }
             @Override
             public void removeUpdate(DocumentEvent de) {
-                updateEntityFilter();
+                updateEntityFilter(SEARCH_DELAY_MS);
             }
             @Override
             public void changedUpdate(DocumentEvent de) {
-                updateEntityFilter();
+                updateEntityFilter(SEARCH_DELAY_MS);
             }
         });
         m_searchBox.addKeyListener(new KeyListener() {
@@ -794,19 +931,24 @@ public class MainDisplay implements EditListener, UserDisplay {
         gbc.gridx = 3;
         gbc.fill = GridBagConstraints.NONE;
         gbc.weightx = 0.0f;
+        panel.add(m_descriptionSearchCheckBox, gbc);
+
+        gbc.gridx = 4;
+        gbc.fill = GridBagConstraints.NONE;
+        gbc.weightx = 0.0f;
         panel.add(m_entityTypeFilterComboBox, gbc);
         
-        gbc.gridx = 4;
+        gbc.gridx = 5;
         gbc.fill = GridBagConstraints.NONE;
         gbc.weightx = 0.0f;
         panel.add(m_searchBox, gbc);
 
-        gbc.gridx = 5;
+        gbc.gridx = 6;
         gbc.fill = GridBagConstraints.NONE;
         gbc.weightx = 0.0f;
         panel.add(m_backButton, gbc);
 
-        gbc.gridx = 6;
+        gbc.gridx = 7;
         gbc.fill = GridBagConstraints.NONE;
         gbc.weightx = 0.0f;
         panel.add(m_forwardButton, gbc);
@@ -815,23 +957,106 @@ public class MainDisplay implements EditListener, UserDisplay {
     }
 
     /**
-     * Returns a new EntityDisplayFilter or null if no valid filter is set.
-     * @return a new EntityDisplayFilter or null if no valid filter is set.s
+     * Schedules the search and filter controls to be applied once they have been left alone for the supplied delay.
+     * The search, and the matching of every Entity in the campaign tree against it, run on the search thread, and
+     * only the matches are applied on the event dispatch thread.  Any search still waiting or running when another is
+     * scheduled is abandoned, and its result never applied.
+     * @param delayMs how long to wait for further changes before searching, in milliseconds.
      */
-    private void updateEntityFilter() {
-        String searchString = m_searchBox.getText().trim();
+    private void updateEntityFilter(long delayMs) {
+        // Read the controls now, on the event dispatch thread.
+        final String searchString = m_searchBox.getText().trim();
         Object type = m_entityTypeFilterComboBox.getSelectedItem();
-        boolean showSecrets = !m_filterCheckBox.isSelected();
-        if (type instanceof EntityType) {
-            m_campaignTree.filterTree(new EntityDisplayFilter(searchString, (EntityType)type, showSecrets));
-        } else if (!"".equals(searchString) || !showSecrets){
-            //the "ALL" category was snuck into the combobox, and so is not an entity type.
-            //This is the ALL category as long as there is search text or we are hiding secrets
-            m_campaignTree.filterTree(new EntityDisplayFilter(searchString, null, showSecrets));
-        } else {
-            //No search string, ALL category, and don't hide secrets.  Use null for no filtering/
-            m_campaignTree.filterTree(null);
+        final EntityType entityType = type instanceof EntityType ? (EntityType)type : null;
+        final boolean showSecrets = !m_filterCheckBox.isSelected();
+        final boolean searchDescriptions = m_descriptionSearchCheckBox.isSelected();
+        final EntityDisplayFilter previous = m_appliedFilter;
+        final CampaignTree.Snapshot snapshot = m_campaignTree.getSnapshot();
+        final int generation = m_searchGeneration.incrementAndGet();
+
+        if (m_pendingSearch != null) {
+            m_pendingSearch.cancel(false);
+        }
+        m_pendingSearch = m_searchExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != m_searchGeneration.get()) {
+                    return;
+                }
+                if (searchDescriptions) {
+                    final List<DescriptionSearchResult> results = searchDescriptions(searchString, entityType, showSecrets);
+                    applyWhenCurrent(generation, new Runnable() {
+                        @Override
+                        public void run() {
+                            DefaultListModel<DescriptionSearchResult> model = new DefaultListModel<>();
+                            for (DescriptionSearchResult result : results) {
+                                model.addElement(result);
+                            }
+                            m_descriptionResults.setModel(model);
+                        }
+                    });
+                } else {
+                    final EntityDisplayFilter filter;
+                    if (entityType != null || !"".equals(searchString) || !showSecrets) {
+                        //With the "ALL" category (which was snuck into the combobox, and so is not an entity type),
+                        //filter as long as there is search text or we are hiding secrets
+                        filter = new EntityDisplayFilter(searchString, entityType, showSecrets, m_searchIndex, previous);
+                    } else {
+                        //No search string, ALL category, and don't hide secrets.  Use null for no filtering/
+                        filter = null;
+                    }
+                    final CampaignTree.FilterResult result = snapshot.filter(filter);
+                    applyWhenCurrent(generation, new Runnable() {
+                        @Override
+                        public void run() {
+                            if (m_campaignTree.filterTree(result)) {
+                                m_appliedFilter = filter;
+                            } else {
+                                // Entities were added or removed while searching, so search them again.
+                                updateEntityFilter(0);
+                            }
+                        }
+                    });
+                }
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the supplied task on the event dispatch thread, unless another search has been scheduled since the one
+     * producing it, either by now or by the time the task comes to run.
+     * @param generation the generation of the search producing the task.
+     * @param task the task applying the result of the search.
+     */
+    private void applyWhenCurrent(final int generation, final Runnable task) {
+        if (generation == m_searchGeneration.get()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (generation == m_searchGeneration.get()) {
+                        task.run();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs a description search, keeping only the Entities which pass the type and secrecy filters.
+     * @param searchString the words to search for.
+     * @param type the EntityType to show, or null to show all types.
+     * @param showSecrets true if secret Entities and descriptions should be searched and shown.
+     * @return the ranked results.
+     */
+    private List<DescriptionSearchResult> searchDescriptions(String searchString, EntityType type, boolean showSecrets) {
+        EntityDisplayFilter filter = new EntityDisplayFilter("", type, showSecrets);
+        List<DescriptionSearchResult> results = new ArrayList<>();
+        for (DescriptionSearchResult result : m_descriptionIndex.search(searchString, showSecrets)) {
+            if (filter.accept(result.getEntity())) {
+                results.add(result);
+            }
         }
+        return results;
     }
 
     /**
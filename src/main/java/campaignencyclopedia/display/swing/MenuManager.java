@@ -5,6 +5,7 @@ import campaignencyclopedia.data.Entity;
 import campaignencyclopedia.display.UserDisplay;
 import campaignencyclopedia.display.swing.action.ConfigureCampaignCalendarAction;
 import campaignencyclopedia.display.swing.action.ConfigureRelationshipsAction;
+import campaignencyclopedia.display.swing.action.ConfigureSortPrefixesAction;
 import campaignencyclopedia.display.swing.action.DeleteEntityAction;
 import campaignencyclopedia.display.swing.action.EditCampaignNameAction;
 import campaignencyclopedia.display.swing.action.ExportCampaignToPdfAction;
@@ -62,6 +63,9 @@ public class MenuManager {
     /** An action for configuring the calendar in this campaign. */
     private final ConfigureCampaignCalendarAction m_configureCalendar;
 
+    /** An action for configuring the name prefixes ignored when sorting in this campaign. */
+    private final ConfigureSortPrefixesAction m_configureSorting;
+
     /** The action for showing the statistics dialog. */
     private final ShowCampaignStatisticsAction m_showStats;
 
@@ -112,6 +116,7 @@ public class MenuManager {
         m_showTimelineAction = new ShowTimelineAction(m_display, m_cdm);
         m_configureRelationships = new ConfigureRelationshipsAction(m_frame);
         m_configureCalendar = new ConfigureCampaignCalendarAction(m_frame, m_cdm);
+        m_configureSorting = new ConfigureSortPrefixesAction(m_frame, m_cdm, m_display);
         m_showStats = new ShowCampaignStatisticsAction(m_frame, m_cdm);
 
         m_navBack = new NavigateBackwardAction(m_display);
@@ -246,6 +251,8 @@ public class MenuManager {
         JMenuItem configureCalendar = new JMenuItem(m_configureCalendar);
         configureCalendar.setAccelerator(KeyStroke.getKeyStroke('C', InputEvent.ALT_DOWN_MASK));
         
+        JMenuItem configureSorting = new JMenuItem(m_configureSorting);
+
         JMenuItem showStats = new JMenuItem(m_showStats);
 
         JMenuItem viewGraph = new JMenuItem(new AbstractAction("View Graph...") {
@@ -262,6 +269,7 @@ public class MenuManager {
         campaignMenu.add(showTimeline);
         campaignMenu.add(viewGraph);
         campaignMenu.add(configureCalendar);
+        campaignMenu.add(configureSorting);
         campaignMenu.add(showStats);
 
         return campaignMenu;
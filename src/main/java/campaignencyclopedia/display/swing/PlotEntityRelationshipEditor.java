@@ -5,7 +5,6 @@
  */
 package campaignencyclopedia.display.swing;
 
-import campaignencyclopedia.data.ComparisonTools;
 import campaignencyclopedia.data.DataAccessor;
 import campaignencyclopedia.data.Entity;
 import campaignencyclopedia.data.EntityType;
@@ -122,9 +121,9 @@ public class PlotEntityRelationshipEditor {
             @Override
             public int compare(Relationship relationship, Relationship otherRelationship) {
                 if (relationship.compareTo(otherRelationship) == 0) {
-                    String relationshipName = ComparisonTools.trimForSort(m_accessor.getEntity(relationship.getRelatedEntity()).getName());
-                    String otherName = ComparisonTools.trimForSort(m_accessor.getEntity(otherRelationship.getRelatedEntity()).getName());
-                    return (relationshipName.compareTo(otherName));
+                    Entity relationshipEntity = m_accessor.getEntity(relationship.getRelatedEntity());
+                    Entity otherEntity = m_accessor.getEntity(otherRelationship.getRelatedEntity());
+                    return relationshipEntity.compareTo(otherEntity);
                 } else {
                     return relationship.compareTo(otherRelationship);
                 }
@@ -475,9 +474,8 @@ public class PlotEntityRelationshipEditor {
     public void addRelationship(Relationship rel) {
         m_originalRelationshipSet.add(rel);
         
-        // Need to compare display name to rel. string since Relationships don't actually have a static enum list
-        // and the toString includes more info like the UUIDs etc.  Cheap way to compare "type"
-        if (rel.getRelationshipText().equals(LEAD_TO_POINT_REL.getDisplayString())) {
+        // Relationships don't hold a RelationshipType, but their interned type id can be compared to the enum's.
+        if (rel.isType(LEAD_TO_POINT_REL)) {
             //If we're at a lead, then Leads to is pointing out to the node this leads leads to
             //Otherwise if we're at a point, then this must be a link pointing to here from a lead
             if (m_currentEntityType == EntityType.PLOT_LEAD) {
@@ -485,7 +483,7 @@ public class PlotEntityRelationshipEditor {
             } else if (m_currentEntityType == EntityType.PLOT_POINT) {
                 m_relsInModel.addElement(rel);
             }
-        } else if (rel.getRelationshipText().equals(POINT_TO_LEAD_REL.getDisplayString())) {
+        } else if (rel.isType(POINT_TO_LEAD_REL)) {
             //If we're at a plot point, then we must be pointing out to a lead we reveal here
             //Otherwise if we're at a lead, the reveals rel must be pointing in from the node we revealed it at
             if (m_currentEntityType == EntityType.PLOT_POINT) {
@@ -2,6 +2,7 @@ package campaignencyclopedia.display.swing;
 
 import campaignencyclopedia.display.DataFilter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -10,6 +11,10 @@ import javax.swing.AbstractListModel;
 
 /**
  * A List model that supports being sorted, (or not) as well as applying a DataFilter to show or hide data.
+ * <p>
+ * The items are kept in order as they are added, each finding its place by binary search, so nothing is ever
+ * re-sorted.  The filtered view is a sorted array of the indexes of the items which pass the filter, and every change
+ * is reported to listeners as exactly the rows added or removed.
  *
  * @author adam
  * @param <E>
@@ -19,15 +24,18 @@ public class SortableListModel<E extends Comparable<E>> extends AbstractListMode
     /** The filter, if any, on this model. */
     private DataFilter<E> m_filter;
 
-    /** The items in this model. */
+    /** The items in this model, in order if sorting. */
     private final List<E> m_items;
 
-    /** The items in this model which have passed the filter. */
-    private final List<E> m_filteredItems;
+    /** The indexes in m_items of the items which have passed the filter, ascending.  Only used while filtered. */
+    private int[] m_filteredIndexes;
+
+    /** The number of items which have passed the filter. */
+    private int m_filteredCount;
 
     /** True if this model should maintain sorting, false otherwise. */
     private final boolean m_sort;
-    
+
     /** A comparator to use for sorting, null if unset. */
     private Comparator<E> m_comparator;
 
@@ -35,7 +43,7 @@ public class SortableListModel<E extends Comparable<E>> extends AbstractListMode
     public SortableListModel() {
         this(true);
     }
-    
+
     /**
      * Creates a new SortableListModel with sorting active and a supplied comparator.
      * @param comparator the Comparator to use.  If null, the Element type's default comparison methods will be used.
@@ -52,13 +60,13 @@ public class SortableListModel<E extends Comparable<E>> extends AbstractListMode
     public SortableListModel(boolean sort) {
         m_sort = sort;
         m_items = new ArrayList<>();
-        m_filteredItems = new ArrayList<>();
+        m_filteredIndexes = new int[0];
     }
 
     @Override
     public int getSize() {
         if (m_filter != null) {
-            return m_filteredItems.size();
+            return m_filteredCount;
         } else {
             return m_items.size();
         }
@@ -69,7 +77,10 @@ public class SortableListModel<E extends Comparable<E>> extends AbstractListMode
     public E getElementAt(int i) {
         // if the filter is set, return the filtered items index, otherwise return the 'real' item.
         if (m_filter != null) {
-            return m_filteredItems.get(i);
+            if (i >= m_filteredCount) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + m_filteredCount);
+            }
+            return m_items.get(m_filteredIndexes[i]);
         } else {
             return m_items.get(i);
         }
@@ -83,40 +94,54 @@ public class SortableListModel<E extends Comparable<E>> extends AbstractListMode
         return new ArrayList<>(m_items);
     }
 
+    /**
+     * Adds all of the supplied elements to this model.  When sorting, the new elements are sorted on their own and
+     * then merged with the existing ones, and each run of new rows is reported as one added interval.
+     * @param items the Elements to add.
+     */
     public void addAllElements(Collection<E> items) {
-        // If the filter is set
-        if (m_filter != null) {
-            // for each of the items to add
-            for (E e : items) {
-                // if it passes the filter
-                if (m_filter.accept(e)) {
-                    // add it to the filter
-                    m_filteredItems.add(e);
-                }
-            }
-            // Then sort and fire the UI update event
-            if (m_sort) {
-                if (m_comparator != null) {
-                    Collections.sort(m_filteredItems, m_comparator);
+        if (items.isEmpty()) {
+            return;
+        }
+        List<E> added = new ArrayList<>(items);
+        boolean[] isNew;
+        if (m_sort) {
+            // Merge the sorted new items in after any existing equal items, as a stable sort would place them.
+            sort(added);
+            List<E> merged = new ArrayList<>(m_items.size() + added.size());
+            isNew = new boolean[m_items.size() + added.size()];
+            int a = 0;
+            int i = 0;
+            while (a < added.size() || i < m_items.size()) {
+                if (i < m_items.size() && (a == added.size() || compare(m_items.get(i), added.get(a)) <= 0)) {
+                    merged.add(m_items.get(i++));
                 } else {
-                    Collections.sort(m_filteredItems);
+                    isNew[merged.size()] = true;
+                    merged.add(added.get(a++));
                 }
             }
-            fireContentsChanged(this, 0, m_filteredItems.size());
-            // Then add all of the items to the 'rea' data list.
-            m_items.addAll(items);
+            m_items.clear();
+            m_items.addAll(merged);
         } else {
-            // If no filter is set, just add them all, sort them and update the UI.
-            m_items.addAll(items);
-            if (m_sort) {
-                if (m_comparator != null) {
-                    Collections.sort(m_items, m_comparator);
-                } else {
-                    Collections.sort(m_items);
+            isNew = new boolean[m_items.size() + added.size()];
+            Arrays.fill(isNew, m_items.size(), isNew.length, true);
+            m_items.addAll(added);
+        }
+
+        // Rebuild the filtered view, noting where the new rows fell in it.
+        boolean[] rowIsNew = isNew;
+        if (m_filter != null) {
+            rowIsNew = new boolean[m_items.size()];
+            m_filteredIndexes = new int[Math.max(m_filteredIndexes.length, m_items.size())];
+            m_filteredCount = 0;
+            for (int i = 0; i < m_items.size(); i++) {
+                if (m_filter.accept(m_items.get(i))) {
+                    rowIsNew[m_filteredCount] = isNew[i];
+                    m_filteredIndexes[m_filteredCount++] = i;
                 }
             }
-            fireContentsChanged(this, 0, m_items.size());
         }
+        fireRuns(rowIsNew, getSize(), true);
     }
 
     /**
@@ -124,35 +149,31 @@ public class SortableListModel<E extends Comparable<E>> extends AbstractListMode
      * @param e the Element to add.
      */
     public void addElement(E e) {
+        // Find its place, after any equal items, and add it to the 'real' data.
+        int index = m_sort ? upperBound(e) : m_items.size();
+        m_items.add(index, e);
+
         // If the filter is set
         if (m_filter != null) {
+            // Make room in the filtered view by shifting the later items along.
+            int row = lowerBound(index);
+            for (int i = row; i < m_filteredCount; i++) {
+                m_filteredIndexes[i]++;
+            }
             // and the item passes the filter
             if (m_filter.accept(e)) {
                 // add it and fire the update event
-                m_filteredItems.add(e);
-                // Then sort and fire the UI update event
-                if (m_sort) {
-                    if (m_comparator != null) {
-                        Collections.sort(m_filteredItems, m_comparator);
-                    } else {
-                        Collections.sort(m_filteredItems);
-                    }
+                if (m_filteredCount == m_filteredIndexes.length) {
+                    m_filteredIndexes = Arrays.copyOf(m_filteredIndexes, Math.max(8, m_filteredCount * 2));
                 }
-                fireContentsChanged(this, m_filteredItems.indexOf(e), getSize());
+                System.arraycopy(m_filteredIndexes, row, m_filteredIndexes, row + 1, m_filteredCount - row);
+                m_filteredIndexes[row] = index;
+                m_filteredCount++;
+                fireIntervalAdded(this, row, row);
             }
-            // Also add it to the 'real' data collection.
-            m_items.add(e);
         } else {
-            // If no filter is set, just update the 'real' data and fire the udpate event.
-            m_items.add(e);
-            if (m_sort) {
-                if (m_comparator != null) {
-                    Collections.sort(m_items, m_comparator);
-                } else {
-                    Collections.sort(m_items);
-                }
-            }
-            fireContentsChanged(this, m_items.indexOf(e), getSize());
+            // If no filter is set, just fire the update event for the 'real' data.
+            fireIntervalAdded(this, index, index);
         }
     }
 
@@ -160,8 +181,10 @@ public class SortableListModel<E extends Comparable<E>> extends AbstractListMode
     public void clear() {
         int size = getSize();
         m_items.clear();
-        m_filteredItems.clear();
-        fireIntervalRemoved(this, 0, size);
+        m_filteredCount = 0;
+        if (size > 0) {
+            fireIntervalRemoved(this, 0, size - 1);
+        }
     }
 
     /**
@@ -169,24 +192,31 @@ public class SortableListModel<E extends Comparable<E>> extends AbstractListMode
      * @param e The element to remove.
      */
     public void removeElement(E e) {
+        int index = indexOf(e);
+        if (index < 0) {
+            return;
+        }
+        m_items.remove(index);
+
         // If the filter is set, update the filtered list.
         if (m_filter != null) {
-            if (m_filteredItems.contains(e)) {
-                int index = m_filteredItems.indexOf(e);
-                m_filteredItems.remove(e);
-                fireIntervalRemoved(this, index, index);
-            }
-            // Also maintain the 'real' data map behind the scenes.
-            //NOTE: doesn't need a fire remove event because it was either taken care of by the filtered list,
-            //or is not displayed and doesn't matter
-            m_items.remove(e);
+            int row = lowerBound(index);
+            boolean shown = row < m_filteredCount && m_filteredIndexes[row] == index;
+            if (shown) {
+                System.arraycopy(m_filteredIndexes, row + 1, m_filteredIndexes, row, m_filteredCount - row - 1);
+                m_filteredCount--;
+            }
+            // Close the gap left in the 'real' data.
+            for (int i = row; i < m_filteredCount; i++) {
+                m_filteredIndexes[i]--;
+            }
+            //NOTE: only needs a remove event if it was displayed
+            if (shown) {
+                fireIntervalRemoved(this, row, row);
+            }
         } else {
             // If no filter is set, just work over the 'real' data.
-            if (m_items.contains(e)) {
-                int index = m_items.indexOf(e);
-                m_items.remove(e);
-                fireIntervalRemoved(this, index, index);
-            }
+            fireIntervalRemoved(this, index, index);
         }
     }
 
@@ -200,34 +230,170 @@ public class SortableListModel<E extends Comparable<E>> extends AbstractListMode
         if (element == null) {
             return false;
         }
-        return m_items.contains(element);
+        return indexOf(element) >= 0;
     }
 
 
     /**
-     * Sets a new DataFilter on this model.  Providing a null filter clears the current filter.
+     * Sets a new DataFilter on this model.  Providing a null filter clears the current filter.  Only the rows which
+     * are hidden or revealed by the change are reported to listeners.
      * @param filter the filter to set, null clears out the existing filter.
      */
     public void setFilter(DataFilter<E> filter) {
-        m_filteredItems.clear();
-        if (filter != null) {
-            m_filter = filter;
-            for (E item : m_items) {
-                if (filter.accept(item)) {
-                    m_filteredItems.add(item);
+        // Work out which items were shown, and which are to be shown.
+        boolean[] wasShown = new boolean[m_items.size()];
+        if (m_filter != null) {
+            for (int i = 0; i < m_filteredCount; i++) {
+                wasShown[m_filteredIndexes[i]] = true;
+            }
+        } else {
+            Arrays.fill(wasShown, true);
+        }
+        boolean[] isShown = new boolean[m_items.size()];
+        int[] filteredIndexes = new int[filter != null ? m_items.size() : 0];
+        int filteredCount = 0;
+        for (int i = 0; i < m_items.size(); i++) {
+            isShown[i] = filter == null || filter.accept(m_items.get(i));
+            if (filter != null && isShown[i]) {
+                filteredIndexes[filteredCount++] = i;
+            }
+        }
+
+        // Hide the rows no longer shown, from the bottom up so the rows above keep their places.
+        m_filter = filter;
+        m_filteredIndexes = filteredIndexes;
+        m_filteredCount = filteredCount;
+        boolean[] rowIsRemoved = new boolean[m_items.size()];
+        int row = 0;
+        for (int i = 0; i < m_items.size(); i++) {
+            if (wasShown[i]) {
+                rowIsRemoved[row++] = !isShown[i];
+            }
+        }
+        fireRuns(rowIsRemoved, row, false);
+
+        // Then reveal the rows newly shown, from the top down.
+        boolean[] rowIsAdded = new boolean[m_items.size()];
+        row = 0;
+        for (int i = 0; i < m_items.size(); i++) {
+            if (isShown[i]) {
+                rowIsAdded[row++] = !wasShown[i];
+            }
+        }
+        fireRuns(rowIsAdded, row, true);
+    }
+
+    /**
+     * Fires one added or removed interval event for each run of marked rows.  Added runs are fired from the top down,
+     * and removed runs from the bottom up, so that each event's rows are where the earlier events left them.
+     * @param marked which rows were added or removed.
+     * @param rows the number of rows to look at.
+     * @param added true to fire added intervals, false to fire removed ones.
+     */
+    private void fireRuns(boolean[] marked, int rows, boolean added) {
+        if (added) {
+            int start = -1;
+            for (int i = 0; i <= rows; i++) {
+                if (i < rows && marked[i]) {
+                    if (start < 0) {
+                        start = i;
+                    }
+                } else if (start >= 0) {
+                    fireIntervalAdded(this, start, i - 1);
+                    start = -1;
                 }
             }
-            fireContentsChanged(this, 0, m_filteredItems.size() - 1);
         } else {
-            m_filter = null;
-            if (m_sort) {
-                if (m_comparator != null) {
-                    Collections.sort(m_items, m_comparator);
-                } else {
-                    Collections.sort(m_items);
+            int end = -1;
+            for (int i = rows - 1; i >= -1; i--) {
+                if (i >= 0 && marked[i]) {
+                    if (end < 0) {
+                        end = i;
+                    }
+                } else if (end >= 0) {
+                    fireIntervalRemoved(this, i + 1, end);
+                    end = -1;
                 }
             }
-            fireContentsChanged(this, 0, m_items.size() - 1);
+        }
+    }
+
+    /**
+     * Returns the index of the supplied element in the 'real' data.  When sorting, the element is found by binary
+     * search among the items which compare equal to it, falling back on a scan should the items have changed order.
+     * @param e the Element to find.
+     * @return the index of an item equal to the element, or -1 if there is none.
+     */
+    private int indexOf(E e) {
+        if (m_sort) {
+            int end = upperBound(e);
+            for (int i = end - 1; i >= 0 && compare(m_items.get(i), e) == 0; i--) {
+                if (m_items.get(i).equals(e)) {
+                    return i;
+                }
+            }
+        }
+        return m_items.indexOf(e);
+    }
+
+    /**
+     * Returns the index after the last item which sorts at or before the supplied element.
+     * @param e the Element.
+     * @return the index to add the element at.
+     */
+    private int upperBound(E e) {
+        int low = 0;
+        int high = m_items.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(m_items.get(mid), e) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the first row of the filtered view showing an item at or after the supplied index of the 'real' data.
+     * @param index the index in the 'real' data.
+     * @return the row.
+     */
+    private int lowerBound(int index) {
+        int low = 0;
+        int high = m_filteredCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (m_filteredIndexes[mid] < index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares two elements with the comparator, if set, or else their natural order.
+     * @param e1 the first Element.
+     * @param e2 the second Element.
+     * @return a negative integer, zero, or a positive integer as the first element sorts before, with or after the
+     * second.
+     */
+    private int compare(E e1, E e2) {
+        return m_comparator != null ? m_comparator.compare(e1, e2) : e1.compareTo(e2);
+    }
+
+    /**
+     * Sorts a list with the comparator, if set, or else its natural order.
+     * @param items the list to sort.
+     */
+    private void sort(List<E> items) {
+        if (m_comparator != null) {
+            Collections.sort(items, m_comparator);
+        } else {
+            Collections.sort(items);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package campaignencyclopedia.display.swing.action;
+
+import campaignencyclopedia.data.Campaign;
+import campaignencyclopedia.data.CampaignDataManager;
+import campaignencyclopedia.display.UserDisplay;
+import campaignencyclopedia.display.swing.ConfigureSortPrefixesDialogContent;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import javax.swing.AbstractAction;
+import toolbox.display.dialog.DialogCommitManager;
+import toolbox.display.dialog.DialogFactory;
+import toolbox.display.dialog.OkCancelCommitManager;
+
+/**
+ * An action for configuring the leading words ignored when sorting Entity names in this campaign.
+ * @author adam
+ */
+public class ConfigureSortPrefixesAction extends AbstractAction {
+
+    private final Frame m_parent;
+    private final CampaignDataManager m_cdm;
+    private final UserDisplay m_display;
+
+    /**
+     * Creates a new ConfigureSortPrefixesAction.
+     * @param parent the parent window, used for positioning dialogs launched by this action.
+     * @param cdm the Campaign Data Manager.
+     * @param display the UserDisplay to refresh with the resorted campaign.
+     */
+    public ConfigureSortPrefixesAction(Frame parent, CampaignDataManager cdm, UserDisplay display) {
+        super("Configure Sorting...");
+        if (cdm == null) {
+            throw new IllegalArgumentException("Parameter 'cdm' can't be null.");
+        }
+        if (display == null) {
+            throw new IllegalArgumentException("Parameter 'display' can't be null.");
+        }
+        if (parent == null) {
+            throw new IllegalArgumentException("Parameter 'parent' can't be null.");
+        }
+        m_parent = parent;
+        m_cdm = cdm;
+        m_display = display;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void actionPerformed(ActionEvent ae) {
+        final ConfigureSortPrefixesDialogContent dc = new ConfigureSortPrefixesDialogContent(m_cdm.getData().getSortPrefixes());
+        Runnable ok = new Runnable() {
+            @Override
+            public void run() {
+                // Re-set the whole campaign so that every sorted view is rebuilt under the new prefixes.
+                Campaign original = m_cdm.getData();
+                Campaign campaign = new Campaign(original.getName(), original.getEntities(), original.getAllRelationships(), original.getTimelineEntries(), original.getCalendar(), dc.getPrefixes());
+                DisplayCampaignHelper.displayCampaign(m_display, m_cdm, campaign);
+                SaveHelper.autosave(m_parent, m_cdm, true);
+            }
+        };
+        DialogCommitManager dcm = new OkCancelCommitManager(ok);
+        DialogFactory.buildDialog(m_parent, "Configure Sorting", true, dc, dcm);
+    }
+}
@@ -8,9 +8,7 @@ import campaignencyclopedia.data.TimelineEntry;
 import campaignencyclopedia.display.UserDisplay;
 import java.awt.Frame;
 import java.awt.event.ActionEvent;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import javax.swing.AbstractAction;
@@ -51,78 +49,67 @@ public class DeleteEntityAction extends AbstractAction {
             public void run() {
                 UUID id = m_entity.getId();
                 Entity toDelete = m_cdm.getEntity(id);
-                List<Entity> toBeUpdated = new ArrayList<>();
-                boolean updateRequired = false;
 
                 String message = "Are you sure you want to delete '" + toDelete.getName() + "' from your campaign?";
                 int result = JOptionPane.showConfirmDialog(m_parent, message, "Are you sure?", JOptionPane.YES_NO_OPTION);
                 if (result == JOptionPane.YES_OPTION) {
-                    // Remove from backing data structures and display
-                    m_cdm.removeEntity(id);
-                    m_display.removeEntity(m_entity);
-                    if (m_display.getShownEntity() != null && m_display.getShownEntity().equals(id)) {
-                        m_display.clearDisplayedEntity();
-                    }
-
                     // Figure out what other Entities are affected by this removal (those which have Relationships with
-                    // the one being removed, for instance).
-                    for (Entity entity : m_cdm.getAllEntities()) {
-                        updateRequired = false;
-                        RelationshipManager relManager = m_cdm.getRelationshipsForEntity(entity.getId());
-
-                        Set<Relationship> pubRels = relManager.getPublicRelationships();
-                        Set<Relationship> secRels = relManager.getSecretRelationships();
-
-                        Set<Relationship> filteredPublicRels = filterRelationships(id, pubRels);
-                        Set<Relationship> filteredSecretRels = filterRelationships(id, secRels);
-
-                        // Check Public Data
-                        if (pubRels.size() != filteredPublicRels.size()) {
-                            updateRequired = true;
-                        }
-                        if (secRels.size() != filteredSecretRels.size()) {
-                            updateRequired = true;
+                    // the one being removed), using only the removed Entity's own and inbound relationships.
+                    Set<UUID> toBeUpdated = new HashSet<>();
+                    RelationshipManager relManager = m_cdm.getRelationshipsForEntity(id);
+                    if (relManager != null) {
+                        collectOtherEnds(id, relManager.getAllRelationships(), toBeUpdated);
+                    }
+                    collectOtherEnds(id, m_cdm.getInboundRelationships(id), toBeUpdated);
+
+                    // Batch the removal so listeners hear about each affected Entity and entry only once.
+                    m_cdm.beginBatch();
+                    try {
+                        // Remove from backing data structures and display, the data manager drops the relationships.
+                        m_cdm.removeEntity(id);
+                        m_display.removeEntity(m_entity);
+                        if (m_display.getShownEntity() != null && m_display.getShownEntity().equals(id)) {
+                            m_display.clearDisplayedEntity();
                         }
 
-                        if (updateRequired) {
-                            relManager.clear();
-                            relManager.addAllRelationships(secRels);
-                            relManager.addAllRelationships(pubRels);
+                        // --- Update the Entities that have changed due to this Entity being removed.
+                        for (UUID otherId : toBeUpdated) {
+                            Entity entity = m_cdm.getEntity(otherId);
+                            if (entity != null) {
+                                m_cdm.addOrUpdateEntity(entity);
+                            }
                         }
-                    }
-                    // --- Update the Entities that have changed due to this Entity being removed.
-                    for (Entity entity : toBeUpdated) {
-                        m_cdm.addOrUpdateEntity(entity);
-                    }
 
 
-                    // Finally, remove any timeline entries assoiciated with the Entity.
-                    for (TimelineEntry entry : m_cdm.getTimelineData()) {
-                        if (entry.getAssociatedId().equals(m_entity.getId())) {
+                        // Finally, remove any timeline entries assoiciated with the Entity.
+                        for (TimelineEntry entry : m_cdm.getTimelineEntriesFor(id)) {
                             m_cdm.removeTimelineEntry(entry.getId());
                         }
+                    } finally {
+                        m_cdm.commit();
                     }
 
-                    // Then Save.
-                    SaveHelper.autosave(m_parent, m_cdm, updateRequired);
+                    // Then Save.  Always includes secret data.
+                    SaveHelper.autosave(m_parent, m_cdm, true);
                 }
             }
         }).run();
     }
 
     /**
-     * Filters the relationships.
+     * Collects the IDs at the other end of each of the supplied relationships.
      * @param entity the Entity ID of the entity being deleted.
-     * @param relationships the relationships to check for links to the ID of the Entity being deleted.
-     * @return all relationships that don't link up to the ID of the Entity being deleted.
+     * @param relationships the relationships touching the Entity being deleted.
+     * @param otherEnds the Set to add the IDs of the other Entities to.
      */
-    private Set<Relationship> filterRelationships(UUID entity, Set<Relationship> relationships) {
-        Set<Relationship> rels = new HashSet<>();
+    private void collectOtherEnds(UUID entity, Set<Relationship> relationships, Set<UUID> otherEnds) {
         for (Relationship r : relationships) {
+            if (!r.getEntityId().equals(entity)) {
+                otherEnds.add(r.getEntityId());
+            }
             if (!r.getRelatedEntity().equals(entity)) {
-                rels.add(r);
+                otherEnds.add(r.getRelatedEntity());
             }
         }
-        return rels;
     }
 }
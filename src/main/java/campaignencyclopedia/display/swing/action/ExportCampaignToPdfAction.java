@@ -2,9 +2,9 @@ package campaignencyclopedia.display.swing.action;
 
 import campaignencyclopedia.data.Campaign;
 import campaignencyclopedia.data.CampaignDataManager;
+import campaignencyclopedia.data.CampaignDate;
 import campaignencyclopedia.data.Entity;
 import campaignencyclopedia.data.EntityData;
-import campaignencyclopedia.data.Month;
 import campaignencyclopedia.data.TimelineEntry;
 import campaignencyclopedia.display.swing.MainDisplay;
 import java.awt.Frame;
@@ -18,7 +18,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFileChooser;
@@ -165,22 +164,22 @@ public class ExportCampaignToPdfAction extends AbstractExtractToPdfAction {
     private void exportTimeline(Pdf pdf) throws IOException {
         pdf.renderLine("Campaign Timeline", PdfFont.HELVETICA_BOLD, SECTION);
         pdf.insertBlankLine(SECTION);
-        Map<TimelineDate, List<TimelineEntry>> timeline = new HashMap<>();
+        Map<CampaignDate, List<TimelineEntry>> timeline = new HashMap<>();
         for (TimelineEntry tle : m_cdm.getTimelineData()) {
             // If secret and secrets not permitted, skip it.
             if (tle.isSecret() && !m_includeSecrets) {
                 continue;
             }
-            TimelineDate tld = new TimelineDate(tle.getMonth(), tle.getYear());
-            if (timeline.get(tld) == null) {
-                timeline.put(tld, new ArrayList<TimelineEntry>());
+            CampaignDate date = tle.getDate();
+            if (timeline.get(date) == null) {
+                timeline.put(date, new ArrayList<TimelineEntry>());
             }
-            timeline.get(tld).add(tle);
+            timeline.get(date).add(tle);
         }
-        List<TimelineDate> timelineDates = new ArrayList<>(timeline.keySet());
+        List<CampaignDate> timelineDates = new ArrayList<>(timeline.keySet());
         Collections.sort(timelineDates);
-        for (TimelineDate date : timelineDates) {
-            pdf.renderLine(date.month.getName() + " " + date.year, PdfFont.HELVETICA_BOLD);
+        for (CampaignDate date : timelineDates) {
+            pdf.renderLine(date.toString(), PdfFont.HELVETICA_BOLD);
             List<TimelineEntry> entries = timeline.get(date);
             Collections.sort(entries);
             for (TimelineEntry tle : entries) {
@@ -201,53 +200,4 @@ public class ExportCampaignToPdfAction extends AbstractExtractToPdfAction {
         }
         pdf.insertPageBreak();
     }
-
-    /** A Helper class for organizing timeline data for PDF rendering. */
-    private class TimelineDate implements Comparable<TimelineDate> {
-        private final Month month;
-        private final int year;
-
-        private TimelineDate(Month m, int y) {
-            month = m;
-            year = y;
-        }
-
-        @Override
-        public int hashCode() {
-            int hash = 5;
-            hash = 67 * hash + Objects.hashCode(this.month);
-            hash = 67 * hash + this.year;
-            return hash;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final TimelineDate other = (TimelineDate) obj;
-            if (!Objects.equals(this.month, other.month)) {
-                return false;
-            }
-            if (this.year != other.year) {
-                return false;
-            }
-            return true;
-        }
-
-        /** {@Override} */
-        @Override
-        public int compareTo(TimelineDate t) {
-            // Compare by Year
-            if (year > t.year) {
-                return 1;
-            } else if (year < t.year) {
-                return -1;
-            }
-            return (month.compareTo(t.month));
-        }
-    }
 }
\ No newline at end of file
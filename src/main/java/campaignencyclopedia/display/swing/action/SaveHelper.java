@@ -6,6 +6,13 @@ import campaignencyclopedia.data.persistence.CampaignTranslator;
 import java.awt.Frame;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFileChooser;
@@ -22,6 +29,39 @@ public class SaveHelper {
     /** Logger. */
     private static final Logger LOGGER = Logger.getLogger(SaveHelper.class.getName());
 
+    /** How long the application waits on exit for autosaves still being written, in seconds. */
+    private static final long EXIT_WAIT_SECONDS = 30;
+
+    /**
+     * Writes autosaves in the background, one at a time and in the order requested.  The application exits with
+     * System.exit, which does not wait for other threads, so a shutdown hook finishes any autosaves still queued.
+     */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Campaign Autosave");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Finish any queued autosaves when the application exits.
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                WRITER.shutdown();
+                try {
+                    if (!WRITER.awaitTermination(EXIT_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                        LOGGER.severe("Gave up waiting for the campaign autosave to finish.");
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "Campaign Autosave Shutdown"));
+    }
+
     /**
      * A helper function to save the campaign.  If a filename has been specified, this method simply uses it,
      * otherwise, 'save' will be called which will prompt the user for a destination file name.
@@ -50,17 +90,19 @@ public class SaveHelper {
         });
 
         if (chooser.showSaveDialog(parent) == JFileChooser.APPROVE_OPTION) {
+            // Take the snapshot here so that it is consistent, the writing can then happen alongside further edits.
+            final Campaign snapshot = cdm.getData();
             new Thread(new Runnable(){
                 @Override
                 public void run() {
                     try {
                         File selectedFile = chooser.getSelectedFile();
                         String path = selectedFile.getAbsolutePath().trim();
-                        String campaign = CampaignTranslator.toJson(cdm.getData(), cdm, includeSecrets);
+                        String campaign = CampaignTranslator.toJson(snapshot, cdm, includeSecrets);
                         if (!path.endsWith(".campaign")) {
                             path = path + ".campaign";
                         }
-                        FileTools.writeFile(path, campaign);
+                        writeCampaign(path, campaign);
                         cdm.setFileName(path);
                     } catch (IOException ex) {
                         LOGGER.log(Level.SEVERE, "Failed to save the campaign.", ex);
@@ -74,25 +116,51 @@ public class SaveHelper {
 
     /**
      * A helper function to autosave the campaign.  If a filename has been specified, this method simply uses it,
-     * otherwise, 'save' will be called which will prompt the user for a destination file name.
+     * otherwise, 'save' will be called which will prompt the user for a destination file name.  The campaign is
+     * snapshotted on the calling thread and written to file in the background, and any write still queued when the
+     * application exits is finished before it does.
      *
      * @param frame the top-level window to position dialogs launched by this static method when called.
      * @param cdm the CampaignDataManager to get the data to save from.
      * @param includeSecrets true if secrets should be included in the saved file resulting from this call, false if
      * they should not be included.
      */
-    public static void autosave(Frame frame, CampaignDataManager cdm, boolean includeSecrets) {
+    public static void autosave(Frame frame, final CampaignDataManager cdm, boolean includeSecrets) {
         if (cdm.getSaveFileName() != null) {
-            Campaign campaign = cdm.getData();
-            try {
-                FileTools.writeFile(cdm.getSaveFileName(), CampaignTranslator.toJson(campaign, cdm, true));
-            } catch (IOException ex) {
-                LOGGER.log(Level.SEVERE, "Failed to save campaign.", ex);
-            } catch (JsonException jex) {
-                LOGGER.log(Level.SEVERE, "Failed to translate the campaign.", jex);
-            }
+            final Campaign campaign = cdm.getData();
+            final String fileName = cdm.getSaveFileName();
+            WRITER.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        writeCampaign(fileName, CampaignTranslator.toJson(campaign, cdm, true));
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.SEVERE, "Failed to save campaign.", ex);
+                    } catch (JsonException jex) {
+                        LOGGER.log(Level.SEVERE, "Failed to translate the campaign.", jex);
+                    }
+                }
+            });
         } else {
             SaveHelper.save(frame, cdm, includeSecrets);
         }
     }
+
+    /**
+     * Writes the supplied campaign to a temporary file and moves it over the real one, so that the real file is never
+     * left half written.
+     * @param path the path of the campaign file.
+     * @param campaign the campaign, as JSON.
+     * @throws IOException if the campaign could not be written.
+     */
+    private static void writeCampaign(String path, String campaign) throws IOException {
+        File file = new File(path);
+        File temp = new File(path + ".tmp");
+        FileTools.writeFile(temp.getPath(), campaign);
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 }
\ No newline at end of file
@@ -1,17 +1,19 @@
 package campaignencyclopedia.display.swing.filtertree;
 
 import java.awt.Component;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Enumeration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import javax.swing.JTree;
 import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.ExpandVetoException;
-import javax.swing.tree.MutableTreeNode;
 import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 import javax.swing.tree.TreeSelectionModel;
@@ -19,6 +21,7 @@ import javax.swing.tree.TreeSelectionModel;
 import campaignencyclopedia.data.Entity;
 import campaignencyclopedia.data.EntityType;
 import campaignencyclopedia.data.EntityType.EntityDomain;
+import campaignencyclopedia.data.UUIDHashMap;
 import campaignencyclopedia.display.EntityDisplayFilter;
 import campaignencyclopedia.display.swing.ColoredDisplayableCellRenderer;
 
@@ -26,6 +29,12 @@ import campaignencyclopedia.display.swing.ColoredDisplayableCellRenderer;
  * This class represents the tree of all entities in the campaign, organized by {@link EntityDomain}
  * and {@link EntityType}. The items in this tree are sorted, and also filterable by
  * {@link EntityDisplayFilter} using the {@link #filterTree} method.
+ * <p>
+ * The entities themselves are kept in sorted lists, one per type, and the tree's
+ * {@link CampaignTreeModel} shows them without making a tree node for each, so the tree's cost
+ * depends on the rows on screen rather than the size of the campaign. A filter can be run over a
+ * {@link Snapshot} of those lists on another thread, leaving only the result to be applied on the
+ * event dispatch thread.
  *
  * @author Keith
  */
@@ -37,24 +46,26 @@ public class CampaignTree {
     private final JTree m_entityTree;
 
     /**
-     * Full, unfiltered, model for the entity tree as a complete backing data source.
+     * Model for the entity tree which only contains the items visible.
      */
-    private final SortableTreeModel m_entityTreeModel;
+    private final CampaignTreeModel m_visibleTreeModel;
 
     /**
-     * Model for the entity tree which only contains the items visible.
+     * The root node of the "visible" campaign tree structure.
      */
-    private final SortableTreeModel m_visibleTreeModel;
+    private final DefaultMutableTreeNode m_visibleCampaignRootNode;
 
     /**
-     * The original root node of the campaign.
+     * Every Entity in the tree, shown or not, by Entity ID.
      */
-    private final DefaultMutableTreeNode m_campaignRootNode;
+    private final Map<UUID, Entity> m_entities;
 
     /**
-     * The original root node of the "visible" campaign tree structure.
+     * Every Entity in the tree, shown or not, by type, each list sorted in tree order. The lists
+     * are replaced, never changed, once they are in the map, so that a {@link Snapshot} of them can
+     * be filtered on another thread.
      */
-    private final DefaultMutableTreeNode m_visibleCampaignRootNode;
+    private final Map<EntityType, List<Entity>> m_entitiesByType;
 
     /**
      * The entity filter applied to this campaign tree.
@@ -67,18 +78,23 @@ public class CampaignTree {
      */
     public CampaignTree() {
         //Make the root node and model
-        m_campaignRootNode = new DefaultMutableTreeNode("Campaign Elements");
         m_visibleCampaignRootNode = new DefaultMutableTreeNode("Campaign Elements");
-        m_entityTreeModel = new SortableTreeModel(m_campaignRootNode);
-        m_visibleTreeModel = new SortableTreeModel(m_visibleCampaignRootNode);
+        m_visibleTreeModel = new CampaignTreeModel(m_visibleCampaignRootNode);
+
+        m_entities = new UUIDHashMap<>();
+        m_entitiesByType = new EnumMap<>(EntityType.class);
+        for (EntityType type : EntityType.values()) {
+            m_entitiesByType.put(type, new ArrayList<Entity>());
+        }
 
         //Fill out the model with the default type/domain nodes
-        createDefaultEntityTreeNodes(m_campaignRootNode);
         createDefaultEntityTreeNodes(m_visibleCampaignRootNode);
 
         //Make the tree itself
         m_entityTree = new JTree(m_visibleTreeModel);
         m_entityTree.setRowHeight(30);
+        //Rows are all the same height, so the tree need only ask the model for the rows on screen
+        m_entityTree.setLargeModel(true);
         m_entityTree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
         m_entityTree.setExpandsSelectedPaths(true);
         m_entityTree.setScrollsOnExpand(true);
@@ -121,7 +137,7 @@ public class CampaignTree {
      * @param e The entity to select.
      */
     public void selectEntity(Entity e) {
-        TreePath path = findThingInTree(m_visibleTreeModel, e);
+        TreePath path = e == null ? null : findEntityInTree(e);
         m_entityTree.setSelectionPath(path);
         m_entityTree.scrollPathToVisible(path);
     }
@@ -147,11 +163,8 @@ public class CampaignTree {
         Entity selectedEntity = null;
         TreePath path = m_entityTree.getSelectionPath();
 
-        if (path != null) {
-            Object userObject = ((DefaultMutableTreeNode) path.getLastPathComponent()).getUserObject();
-            if (userObject instanceof Entity) {
-                selectedEntity = (Entity) userObject;
-            }
+        if (path != null && path.getLastPathComponent() instanceof Entity) {
+            selectedEntity = (Entity) path.getLastPathComponent();
         }
 
         return selectedEntity;
@@ -167,7 +180,9 @@ public class CampaignTree {
     }
 
     /**
-     * Inserts all of the provided entities into the tree's underlying model.
+     * Inserts all of the provided entities into the tree's underlying model. Large numbers of
+     * entities, such as a whole campaign being opened, are inserted in bulk, with a single event per
+     * type node rather than one per entity.
      *
      * @param entities The collection of entities to insert.
      */
@@ -190,12 +205,31 @@ public class CampaignTree {
      * @param entities The collection of entities to remove.
      */
     public void removeEntities(Collection<Entity> entities) {
+        //The lists may be held by snapshots, so each type changed is copied once and replaced
+        Map<EntityType, List<Entity>> changed = new EnumMap<>(EntityType.class);
         for (Entity entity : entities) {
-            //Remove from both models.  Don't need to check if it exists or for filtering, since call
-            //is ignored if entity not found one of the models.
-            removeEntityFromTree(m_entityTreeModel, entity);
-            removeEntityFromTree(m_visibleTreeModel, entity);
+            //Find the entity as the tree holds it, ignoring the call if it is not there
+            Entity stored = m_entities.remove(entity.getId());
+            if (stored == null) {
+                continue;
+            }
+            List<Entity> ofType = changed.get(stored.getType());
+            if (ofType == null) {
+                ofType = new ArrayList<>(m_entitiesByType.get(stored.getType()));
+                changed.put(stored.getType(), ofType);
+            }
+            int index = CampaignTreeModel.indexOf(ofType, stored);
+            if (index >= 0) {
+                ofType.remove(index);
+            }
+
+            //Remove from the visible model too, which ignores it if it is not shown
+            DefaultMutableTreeNode visibleEntityTypeNode = findVisibleTypeNode(stored.getType(), false);
+            if (visibleEntityTypeNode != null) {
+                m_visibleTreeModel.removeEntity(visibleEntityTypeNode, stored);
+            }
         }
+        m_entitiesByType.putAll(changed);
     }
 
     /**
@@ -204,15 +238,16 @@ public class CampaignTree {
      */
     public void clear() {
         //Clear out the original backing data
-        DefaultMutableTreeNode root = ((DefaultMutableTreeNode) m_entityTreeModel.getRoot());
-        root.removeAllChildren();
-        createDefaultEntityTreeNodes(root);
-        m_entityTreeModel.reload();
+        m_entities.clear();
+        for (EntityType type : EntityType.values()) {
+            m_entitiesByType.put(type, new ArrayList<Entity>());
+        }
 
         //Clear out the visible data
         DefaultMutableTreeNode visRoot = ((DefaultMutableTreeNode) m_visibleTreeModel.getRoot());
         visRoot.removeAllChildren();
         createDefaultEntityTreeNodes(visRoot);
+        m_visibleTreeModel.clearEntities();
         m_visibleTreeModel.reload();
         
         expandDomainNodes(true);
@@ -266,129 +301,245 @@ public class CampaignTree {
      * Creates the tree nodes for the entities in the entity tree based on entity domain, type, and
      * the entities themselves.
      *
-     * @param top Root node of the campaign.
      * @param entities List of entities to place in the tree.
      */
     private void insertEntityTreeNodes(Collection<Entity> entities) {
+        //Group the entities by type, since each type is inserted under its own node
+        Map<EntityType, List<Entity>> entitiesByType = new EnumMap<>(EntityType.class);
         for (Entity e : entities) {
-            //Get entity type for categorization
-            EntityType type = e.getType();
+            List<Entity> ofType = entitiesByType.get(e.getType());
+            if (ofType == null) {
+                ofType = new ArrayList<>();
+                entitiesByType.put(e.getType(), ofType);
+            }
+            ofType.add(e);
+            m_entities.put(e.getId(), e);
+        }
 
-            //Find the appropriate type node and insert there
-            DefaultMutableTreeNode entityTypeNode = (DefaultMutableTreeNode) findThingInTree(m_entityTreeModel, type).getLastPathComponent();
-            DefaultMutableTreeNode entityNode = new DefaultMutableTreeNode(e);
-            m_entityTreeModel.insertNodeInto(entityNode, entityTypeNode);
+        for (Map.Entry<EntityType, List<Entity>> entry : entitiesByType.entrySet()) {
+            List<Entity> ofType = new ArrayList<>(m_entitiesByType.get(entry.getKey()));
+            CampaignTreeModel.addSorted(ofType, entry.getValue());
+            m_entitiesByType.put(entry.getKey(), ofType);
 
             //Check filter and insert into visible model as well if it passes (or if there was no filter at all).
-            if (m_filter == null || m_filter.accept(e)) {
-                DefaultMutableTreeNode visibleEntityTypeNode = (DefaultMutableTreeNode) findThingInTree(m_visibleTreeModel, type).getLastPathComponent();
-                DefaultMutableTreeNode visibleEntityNode = new DefaultMutableTreeNode(e);
-                m_visibleTreeModel.insertNodeInto(visibleEntityNode, visibleEntityTypeNode);
+            List<Entity> visibleEntities = new ArrayList<>(entry.getValue().size());
+            for (Entity e : entry.getValue()) {
+                if (m_filter == null || m_filter.accept(e)) {
+                    visibleEntities.add(e);
+                }
+            }
+            if (!visibleEntities.isEmpty()) {
+                //The tree drops the selection under a node whose structure changed, so put it back
+                TreePath selectionPath = m_entityTree.getSelectionPath();
+                m_visibleTreeModel.insertEntities(findVisibleTypeNode(entry.getKey(), true), visibleEntities);
+                if (selectionPath != null && m_entityTree.getSelectionPath() == null) {
+                    m_entityTree.setSelectionPath(selectionPath);
+                }
             }
         }
     }
 
     /**
-     * Finds a particular Entity-related or node-related Thing in the tree and returns its path.
+     * Returns the path to an entity in the visible model.
      *
-     * @param model The root of the tree to search
-     * @param t The EntityDomain, EntityType, or Entity to search for.
-     * @return The path to the provided content's node, or null if not found.
+     * @param e The entity to find.
+     * @return The path to the entity, or null if it is not in the tree or not shown.
      */
-    private TreePath findThingInTree(DefaultTreeModel model, Object t) {
-        @SuppressWarnings("unchecked")
-        Enumeration<TreeNode> e = ((DefaultMutableTreeNode) model.getRoot()).breadthFirstEnumeration();
-        while (e.hasMoreElements()) {
-            DefaultMutableTreeNode node = (DefaultMutableTreeNode)e.nextElement();
-            Object userObj = node.getUserObject();
-            if (userObj instanceof EntityType.EntityDomain) {
-                if (((EntityType.EntityDomain) userObj).equals(t)) {
-                    return new TreePath(node.getPath());
-                }
-            } else if (userObj instanceof EntityType) {
-                if (((EntityType) userObj).equals(t)) {
-                    return new TreePath(node.getPath());
-                }
-            } else if (userObj instanceof Entity) {
-                if (((Entity) userObj).equals(t)) {
-                    return new TreePath(node.getPath());
-                }
-            }
+    private TreePath findEntityInTree(Entity e) {
+        Entity stored = m_entities.get(e.getId());
+        if (stored == null || (m_filter != null && !m_filter.accept(stored))) {
+            return null;
+        }
+        DefaultMutableTreeNode visibleEntityTypeNode = findVisibleTypeNode(stored.getType(), false);
+        if (visibleEntityTypeNode == null || m_visibleTreeModel.getEntityIndex(stored) < 0) {
+            return null;
         }
-        return null;
+        return new TreePath(visibleEntityTypeNode.getPath()).pathByAddingChild(stored);
     }
 
     /**
-     * Finds the given entity in the tree and removes it from the tree's model. If the entity is not
-     * found in the tree, call is ignored.
+     * Returns the visible node of a type, optionally inserting it and its domain node if the filter
+     * had hidden them.
      *
-     * @param e The entity to remove.
+     * @param type The entity type.
+     * @param insert {@code true} to insert the node if it is missing.
+     * @return The visible type node, or null if it is missing and was not to be inserted.
      */
-    private void removeEntityFromTree(DefaultTreeModel model, Entity e) {
-        //Find the entity's path in the tree
-        TreePath pathToRemove = findThingInTree(model, e);
+    private DefaultMutableTreeNode findVisibleTypeNode(EntityType type, boolean insert) {
+        DefaultMutableTreeNode domainNode = findVisibleChild(m_visibleCampaignRootNode, type.getDomain(), insert);
+        return domainNode == null ? null : findVisibleChild(domainNode, type, insert);
+    }
 
-        //Remove the node at the end of the path from the tree if it was found
-        if (pathToRemove != null) {
-            model.removeNodeFromParent((MutableTreeNode) pathToRemove.getLastPathComponent());
+    /**
+     * Returns the visible child of a node holding a domain or type, optionally inserting it in
+     * declaration order if the filter had hidden it.
+     *
+     * @param parent The visible parent node.
+     * @param value The EntityDomain or EntityType held by the child.
+     * @param insert {@code true} to insert the child if it is missing.
+     * @return The visible child, or null if it is missing and was not to be inserted.
+     */
+    private DefaultMutableTreeNode findVisibleChild(DefaultMutableTreeNode parent, Enum<?> value, boolean insert) {
+        //Domain and type nodes are kept in declaration order, so walk them to find the node, or where it belongs
+        int index = 0;
+        while (index < parent.getChildCount()) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode) parent.getChildAt(index);
+            Enum<?> childValue = (Enum<?>) child.getUserObject();
+            if (childValue == value) {
+                return child;
+            }
+            if (childValue.ordinal() > value.ordinal()) {
+                break;
+            }
+            index++;
+        }
+        if (!insert) {
+            return null;
         }
+        DefaultMutableTreeNode child = new DefaultMutableTreeNode(value);
+        m_visibleTreeModel.insertNodeInto(child, parent, index);
+        return child;
     }
 
     /**
-     * Applies the entity display filter to the leaf nodes of the tree. This creates a duplicate
-     * series of nodes and sets them in the visible model. The core model remains unchanged.
+     * Returns a snapshot of every Entity in the tree, which may be filtered on any thread. Taking
+     * it costs the same however many Entities there are.
      *
-     * @param filter
+     * @return A snapshot of the Entities in the tree.
      */
-    public void filterTree(EntityDisplayFilter filter) {
-        //Store the filter being used
-        this.m_filter = filter;
-
-        //Rebuild the tree for display based on the filter
-        DefaultMutableTreeNode newRootNode = matchAndBuildNode(m_campaignRootNode);
-        m_visibleTreeModel.setRoot(newRootNode);
-
-        //Reload model and expand the tree's nodes
-        m_visibleTreeModel.reload();
-        JTreeUtil.setTreeExpandedState(m_entityTree, true);
+    public Snapshot getSnapshot() {
+        return new Snapshot(new EnumMap<>(m_entitiesByType));
     }
 
     /**
-     * Recursively examines the tree, matching nodes against the current filter, to clone a new
-     * model for display.
+     * Applies the result of filtering a snapshot to the tree. The visible model is brought in line
+     * with the result in place, so only the nodes whose visibility changed are inserted or removed,
+     * and the selection, scroll position and expansion of the rest are kept. The core model
+     * remains unchanged. No Entity is checked against the filter here, so the time taken depends
+     * on the Entities shown rather than the size of the campaign.
      *
-     * @param oldNode The root node to start matching and cloning from.
-     * @return A cloned tree comprised of the content from the original nodes which passed the
-     * filter.
+     * @param result The result of filtering a snapshot of this tree.
+     * @return {@code true} if the result was applied, or {@code false} if Entities have been
+     * inserted or removed since the snapshot was taken, and the filter must be run again.
      */
-    private DefaultMutableTreeNode matchAndBuildNode(DefaultMutableTreeNode oldNode) {
-        //If there is no filter, then just clone the whole tree.
-        if (m_filter == null) {
-            return JTreeUtil.cloneNode(oldNode);
+    public boolean filterTree(FilterResult result) {
+        for (EntityType type : EntityType.values()) {
+            if (result.m_entitiesByType.get(type) != m_entitiesByType.get(type)) {
+                return false;
+            }
         }
 
-        //If there is a filter, and if the object is an Entity match, clone and return it!
-        Object userObject = oldNode.getUserObject();
-        if (userObject instanceof Entity) {
-            Entity entityObject = (Entity) userObject;
-            //If there is either no filter, or the tree is filtered and this node passes the filter
-            if (m_filter == null || (!oldNode.isRoot() && m_filter.accept(entityObject))) {
-                return JTreeUtil.cloneNode(oldNode);
+        //Store the filter being used, for Entities inserted from now on
+        this.m_filter = result.m_filter;
+
+        List<DefaultMutableTreeNode> nodesToExpand = new ArrayList<>();
+        for (EntityType type : EntityType.values()) {
+            List<Entity> matches = result.m_matches.get(type);
+
+            //Type nodes are always shown without a filter, and otherwise only while they have matches
+            boolean showType = result.m_filter == null || !matches.isEmpty();
+            DefaultMutableTreeNode visibleEntityTypeNode = findVisibleTypeNode(type, showType);
+            if (visibleEntityTypeNode == null) {
+                continue;
+            }
+            if (m_visibleTreeModel.setEntities(visibleEntityTypeNode, matches)) {
+                nodesToExpand.add(visibleEntityTypeNode);
+            }
+            if (!showType) {
+                DefaultMutableTreeNode domainNode = (DefaultMutableTreeNode) visibleEntityTypeNode.getParent();
+                m_visibleTreeModel.removeNodeFromParent(visibleEntityTypeNode);
+                if (domainNode.getChildCount() == 0) {
+                    m_visibleTreeModel.removeNodeFromParent(domainNode);
+                }
             }
         }
 
-        //Otherwise not a match, continue searching down the tree
-        DefaultMutableTreeNode newMatchedNode = oldNode.isRoot() ? new DefaultMutableTreeNode(oldNode.getUserObject()) : null;
-        for (TreeNode childOldNode : JTreeUtil.children(oldNode)) {
-            DefaultMutableTreeNode mutableChild = (DefaultMutableTreeNode) childOldNode;
-            DefaultMutableTreeNode newMatchedChildNode = matchAndBuildNode(mutableChild);
-            if (newMatchedChildNode != null) {
-                if (newMatchedNode == null) {
-                    newMatchedNode = new DefaultMutableTreeNode(oldNode.getUserObject());
+        //Show anything newly matched
+        for (DefaultMutableTreeNode node : nodesToExpand) {
+            m_entityTree.expandPath(new TreePath(node.getPath()));
+        }
+        return true;
+    }
+
+    /**
+     * The Entities of a campaign tree by type, as they were when the snapshot was taken. The
+     * snapshot is never changed, so it may be filtered on any thread.
+     */
+    public static final class Snapshot {
+
+        /**
+         * The Entities of each type, sorted in tree order. The lists are shared with the tree,
+         * which replaces rather than changes them.
+         */
+        private final Map<EntityType, List<Entity>> m_entitiesByType;
+
+        /**
+         * Creates a new Snapshot.
+         *
+         * @param entitiesByType The Entities of each type, not to be changed from now on.
+         */
+        private Snapshot(Map<EntityType, List<Entity>> entitiesByType) {
+            m_entitiesByType = entitiesByType;
+        }
+
+        /**
+         * Checks every Entity in the snapshot against a filter. This may be called on any thread.
+         *
+         * @param filter The filter to apply, or null to show every Entity.
+         * @return The Entities of each type which pass the filter, ready to apply to the tree.
+         */
+        public FilterResult filter(EntityDisplayFilter filter) {
+            Map<EntityType, List<Entity>> matches = new EnumMap<>(EntityType.class);
+            for (Map.Entry<EntityType, List<Entity>> entry : m_entitiesByType.entrySet()) {
+                if (filter == null) {
+                    matches.put(entry.getKey(), entry.getValue());
+                } else {
+                    List<Entity> ofType = new ArrayList<>();
+                    for (Entity e : entry.getValue()) {
+                        if (filter.accept(e)) {
+                            ofType.add(e);
+                        }
+                    }
+                    matches.put(entry.getKey(), ofType);
                 }
-                newMatchedNode.add(newMatchedChildNode);
             }
+            return new FilterResult(m_entitiesByType, filter, matches);
+        }
+    }
+
+    /**
+     * The Entities of each type in a {@link Snapshot} which pass a filter, in tree order.
+     */
+    public static final class FilterResult {
+
+        /**
+         * The Entities of each type in the snapshot filtered, to tell whether the tree has changed
+         * since.
+         */
+        private final Map<EntityType, List<Entity>> m_entitiesByType;
+
+        /**
+         * The filter applied, or null if every Entity is shown.
+         */
+        private final EntityDisplayFilter m_filter;
+
+        /**
+         * The Entities of each type which passed the filter, sorted in tree order.
+         */
+        private final Map<EntityType, List<Entity>> m_matches;
+
+        /**
+         * Creates a new FilterResult.
+         *
+         * @param entitiesByType The Entities of each type in the snapshot filtered.
+         * @param filter The filter applied, or null if every Entity is shown.
+         * @param matches The Entities of each type which passed the filter.
+         */
+        private FilterResult(Map<EntityType, List<Entity>> entitiesByType, EntityDisplayFilter filter,
+                             Map<EntityType, List<Entity>> matches) {
+            m_entitiesByType = entitiesByType;
+            m_filter = filter;
+            m_matches = matches;
         }
-        return newMatchedNode;
     }
 }
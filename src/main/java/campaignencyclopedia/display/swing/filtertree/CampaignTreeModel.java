@@ -0,0 +1,308 @@
+package campaignencyclopedia.display.swing.filtertree;
+
+import campaignencyclopedia.data.Entity;
+import campaignencyclopedia.data.EntityType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
+
+/**
+ * The model of the campaign tree. The root, domain and type nodes are ordinary tree nodes, but the
+ * Entities under each type node are not wrapped in nodes at all: each type node's Entities are kept
+ * in a sorted list, and the Entities themselves are handed to the tree as its leaves. The tree only
+ * asks for the children of expanded nodes, and with a fixed row height only for the rows it is
+ * painting, so nothing is built per Entity beyond a reference in the list.
+ *
+ * @author Keith
+ */
+public class CampaignTreeModel extends DefaultTreeModel {
+
+    /**
+     * The number of Entities inserted together under one type node above which they are sorted and
+     * merged in at once, rather than inserted one by one.
+     */
+    private static final int BULK_INSERT_THRESHOLD = 32;
+
+    /**
+     * Orders Entities by their sort keys, falling back on their IDs so that Entities with the same
+     * name always sort the same way.
+     */
+    public static final Comparator<Entity> ENTITY_ORDER = new Comparator<Entity>() {
+        @Override
+        public int compare(Entity e1, Entity e2) {
+            int comparison = e1.compareTo(e2);
+            if (comparison == 0) {
+                comparison = e1.getId().compareTo(e2.getId());
+            }
+            return comparison;
+        }
+    };
+
+    /**
+     * The Entities shown under each type node, sorted by {@link #ENTITY_ORDER}.
+     */
+    private final Map<EntityType, List<Entity>> m_entities;
+
+    /**
+     * Creates an instance of the model with no Entities.
+     *
+     * @param root Root node of the model.
+     */
+    public CampaignTreeModel(TreeNode root) {
+        super(root);
+        m_entities = new EnumMap<>(EntityType.class);
+        for (EntityType type : EntityType.values()) {
+            m_entities.put(type, new ArrayList<Entity>());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object getChild(Object parent, int index) {
+        List<Entity> entities = getEntitiesUnder(parent);
+        return entities != null ? entities.get(index) : super.getChild(parent, index);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getChildCount(Object parent) {
+        if (parent instanceof Entity) {
+            return 0;
+        }
+        List<Entity> entities = getEntitiesUnder(parent);
+        return entities != null ? entities.size() : super.getChildCount(parent);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        List<Entity> entities = getEntitiesUnder(parent);
+        if (entities != null) {
+            return child instanceof Entity ? indexOf(entities, (Entity) child) : -1;
+        }
+        return super.getIndexOfChild(parent, child);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isLeaf(Object node) {
+        if (node instanceof Entity) {
+            return true;
+        }
+        List<Entity> entities = getEntitiesUnder(node);
+        return entities != null ? entities.isEmpty() : super.isLeaf(node);
+    }
+
+    /**
+     * Returns the index of an Entity under its type node.
+     *
+     * @param entity The Entity to find.
+     * @return The index of the Entity, or -1 if it is not shown.
+     */
+    public int getEntityIndex(Entity entity) {
+        return indexOf(m_entities.get(entity.getType()), entity);
+    }
+
+    /**
+     * Inserts Entities under a type node. Large numbers of Entities are sorted once and merged in,
+     * with a single structure changed event for the type node rather than an event per Entity.
+     *
+     * @param typeNode The type node, which must be in the model.
+     * @param entities The Entities to insert, all of the type node's type.
+     */
+    public void insertEntities(DefaultMutableTreeNode typeNode, Collection<Entity> entities) {
+        List<Entity> shown = m_entities.get((EntityType) typeNode.getUserObject());
+        if (entities.size() > BULK_INSERT_THRESHOLD) {
+            addSorted(shown, entities);
+            nodeStructureChanged(typeNode);
+        } else {
+            for (Entity entity : entities) {
+                int index = insertionPoint(shown, entity);
+                shown.add(index, entity);
+                fireTreeNodesInserted(this, getPathToRoot(typeNode), new int[] {index}, new Object[] {entity});
+            }
+        }
+    }
+
+    /**
+     * Removes an Entity from under a type node. If the Entity is not shown, call is ignored.
+     *
+     * @param typeNode The type node, which must be in the model.
+     * @param entity The Entity to remove.
+     */
+    public void removeEntity(DefaultMutableTreeNode typeNode, Entity entity) {
+        List<Entity> shown = m_entities.get((EntityType) typeNode.getUserObject());
+        int index = indexOf(shown, entity);
+        if (index >= 0) {
+            shown.remove(index);
+            fireTreeNodesRemoved(this, getPathToRoot(typeNode), new int[] {index}, new Object[] {entity});
+        }
+    }
+
+    /**
+     * Replaces the Entities under a type node. Only the Entities which differ are reported to the
+     * model's listeners, with one event for those removed and one for those inserted, so time spent
+     * by the tree depends on how many Entities changed rather than how many there are.
+     *
+     * @param typeNode The type node, which must be in the model.
+     * @param entities The Entities to show, sorted by {@link #ENTITY_ORDER}. Copied, not kept.
+     * @return {@code true} if any Entities were inserted, {@code false} otherwise.
+     */
+    public boolean setEntities(DefaultMutableTreeNode typeNode, List<Entity> entities) {
+        List<Entity> shown = m_entities.get((EntityType) typeNode.getUserObject());
+
+        //Walk both sorted lists together, picking out the Entities only in one or the other
+        List<Entity> kept = new ArrayList<>(Math.min(shown.size(), entities.size()));
+        int[] removedIndices = new int[shown.size()];
+        int[] insertedIndices = new int[entities.size()];
+        int removedCount = 0;
+        int insertedCount = 0;
+        int o = 0;
+        int n = 0;
+        while (o < shown.size() || n < entities.size()) {
+            if (o < shown.size() && n < entities.size() && shown.get(o) == entities.get(n)) {
+                kept.add(shown.get(o++));
+                n++;
+            } else if (n == entities.size() || (o < shown.size() && ENTITY_ORDER.compare(shown.get(o), entities.get(n)) <= 0)) {
+                removedIndices[removedCount++] = o++;
+            } else {
+                insertedIndices[insertedCount++] = n++;
+            }
+        }
+
+        //Report the removals against the kept Entities, then the insertions against the new list
+        Object[] path = getPathToRoot(typeNode);
+        if (removedCount > 0) {
+            Object[] removed = new Object[removedCount];
+            for (int i = 0; i < removedCount; i++) {
+                removed[i] = shown.get(removedIndices[i]);
+            }
+            shown.clear();
+            shown.addAll(kept);
+            fireTreeNodesRemoved(this, path, trim(removedIndices, removedCount), removed);
+        }
+        if (insertedCount > 0) {
+            Object[] inserted = new Object[insertedCount];
+            for (int i = 0; i < insertedCount; i++) {
+                inserted[i] = entities.get(insertedIndices[i]);
+            }
+            shown.clear();
+            shown.addAll(entities);
+            fireTreeNodesInserted(this, path, trim(insertedIndices, insertedCount), inserted);
+        }
+        return insertedCount > 0;
+    }
+
+    /**
+     * Removes every Entity from the model without notifying listeners, for use just before the
+     * model is reloaded.
+     */
+    public void clearEntities() {
+        for (List<Entity> shown : m_entities.values()) {
+            shown.clear();
+        }
+    }
+
+    /**
+     * Returns the Entities shown under a node, if it is a type node.
+     *
+     * @param node The node.
+     * @return The Entities under the node, or null if it is not a type node.
+     */
+    private List<Entity> getEntitiesUnder(Object node) {
+        if (node instanceof DefaultMutableTreeNode) {
+            Object userObject = ((DefaultMutableTreeNode) node).getUserObject();
+            if (userObject instanceof EntityType) {
+                return m_entities.get((EntityType) userObject);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds Entities to a list sorted by {@link #ENTITY_ORDER}, keeping it sorted. Large numbers
+     * of Entities are sorted on their own and then merged in, rather than inserted one by one.
+     *
+     * @param sorted The sorted list to add to.
+     * @param entities The Entities to add.
+     */
+    static void addSorted(List<Entity> sorted, Collection<Entity> entities) {
+        if (entities.size() <= BULK_INSERT_THRESHOLD) {
+            for (Entity entity : entities) {
+                sorted.add(insertionPoint(sorted, entity), entity);
+            }
+            return;
+        }
+        List<Entity> added = new ArrayList<>(entities);
+        Collections.sort(added, ENTITY_ORDER);
+        List<Entity> merged = new ArrayList<>(sorted.size() + added.size());
+        int a = 0;
+        int s = 0;
+        while (a < added.size() || s < sorted.size()) {
+            if (s < sorted.size() && (a == added.size() || ENTITY_ORDER.compare(sorted.get(s), added.get(a)) <= 0)) {
+                merged.add(sorted.get(s++));
+            } else {
+                merged.add(added.get(a++));
+            }
+        }
+        sorted.clear();
+        sorted.addAll(merged);
+    }
+
+    /**
+     * Returns where an Entity belongs in a list sorted by {@link #ENTITY_ORDER}.
+     *
+     * @param sorted The sorted list.
+     * @param entity The Entity.
+     * @return The index to insert the Entity at.
+     */
+    static int insertionPoint(List<Entity> sorted, Entity entity) {
+        int index = Collections.binarySearch(sorted, entity, ENTITY_ORDER);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * Returns the index of an Entity in a list sorted by {@link #ENTITY_ORDER}. The list is
+     * searched by binary search, and then one element at a time if the Entity is not where it
+     * should be, which can happen once the sort prefixes have changed.
+     *
+     * @param sorted The sorted list.
+     * @param entity The Entity to find.
+     * @return The index of the Entity, or -1 if it is not in the list.
+     */
+    static int indexOf(List<Entity> sorted, Entity entity) {
+        int index = Collections.binarySearch(sorted, entity, ENTITY_ORDER);
+        if (index >= 0 && sorted.get(index) == entity) {
+            return index;
+        }
+        for (int i = 0; i < sorted.size(); i++) {
+            if (sorted.get(i) == entity) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first entries of an array.
+     *
+     * @param array The array.
+     * @param length The number of entries wanted.
+     * @return The array itself if it is already that long, or else a copy of its first entries.
+     */
+    private static int[] trim(int[] array, int length) {
+        if (array.length == length) {
+            return array;
+        }
+        int[] trimmed = new int[length];
+        System.arraycopy(array, 0, trimmed, 0, length);
+        return trimmed;
+    }
+}
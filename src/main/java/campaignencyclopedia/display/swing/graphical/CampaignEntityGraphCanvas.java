@@ -2,9 +2,15 @@ package campaignencyclopedia.display.swing.graphical;
 
 import campaignencyclopedia.data.DataAccessor;
 import campaignencyclopedia.data.Entity;
+import campaignencyclopedia.data.EntityChangeEvent;
+import campaignencyclopedia.data.EntityChangeListener;
 import campaignencyclopedia.data.Relationship;
+import campaignencyclopedia.data.RelationshipGraph;
 import campaignencyclopedia.data.RelationshipManager;
+import campaignencyclopedia.data.RelationshipVisitor;
 import campaignencyclopedia.data.TimelineEntry;
+import campaignencyclopedia.data.UUIDHashMap;
+import campaignencyclopedia.data.Visibility;
 import campaignencyclopedia.display.EntityDisplay;
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -28,6 +34,7 @@ import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -50,7 +57,7 @@ import traer.physics.Vector3D;
  * @author keith
  * @author adam
  */
-public class CampaignEntityGraphCanvas extends JComponent implements CanvasDisplay { //, Scrollable {
+public class CampaignEntityGraphCanvas extends JComponent implements CanvasDisplay, EntityChangeListener { //, Scrollable {
 
     // RENDERING PARAMETERS
     /** How long to draw the lines between the dots. */
@@ -116,8 +123,12 @@ public class CampaignEntityGraphCanvas extends JComponent implements CanvasDispl
     // GENERAL MEMBERS
     /** A map of Entity UUIDs to their rendering configurations. */
     private final Map<UUID, RenderingConfig> m_renderingConfigMap;
+    /** The spring drawn for each Relationship, so that one can be added or removed without touching the rest. */
+    private final Map<Relationship, Spring> m_springs;
     /** The entity currently hovered over. */
     private UUID m_hoveredEntityId;
+    /** The lines of the tooltip, refilled on every paint while hovering. */
+    private final HoverLines m_hoverLines = new HoverLines();
     private static final String RELATIONSHIPS = "Relationships:";
     private static final int BIG_PAD = 25;
     
@@ -147,7 +158,8 @@ public class CampaignEntityGraphCanvas extends JComponent implements CanvasDispl
         // Init required variables.
         m_accessor = accessor;
         m_display = display;
-        m_renderingConfigMap = new HashMap<>();
+        m_renderingConfigMap = new UUIDHashMap<>();
+        m_springs = new HashMap<>();
         
         //Initialize physics
         m_particleSystem = new ParticleSystem(GRAVITY, DRAG);
@@ -196,20 +208,14 @@ public class CampaignEntityGraphCanvas extends JComponent implements CanvasDispl
         
         //Synchronize access to particle system to avoid conflicts with computation
         synchronized(m_particleSystem) {
-            //Relationship Springs: create a spring between entities for every relationship
-            for (Entity e : allEntities) {    
-                // Create a spring between the entity and what it is related to for each relationship.
-                for (Relationship r : m_accessor.getRelationshipsForEntity(e.getId()).getAllRelationships()) {
-
-                    Particle a = m_renderingConfigMap.get(e.getId()).particle;
-                    RenderingConfig otherRc = m_renderingConfigMap.get(r.getRelatedEntity());
-                    if (otherRc == null) {
-                        LOGGER.warning("Found a relationship pointing to a null entity on " + e.getName() +
-                                "(" + e.getId() + ") pointing to:  " + "(" + r.getRelatedEntity().toString() + ")");
-                        continue;
+            //Relationship Springs: create a spring between entities for every relationship, walking the graph
+            //snapshot and taking each relationship from the end that owns it.
+            RelationshipGraph graph = m_accessor.getRelationshipGraph();
+            for (int node = 0; node < graph.getNodeCount(); node++) {
+                for (int edge = graph.getFirstEdge(node); edge < graph.getEndEdge(node); edge++) {
+                    if (graph.isOutbound(edge)) {
+                        addSpring(graph.getRelationship(edge));
                     }
-                    Particle b = m_renderingConfigMap.get(r.getRelatedEntity()).particle;
-                    m_particleSystem.makeSpring(a, b, SPRING_STRENGTH, SPRING_DAMPENING, getDotLineLength());
                 }
             }
         }
@@ -340,27 +346,16 @@ public class CampaignEntityGraphCanvas extends JComponent implements CanvasDispl
                 //TODO I intentionally removed this once... possible DPI/4K/Laptop problem?  Rendered poorly on WIN w/4k so it's back
                 transform.transform(tooltipLocation, tooltipLocation);  //Apply transform to the location
                 
-                String title = hovered.getName() + " - " + RELATIONSHIPS;
-                int maxWidth = g2.getFontMetrics().stringWidth(title);
-                List<String> hoverRelationships = new ArrayList<>();
-                hoverRelationships.add(title);
+                m_hoverLines.reset(g2.getFontMetrics(), hovered.getName() + " - " + RELATIONSHIPS);
                 RelationshipManager relMgr = m_accessor.getRelationshipsForEntity(m_hoveredEntityId);
-                for (Relationship rel : relMgr.getPublicRelationships()) {
-                    String line = "\n  - " + rel.getRelationshipText() + " " + m_accessor.getEntity(rel.getRelatedEntity()).getName();
-                    hoverRelationships.add(line);
-                    int stringWidth = g2.getFontMetrics().stringWidth(line);
-                    if (maxWidth < stringWidth) {
-                        maxWidth = stringWidth;
-                    }
-                }
-                for (Relationship rel : relMgr.getSecretRelationships()) {
-                        String line = "\n  - " + rel.getRelationshipText() + " " + m_accessor.getEntity(rel.getRelatedEntity()).getName() + " (Secret)";
-                        hoverRelationships.add(line);
-                        int stringWidth = g2.getFontMetrics().stringWidth(line);
-                        if (maxWidth < stringWidth) {
-                            maxWidth = stringWidth;
-                        }
+                if (relMgr != null) {
+                    m_hoverLines.suffix = "";
+                    relMgr.forEach(Visibility.PUBLIC, m_hoverLines);
+                    m_hoverLines.suffix = " (Secret)";
+                    relMgr.forEach(Visibility.SECRET, m_hoverLines);
                 }
+                List<String> hoverRelationships = m_hoverLines.lines;
+                int maxWidth = m_hoverLines.maxWidth;
                 
                 // Background
                 int hoverWidth = maxWidth + BIG_PAD * 2;
@@ -485,6 +480,9 @@ public class CampaignEntityGraphCanvas extends JComponent implements CanvasDispl
             LOGGER.log(Level.INFO, "Data removed from graph display: " + id);
 
             RenderingConfig r = m_renderingConfigMap.get(id);
+            if (r == null) {
+                return;
+            }
 
             //Remove any linked springs first
             int numSprings = m_particleSystem.numberOfSprings();
@@ -498,6 +496,7 @@ public class CampaignEntityGraphCanvas extends JComponent implements CanvasDispl
             for (Spring s : springsToRemove) {
                 m_particleSystem.removeSpring(s);
             }
+            m_springs.values().removeAll(springsToRemove);
 
             //Remove any linked attractions
             int numAttractions = m_particleSystem.numberOfAttractions();
@@ -550,40 +549,79 @@ public class CampaignEntityGraphCanvas extends JComponent implements CanvasDispl
             rc.text = entity.getName();
             rc.color = Colors.getColor(entity.getType());
 
-            //Update Relationship Springs
-            //Remove any linked springs first to catch removed relationships TODO: store relationships and springs somehow to prevent having to do this
-            int numSprings = m_particleSystem.numberOfSprings();
-            Set<Spring> springsToRemove = new HashSet<>();
-            for (int i = 0; i < numSprings; i++) {
-                Spring spring = m_particleSystem.getSpring(i);
-                //Just check one end and not the other end so they will only be springs/relationships originating from this entity and not ones pointing to it.
-                //Does not need an "|| spring.getTheOtherEnd().equals(rc.particle)" clause
-                if (spring.getOneEnd().equals(rc.particle)) {  
-                    springsToRemove.add(spring);
+            //Update Relationship Springs, dropping those for relationships the entity no longer has.
+            RelationshipManager relationshipManager = m_accessor.getRelationshipsForEntity(entity.getId());
+            Set<Relationship> current = new HashSet<>();
+            if (relationshipManager != null) {
+                current.addAll(relationshipManager.getAllRelationships());
+            }
+            Iterator<Map.Entry<Relationship, Spring>> it = m_springs.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Relationship, Spring> entry = it.next();
+                if (entry.getKey().getEntityId().equals(entity.getId()) && !current.contains(entry.getKey())) {
+                    m_particleSystem.removeSpring(entry.getValue());
+                    it.remove();
                 }
             }
-            for (Spring s : springsToRemove) {
-                m_particleSystem.removeSpring(s);
+            for (Relationship relationship : current) {
+                addSpring(relationship);
             }
+        }
+    }
 
-            RelationshipManager relationshipManager = m_accessor.getRelationshipsForEntity(entity.getId());
-
-            if (relationshipManager != null) {
-                // Create a spring between the new entity's particle and the existing one for each relationship.
-                for (Relationship relationship : relationshipManager.getAllRelationships()) {
-                    RenderingConfig otherRenderingConfig = m_renderingConfigMap.get(relationship.getRelatedEntity());
-                    if (otherRenderingConfig == null) {
-                        LOGGER.warning("Found a relationship pointing to a null entity on " + entity.getName() + 
-                                "(" + entity.getId() + ") pointing to:  " + "(" + relationship.getRelatedEntity().toString() + ")");
-                        continue; 
-                    }
-                    Particle particleForRelatedEntity = otherRenderingConfig.particle;
+    @Override
+    public void entityChanged(EntityChangeEvent event) {
+        if (event.isRemoved()) {
+            dataRemoved(event.getId());
+            return;
+        }
+        //Synchronize access to particle system to avoid conflicts with computation
+        synchronized(m_particleSystem) {
+            RenderingConfig rc = m_renderingConfigMap.get(event.getId());
+            if (rc == null) {
+                //New to this display, so set it up in full
+                dataAddedOrUpdated(event.getEntity());
+                return;
+            }
 
-                    m_particleSystem.makeSpring(rc.particle, particleForRelatedEntity, SPRING_STRENGTH, SPRING_DAMPENING, getDotLineLength());
+            //Patch only what changed
+            if (event.isNameChanged()) {
+                rc.text = event.getEntity().getName();
+            }
+            if (event.isTypeChanged()) {
+                rc.color = Colors.getColor(event.getEntity().getType());
+            }
+            for (Relationship relationship : event.getRemovedRelationships()) {
+                Spring spring = m_springs.remove(relationship);
+                if (spring != null) {
+                    m_particleSystem.removeSpring(spring);
                 }
             }
+            for (Relationship relationship : event.getAddedRelationships()) {
+                addSpring(relationship);
+            }
         }
     }
+
+    /**
+     * Creates the spring for a relationship between the particles of its two entities, unless it already has one.
+     * Must be called while holding the particle system's lock.
+     * @param relationship the relationship to create a spring for.
+     */
+    private void addSpring(Relationship relationship) {
+        if (m_springs.containsKey(relationship)) {
+            return;
+        }
+        RenderingConfig rc = m_renderingConfigMap.get(relationship.getEntityId());
+        RenderingConfig otherRc = m_renderingConfigMap.get(relationship.getRelatedEntity());
+        if (rc == null || otherRc == null) {
+            LOGGER.warning("Found a relationship pointing to a null entity from (" + relationship.getEntityId()
+                    + ") pointing to:  (" + relationship.getRelatedEntity() + ")");
+            return;
+        }
+        Spring spring = m_particleSystem.makeSpring(rc.particle, otherRc.particle, SPRING_STRENGTH, SPRING_DAMPENING, getDotLineLength());
+        m_springs.put(relationship, spring);
+    }
     
     @Override
     public void timelineEntryAddedOrUpdated(TimelineEntry tle) {
@@ -597,7 +635,7 @@ public class CampaignEntityGraphCanvas extends JComponent implements CanvasDispl
     
     @Override
     public void clearAllData() {
-        for (UUID id : m_renderingConfigMap.keySet()) {
+        for (UUID id : new ArrayList<>(m_renderingConfigMap.keySet())) {
             dataRemoved(id);
         }
     }
@@ -630,6 +668,40 @@ public class CampaignEntityGraphCanvas extends JComponent implements CanvasDispl
     }
     
 
+    /** Builds the lines of the tooltip from the Relationships of the hovered Entity. */
+    private class HoverLines implements RelationshipVisitor {
+        /** The lines, starting with the title. */
+        private final List<String> lines = new ArrayList<>();
+        /** The widest line. */
+        private int maxWidth;
+        /** Appended to each line, to mark secret Relationships. */
+        private String suffix;
+        /** The metrics lines are measured with. */
+        private FontMetrics metrics;
+
+        /**
+         * Clears the lines back to just the title.
+         * @param fontMetrics the metrics to measure lines with.
+         * @param title the title line.
+         */
+        private void reset(FontMetrics fontMetrics, String title) {
+            metrics = fontMetrics;
+            lines.clear();
+            lines.add(title);
+            maxWidth = metrics.stringWidth(title);
+        }
+
+        @Override
+        public void visit(Relationship rel) {
+            String line = "\n  - " + rel.getRelationshipText() + " " + m_accessor.getEntity(rel.getRelatedEntity()).getName() + suffix;
+            lines.add(line);
+            int stringWidth = metrics.stringWidth(line);
+            if (maxWidth < stringWidth) {
+                maxWidth = stringWidth;
+            }
+        }
+    }
+
     /** A data bag for holding the locations calculated for rendering data. */
     private class RenderingConfig {
         private String text;
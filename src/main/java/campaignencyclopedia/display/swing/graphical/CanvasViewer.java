@@ -1,8 +1,9 @@
 package campaignencyclopedia.display.swing.graphical;
 
 import campaignencyclopedia.data.CampaignDataManager;
-import campaignencyclopedia.data.CampaignDataManagerListener;
 import campaignencyclopedia.data.Entity;
+import campaignencyclopedia.data.EntityChangeEvent;
+import campaignencyclopedia.data.EntityChangeListener;
 import campaignencyclopedia.data.TimelineEntry;
 import java.awt.BorderLayout;
 import java.awt.Component;
@@ -25,7 +26,7 @@ import toolbox.display.DisplayUtilities;
  * An viewer for canvas displays.
  * @author adam
  */
-public class CanvasViewer implements CampaignDataManagerListener {
+public class CanvasViewer implements EntityChangeListener {
 
     /** A logger. */
     private static final Logger LOGGER = Logger.getLogger(CanvasViewer.class.getName());
@@ -131,6 +132,17 @@ public class CanvasViewer implements CampaignDataManagerListener {
         m_canvas.dataAddedOrUpdated(entity);
     }
 
+    @Override
+    public void entityChanged(EntityChangeEvent event) {
+        if (m_canvas instanceof EntityChangeListener) {
+            ((EntityChangeListener)m_canvas).entityChanged(event);
+        } else if (event.isRemoved()) {
+            m_canvas.dataRemoved(event.getId());
+        } else {
+            m_canvas.dataAddedOrUpdated(event.getEntity());
+        }
+    }
+
     @Override
     public void timelineEntryAddedOrUpdated(TimelineEntry tle) {
         m_canvas.timelineEntryAddedOrUpdated(tle);
@@ -6,7 +6,10 @@ import campaignencyclopedia.data.DataAccessor;
 import campaignencyclopedia.data.Entity;
 import campaignencyclopedia.data.Relationship;
 import campaignencyclopedia.data.RelationshipManager;
+import campaignencyclopedia.data.RelationshipVisitor;
 import campaignencyclopedia.data.TimelineEntry;
+import campaignencyclopedia.data.UUIDHashMap;
+import campaignencyclopedia.data.Visibility;
 import campaignencyclopedia.display.EntityDisplay;
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -24,7 +27,6 @@ import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -73,6 +75,25 @@ public class OrbitalEntityCanvas extends JComponent implements CanvasDisplay  {
     /** An EntityDisplay to show Entity data on. */
     private final EntityDisplay m_display;
 
+    /** The Entities related to the current Entity, refilled on every paint. */
+    private final Set<UUID> m_relatedIds = new HashSet<>();
+
+    /** Collects the far end of each Relationship of the current Entity into m_relatedIds. */
+    private final RelationshipVisitor m_relatedIdCollector = new RelationshipVisitor() {
+        @Override
+        public void visit(Relationship rel) {
+            //Add in whichever one isn't "us"
+            if (m_currentEntity.equals(rel.getEntityId())) {
+                m_relatedIds.add(rel.getRelatedEntity());
+            } else {
+                m_relatedIds.add(rel.getEntityId());
+            }
+        }
+    };
+
+    /** The lines of the hover box, refilled on every paint while hovering. */
+    private final HoverLines m_hoverLines = new HoverLines();
+
 
 
     /**
@@ -91,7 +112,7 @@ public class OrbitalEntityCanvas extends JComponent implements CanvasDisplay  {
         m_accessor = accessor;
         m_display = display;
         m_path = new NavigationPath(initialId);
-        m_renderingConfigMap = new HashMap<>();
+        m_renderingConfigMap = new UUIDHashMap<>();
 
         initializeMouseListener();
 
@@ -125,22 +146,12 @@ public class OrbitalEntityCanvas extends JComponent implements CanvasDisplay  {
 
                 // Fetch some required values
                 RelationshipManager currentRelMgr = m_accessor.getRelationshipsForEntity(m_currentEntity);
-                Set<Relationship> relationships = new HashSet<>(currentRelMgr.getAllRelationships());
-
-                Set<UUID> uniqueIds = new HashSet<>();
-                for (Relationship rel : relationships) {
-                    UUID src = rel.getEntityId();
-                    UUID dst = rel.getRelatedEntity();
-                    
-                    //Add in whichever one isn't "us"
-                    if (m_currentEntity.equals(src)) {
-                        uniqueIds.add(dst);
-                    } else {
-                        uniqueIds.add(src);
-                    }
-                    
+                if (currentRelMgr == null) {
+                    currentRelMgr = new RelationshipManager();
                 }
-                int relationshipCount = uniqueIds.size();
+                m_relatedIds.clear();
+                currentRelMgr.forEach(Visibility.ALL, m_relatedIdCollector);
+                int relationshipCount = m_relatedIds.size();
 
                 Point2D.Double center = new Point2D.Double(getWidth() / 2, getHeight() / 2);
                 int dotRadius = getDotRadius();
@@ -149,7 +160,7 @@ public class OrbitalEntityCanvas extends JComponent implements CanvasDisplay  {
 
                 // Repopulate the location map.
                 float currentAngle = 0;
-                for (UUID id : uniqueIds) {
+                for (UUID id : m_relatedIds) {
                     RenderingConfig config = new RenderingConfig();
                     config.dotPoint = getPoint(center, currentAngle, getDotLineLength());
                     config.textPoint = getPoint(center, currentAngle, getTextLineLength());
@@ -225,29 +236,13 @@ public class OrbitalEntityCanvas extends JComponent implements CanvasDisplay  {
                 if (m_hoveredEntity != null) {
                     Entity hovered = m_accessor.getEntity(m_hoveredEntity);
                     if (hovered != null) {
-                        int maxWidth = orignalFontMetrics.stringWidth(RELATIONSHIPS);
-                        List<String> hoverRelationships = new ArrayList<>();
-                        hoverRelationships.add(RELATIONSHIPS);
-                        for (Relationship rel : currentRelMgr.getPublicRelationships()) {
-                            if (rel.getRelatedEntity().equals(m_hoveredEntity) || rel.getEntityId().equals(m_hoveredEntity)) {
-                                String line = "\n  - " + m_accessor.getEntity(rel.getEntityId()).getName() + " " + rel.getRelationshipText() + " " + m_accessor.getEntity(rel.getRelatedEntity()).getName();
-                                hoverRelationships.add(line);
-                                int stringWidth = orignalFontMetrics.stringWidth(line);
-                                if (maxWidth < stringWidth) {
-                                    maxWidth = stringWidth;
-                                }
-                            }
-                        }
-                        for (Relationship rel : currentRelMgr.getSecretRelationships()) {
-                            if (rel.getRelatedEntity().equals(m_hoveredEntity) || rel.getEntityId().equals(m_hoveredEntity)) {
-                                String line = "\n  - " + m_accessor.getEntity(rel.getEntityId()).getName() + " " + rel.getRelationshipText() + " " + m_accessor.getEntity(rel.getRelatedEntity()).getName() + " (Secret)";
-                                hoverRelationships.add(line);
-                                int stringWidth = orignalFontMetrics.stringWidth(line);
-                                if (maxWidth < stringWidth) {
-                                    maxWidth = stringWidth;
-                                }
-                            }
-                        }
+                        m_hoverLines.reset(orignalFontMetrics);
+                        m_hoverLines.suffix = "";
+                        currentRelMgr.forEach(Visibility.PUBLIC, m_hoverLines);
+                        m_hoverLines.suffix = " (Secret)";
+                        currentRelMgr.forEach(Visibility.SECRET, m_hoverLines);
+                        List<String> hoverRelationships = m_hoverLines.lines;
+                        int maxWidth = m_hoverLines.maxWidth;
 
                         // Background
                         int hoverWidth = maxWidth + BIG_PAD * 2;
@@ -317,6 +312,41 @@ public class OrbitalEntityCanvas extends JComponent implements CanvasDisplay  {
         }
     }
 
+    /** Builds the lines of the hover box from the Relationships between the current and hovered Entities. */
+    private class HoverLines implements RelationshipVisitor {
+        /** The lines, starting with the title. */
+        private final List<String> lines = new ArrayList<>();
+        /** The widest line. */
+        private int maxWidth;
+        /** Appended to each line, to mark secret Relationships. */
+        private String suffix;
+        /** The metrics lines are measured with. */
+        private FontMetrics metrics;
+
+        /**
+         * Clears the lines back to just the title.
+         * @param fontMetrics the metrics to measure lines with.
+         */
+        private void reset(FontMetrics fontMetrics) {
+            metrics = fontMetrics;
+            lines.clear();
+            lines.add(RELATIONSHIPS);
+            maxWidth = metrics.stringWidth(RELATIONSHIPS);
+        }
+
+        @Override
+        public void visit(Relationship rel) {
+            if (rel.getRelatedEntity().equals(m_hoveredEntity) || rel.getEntityId().equals(m_hoveredEntity)) {
+                String line = "\n  - " + m_accessor.getEntity(rel.getEntityId()).getName() + " " + rel.getRelationshipText() + " " + m_accessor.getEntity(rel.getRelatedEntity()).getName() + suffix;
+                lines.add(line);
+                int stringWidth = metrics.stringWidth(line);
+                if (maxWidth < stringWidth) {
+                    maxWidth = stringWidth;
+                }
+            }
+        }
+    }
+
     private Point2D.Double getPoint(Point2D.Double center, double angle, double distance) {
         // Angles in java are measured clockwise from 3 o'clock.
         double theta = Math.toRadians(angle);
@@ -153,10 +153,10 @@ public class PlotEntityCanvas extends JComponent implements CanvasDisplay  {
                             continue;
                         }
                         
-                        if (r.getRelationshipText().equals(RelationshipType.LEADS_TO.getDisplayString())) {
+                        if (r.isType(RelationshipType.LEADS_TO)) {
                             //Found a thing that this lead leads to, put it 'on top'
                             topConnections.add(dstEntity);
-                        } else if (r.getRelationshipText().equals(RelationshipType.REVEALS.getDisplayString())) {
+                        } else if (r.isType(RelationshipType.REVEALS)) {
                             //Found a thing which reveals this lead, put it 'on bottom'
                             bottomConnections.add(srcEntity);
                         }
@@ -173,10 +173,10 @@ public class PlotEntityCanvas extends JComponent implements CanvasDisplay  {
                             continue;
                         }
                         
-                        if (r.getRelationshipText().equals(RelationshipType.REVEALS.getDisplayString())) {
+                        if (r.isType(RelationshipType.REVEALS)) {
                             //Find leads that are revealed based on this plot point and put them 'on top'
                             topConnections.add(dstEntity);
-                        } else if (r.getRelationshipText().equals(RelationshipType.LEADS_TO.getDisplayString())) {
+                        } else if (r.isType(RelationshipType.LEADS_TO)) {
                             //Find leads that lead to this plot point and put them 'on bottom'
                             bottomConnections.add(srcEntity);
                         }
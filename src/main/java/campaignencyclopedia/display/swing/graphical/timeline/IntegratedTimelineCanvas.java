@@ -2,6 +2,8 @@ package campaignencyclopedia.display.swing.graphical.timeline;
 
 import campaignencyclopedia.data.CampaignDataManager;
 import campaignencyclopedia.data.Entity;
+import campaignencyclopedia.data.EntityChangeEvent;
+import campaignencyclopedia.data.EntityChangeListener;
 import campaignencyclopedia.data.TimelineEntry;
 import campaignencyclopedia.display.EntityDisplay;
 import campaignencyclopedia.display.swing.TimelineListDisplay;
@@ -43,7 +45,7 @@ import toolbox.display.EditListener;
  * 
  * @author adam
  */
-public class IntegratedTimelineCanvas implements CanvasDisplay {
+public class IntegratedTimelineCanvas implements CanvasDisplay, EntityChangeListener {
 
     private JPanel m_content;
     private final TimelineCanvas m_canvas;
@@ -203,6 +205,11 @@ public class IntegratedTimelineCanvas implements CanvasDisplay {
         m_canvas.dataAddedOrUpdated(entity);
     }
 
+    @Override
+    public void entityChanged(EntityChangeEvent event) {
+        m_canvas.entityChanged(event);
+    }
+
     @Override
     public void timelineEntryAddedOrUpdated(TimelineEntry tle) {
         m_canvas.timelineEntryAddedOrUpdated(tle);
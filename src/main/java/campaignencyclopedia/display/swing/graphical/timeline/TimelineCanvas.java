@@ -1,10 +1,12 @@
 package campaignencyclopedia.display.swing.graphical.timeline;
 
-import campaignencyclopedia.data.CampaignCalendar;
+import campaignencyclopedia.data.CampaignDate;
 import campaignencyclopedia.data.DataAccessor;
 import campaignencyclopedia.data.Entity;
-import campaignencyclopedia.data.Month;
+import campaignencyclopedia.data.EntityChangeEvent;
+import campaignencyclopedia.data.EntityChangeListener;
 import campaignencyclopedia.data.TimelineEntry;
+import campaignencyclopedia.data.UUIDHashMap;
 import campaignencyclopedia.display.swing.graphical.CanvasDisplay;
 import campaignencyclopedia.display.swing.graphical.Colors;
 import java.awt.BasicStroke;
@@ -22,7 +24,6 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.UUID;
 import javax.swing.JComponent;
 import javax.swing.JScrollPane;
@@ -31,11 +32,11 @@ import javax.swing.JScrollPane;
  *
  * @author adam
  */
-public class TimelineCanvas extends JComponent implements CanvasDisplay {
+public class TimelineCanvas extends JComponent implements CanvasDisplay, EntityChangeListener {
 
     // BASIC DATA
     /** The TimelineEntries to render. */
-    private Map<TimelineDate, List<TimelineEntry>> m_data;
+    private Map<CampaignDate, List<TimelineEntry>> m_data;
     /** A data accessor. */
     private DataAccessor m_da;
     /** The JScrollPane containing this component. */
@@ -67,8 +68,8 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
     private static final int Y_OFFSET_INCRFEMENT = 20;
     
     // PROCESSED OR CALCULATED DATA OR DATA USED FOR THE PURPOSE OF PROCESSING OR CALCULATING
-    /** A map of TimelineDates to the key location information useful for rendering at that location. */
-    private final Map<TimelineDate, DateLocationData> m_dateLocationData;
+    /** A map of CampaignDates to the key location information useful for rendering at that location. */
+    private final Map<CampaignDate, DateLocationData> m_dateLocationData;
     /** A map of TimelineEntry IDs to their associated Rendering Configurations. */
     private final Map<UUID, RenderingConfig> m_renderingConfigs;
     /** The number of segments to render (timeline dates) on the timeline. */
@@ -117,7 +118,7 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
         // Init Data Maps
         m_data = new HashMap<>();
         m_dateLocationData = new HashMap<>();
-        m_renderingConfigs = new HashMap<>();
+        m_renderingConfigs = new UUIDHashMap<>();
 
         // Init scroll pane.
         m_scrollPane = new JScrollPane(this);
@@ -160,16 +161,16 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
                 continue;
             }
             
-            TimelineDate date = new TimelineDate(tle.getMonth(), tle.getYear());
+            CampaignDate date = tle.getDate();
             switch (m_zoomLevel) {
                 case CENTURY:
-                    date = date.getCenturyDate();
+                    date = getCenturyDate(date);
                     break;
                 case DECADE:
-                    date = date.getDecadeDate();
+                    date = getDecadeDate(date);
                     break;
                 case YEAR:
-                    date = date.getYearDate();
+                    date = getYearDate(date);
                     break;
                 case MONTH:
                     // do nothing.
@@ -183,7 +184,7 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
         }
         
         // Initialize Segment Count
-        List<TimelineDate> dates = new ArrayList<>(m_data.keySet());
+        List<CampaignDate> dates = new ArrayList<>(m_data.keySet());
         Collections.sort(dates);
         calculateSegmentCount(dates);
         
@@ -241,7 +242,7 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
         FontMetrics fontMetrics = g2d.getFontMetrics();
         
         // PREPARE BASIC VALUES FOR RENDERING
-        List<TimelineDate> dates = new ArrayList<>(m_data.keySet());
+        List<CampaignDate> dates = new ArrayList<>(m_data.keySet());
         Collections.sort(dates);
         
         // Color Background
@@ -268,7 +269,7 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
             g2d.drawLine(PAD, getTimelineY(), (SEGMENT_X_VALUES * m_segmentCount) - PAD, getTimelineY());
 
             // --- DRAW ALL VERTICAL FENCEPOSTS
-            for (TimelineDate date : m_dateLocationData.keySet()) {
+            for (CampaignDate date : m_dateLocationData.keySet()) {
                 DateLocationData dld = m_dateLocationData.get(date);
                 int fencepostX = dld.dateXPos;
                 g2d.drawLine(fencepostX, getTimelineY(), fencepostX, getTimelineY() - FENCE_POST_HEIGHT - dld.dateYOffset);
@@ -321,13 +322,13 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
         
         // Starting at the latest timeline event, work your 
         // way backwards, ensuring that text doesn't overlap.
-        List<TimelineDate> dates = new ArrayList<>(m_data.keySet());
+        List<CampaignDate> dates = new ArrayList<>(m_data.keySet());
         Collections.sort(dates);
         Collections.reverse(dates);
         
         // Generate the entry placards/flags/what-have-you
         List<Rectangle2D> entryFlags = new ArrayList<>();
-        for (TimelineDate date : dates) {
+        for (CampaignDate date : dates) {
             int yOffset = m_dateLocationData.get(date).dateYOffset;
             List<TimelineEntry> entries = m_data.get(date);
             if (entries != null) {
@@ -366,11 +367,11 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
     /** Initializes the rendering configurations for all data. */
     private void initRenderingConfigs() {
         m_renderingConfigs.clear();
-        for (TimelineDate date : m_data.keySet()) {
+        for (CampaignDate date : m_data.keySet()) {
             int currentFencepostHeight = getTimelineY() - FENCE_POST_HEIGHT;
             int fencepostX = m_dateLocationData.get(date).dateXPos;
             
-            // Sort the Entries for the supplied TimelineDate so that they'll be alphabetized from top to bottom.
+            // Sort the Entries for the supplied CampaignDate so that they'll be alphabetized from top to bottom.
             List<TimelineEntry> entries = m_data.get(date);
             Collections.sort(entries, ENTRY_COMPARATOR);
             Collections.reverse(entries);
@@ -402,7 +403,7 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
      * Calculates the segment count given a SORTED list of timeline dates.  Unsorted dates will result in errors.
      * @param dates the dates to use to calculate the segment count.
      */
-    private void calculateSegmentCount(List<TimelineDate> dates) {
+    private void calculateSegmentCount(List<CampaignDate> dates) {
         if (dates.isEmpty()) {
             return;
         }
@@ -410,21 +411,21 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
             case CENTURY:
                 // If zoomed to Century Level, segment count is drastically reduced.  
                 // Need to ensure that this is carefully handled such that even century segments exist.
-                m_segmentCount = dates.get(0).getCenturyDate().difference(dates.get(dates.size() - 1).getCenturyDate()) / (m_da.getCalendar().getMonthCount() * 100);
+                m_segmentCount = span(getCenturyDate(dates.get(0)), getCenturyDate(dates.get(dates.size() - 1))) / (m_da.getCalendar().getMonthCount() * 100);
                 break;
             case DECADE:
                 // If zoomed to Decade Level, a vertical line post is drawn for each ten years.
                 // Need to ensure that this is carefully handled such that even decade segments exist.
-                m_segmentCount = dates.get(0).getDecadeDate().difference(dates.get(dates.size() - 1).getDecadeDate()) / (m_da.getCalendar().getMonthCount() * 10);
+                m_segmentCount = span(getDecadeDate(dates.get(0)), getDecadeDate(dates.get(dates.size() - 1))) / (m_da.getCalendar().getMonthCount() * 10);
                 break;
             case YEAR:
                 // If zoomed to Year Level, a vertical line post is drawn for each year only.
                 // Need to ensure that this is carefully handled such that even year segments exist.
-                m_segmentCount = dates.get(0).getYearDate().difference(dates.get(dates.size() - 1).getYearDate()) / m_da.getCalendar().getMonthCount();
+                m_segmentCount = span(getYearDate(dates.get(0)), getYearDate(dates.get(dates.size() - 1))) / m_da.getCalendar().getMonthCount();
                 break;
             case MONTH:
                 // Default is Month.  Do nothing.
-                m_segmentCount = dates.get(0).difference(dates.get(dates.size() - 1));
+                m_segmentCount = span(dates.get(0), dates.get(dates.size() - 1));
                 break;
         }
         m_segmentCount += SEGMENT_PAD;
@@ -438,28 +439,28 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
         m_dateLocationData.clear();
         int monthStep = 1;
         
-        List<TimelineDate> dates = new ArrayList<>(m_data.keySet());
+        List<CampaignDate> dates = new ArrayList<>(m_data.keySet());
         if (dates.size() > 0) {
             Collections.sort(dates);
-            TimelineDate first = dates.get(0);
+            CampaignDate first = dates.get(0);
 
             int currentXposition = PAD;
-            TimelineDate currentDate = first;
+            CampaignDate currentDate = first;
             for (int i = 0; i < segmentCount; i++) {
                 String label = "";
                 switch (m_zoomLevel) {
                     case CENTURY:
-                        currentDate = currentDate.getCenturyDate();
-                        label = String.valueOf(currentDate.year) + "s";
+                        currentDate = getCenturyDate(currentDate);
+                        label = String.valueOf(currentDate.getYear()) + "s";
                         monthStep = m_da.getCalendar().getMonthCount() * 100;
                         break;
                     case DECADE:
-                        label = String.valueOf(currentDate.year) + "s";
+                        label = String.valueOf(currentDate.getYear()) + "s";
                         monthStep = m_da.getCalendar().getMonthCount() * 10;
                         break;
                     case YEAR:
-                        currentDate = currentDate.getYearDate();
-                        label = String.valueOf(currentDate.year);
+                        currentDate = getYearDate(currentDate);
+                        label = String.valueOf(currentDate.getYear());
                         monthStep = m_da.getCalendar().getMonthCount();
                         break;
                     case MONTH:
@@ -476,7 +477,7 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
                     dld.dateYOffset = 0;
                     m_dateLocationData.put(currentDate, dld);
                 }
-                currentDate = currentDate.getFutureDate(monthStep);
+                currentDate = m_da.getCalendar().add(currentDate, monthStep);
                 currentXposition += SEGMENT_X_VALUES;
             }
         }
@@ -499,6 +500,23 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
         repaint();
     }
 
+    @Override
+    public void entityChanged(EntityChangeEvent event) {
+        // Entities only show on the timeline as the color of their entries' dots, so only a change of type matters,
+        // and then only the dots of its own entries need recoloring.  Its entries are added and removed separately.
+        if (event.isRemoved() || event.isAdded() || !event.isTypeChanged() || m_dataChanged) {
+            return;
+        }
+        Color color = Colors.getColor(event.getEntity().getType());
+        for (TimelineEntry tle : m_da.getTimelineEntriesFor(event.getId())) {
+            RenderingConfig config = m_renderingConfigs.get(tle.getId());
+            if (config != null) {
+                config.color = color;
+            }
+        }
+        repaint();
+    }
+
     @Override
     public void timelineEntryAddedOrUpdated(TimelineEntry tle) {
         m_dataChanged = true;
@@ -522,144 +540,45 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
         m_dataChanged = true;
     }
     
-    /** Helper Class for organizing Timeline Data. */
-    private class TimelineDate implements Comparable<TimelineDate> {
-        Month month;
-        int year;
-
-        private TimelineDate(Month month, int year) {
-            this.month = month;
-            this.year = year;
-        }
-
-        /**
-         * Returns the absolute value of the difference (in months) between this date and the supplied one.
-         * @return the absolute value of the difference (in months) between this date and the supplied one.
-         */
-        private int difference(TimelineDate date) {
-            if (this.compareTo(date) < 0) {
-                return difference(date, this, m_da.getCalendar());
-            } else {
-                return difference(this, date, m_da.getCalendar());
-            }
-        }
-        
-        /**
-         * Returns the difference between two dates, where bigDate is the date AFTER little date on the time continuum.  This calculation 
-         * is inclusive, meaning that the first month and last month will be included in final totals.
-         * 
-         * @param bigDate a date that occurs after the little date.
-         * @param littleDate a date that occurs before the big date.
-         * @param calendar the CampaignCalendar to use for calculations.
-         * @return the difference between two dates, where bigDate is the date AFTER little date on the time continuum.
-         */
-        private int difference(TimelineDate bigDate, TimelineDate littleDate, CampaignCalendar calendar) {
-            // If the other date is AFTER this date...
-            int years = bigDate.year - littleDate.year;
-            int months = 0;
-
-            if (littleDate.month.getIndex() < bigDate.month.getIndex()) {
-                // If this date's month is BEFORE the other months date, the math is easy.
-                // Add one at the end in order to be inclusive of the last month
-                months = bigDate.month.getIndex() - littleDate.month.getIndex() + 1;
-                return months + (years * calendar.getMonthCount());
-            } else {
-                // The other date has a month AFTER this object's month in the year.  So we need to count backward a year.
-                // Add one at the end in order to be inclusive of the last month
-                years -= 1;
-                months = (bigDate.month.getIndex() + calendar.getMonthCount()) - littleDate.month.getIndex() + 1;
-                return months + years * calendar.getMonthCount();
-            }
-        }
-        
-        /**
-         * Returns a TimelineDate that is 'n' months ahead of this one.  If necessary, years will also be incremented.
-         * @param n the number of months to increment.
-         * @return a TimelineDate that is 'n' months ahead of this one.
-         */
-        private TimelineDate getFutureDate(int n) {
-            CampaignCalendar cc = m_da.getCalendar();
-            Month newMonth = cc.getMonthForIndex(this.month.getIndex());
-            int newYear = this.year;
-            for (int i = 0; i < n; i++) {
-                newMonth = cc.getMonthAfter(newMonth);
-                if (newMonth.getIndex() == 0) {
-                    newYear += 1;
-                }
-            }
-            
-            return new TimelineDate(newMonth, newYear);
-        }
-
-        /**
-         * Returns the first date for the year that this date is in.
-         * @return the first date for the year that this date is in.
-         */
-        private TimelineDate getYearDate() {
-            return new TimelineDate(m_da.getCalendar().getMonthForIndex(0), this.year);
-        }
-        
-        /**
-         * Returns the first date for the decade that this date is in.
-         * @return the first date for the decade that this date is in.
-         */
-        private TimelineDate getDecadeDate() {
-            int remainder = this.year % 10;
-            return new TimelineDate(m_da.getCalendar().getMonthForIndex(0), this.year - remainder);
-        }
-        
-        /**
-         * Returns the first date for the century that this date is in.
-         * @return the first date for the century that this date is in.
-         */
-        private TimelineDate getCenturyDate() {
-            int remainder = this.year % 100;
-            return new TimelineDate(m_da.getCalendar().getMonthForIndex(0), this.year - remainder);
-        }
-        
-        @Override
-        public String toString() {
-            return month.getName() + " " + year;
-        }
+    /**
+     * Returns the number of months from the first date to the last, counting both.
+     * @param first the first date.
+     * @param last the last date, on or after the first.
+     * @return the number of months from the first date to the last, counting both.
+     */
+    private int span(CampaignDate first, CampaignDate last) {
+        return Math.abs(m_da.getCalendar().difference(first, last)) + 1;
+    }
 
-        @Override
-        public int compareTo(TimelineDate t) {
-            if (year < t.year) {
-                return -1;
-            } else if (year > t.year) {
-                return 1;
-            } else {
-                return month.compareTo(t.month);
-            }
-        }
+    /**
+     * Returns the first date for the year that the supplied date is in.
+     * @param date the date.
+     * @return the first date for the year that the supplied date is in.
+     */
+    private CampaignDate getYearDate(CampaignDate date) {
+        return m_da.getCalendar().getFirstDateOf(date.getYear());
+    }
 
-        @Override
-        public int hashCode() {
-            int hash = 5;
-            hash = 89 * hash + Objects.hashCode(this.month);
-            hash = 89 * hash + this.year;
-            return hash;
-        }
+    /**
+     * Returns the first date for the decade that the supplied date is in.
+     * @param date the date.
+     * @return the first date for the decade that the supplied date is in.
+     */
+    private CampaignDate getDecadeDate(CampaignDate date) {
+        int remainder = date.getYear() % 10;
+        return m_da.getCalendar().getFirstDateOf(date.getYear() - remainder);
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final TimelineDate other = (TimelineDate) obj;
-            if (!Objects.equals(this.month, other.month)) {
-                return false;
-            }
-            if (this.year != other.year) {
-                return false;
-            }
-            return true;
-        }
+    /**
+     * Returns the first date for the century that the supplied date is in.
+     * @param date the date.
+     * @return the first date for the century that the supplied date is in.
+     */
+    private CampaignDate getCenturyDate(CampaignDate date) {
+        int remainder = date.getYear() % 100;
+        return m_da.getCalendar().getFirstDateOf(date.getYear() - remainder);
     }
-    
+
     /** A data bag helper class for managing the position and label of a given date on the timeline. */
     private class DateLocationData {
         private int dateXPos;
@@ -683,7 +602,7 @@ public class TimelineCanvas extends JComponent implements CanvasDisplay {
         /** The position where the text is to be rendered. */
         private Point textPoint;
         /** The date where this dot, text, and leader line should be rendered. */
-        private TimelineDate date;
+        private CampaignDate date;
     }
     
     /** A helper class that represents a position on the canvas. */